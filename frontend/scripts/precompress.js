@@ -0,0 +1,53 @@
+// Writes a .br and a .gz next to every compressible file in build/, so that
+// the backend can serve them as they are instead of compressing per request.
+// Runs after `npm run build` (see "postbuild" in package.json).
+
+const fs = require("fs");
+const path = require("path");
+const zlib = require("zlib");
+
+const buildDir = path.join(__dirname, "..", "build");
+const compressible = /\.(js|css|html|json|map|svg|txt|ico|webmanifest)$/;
+// below this, the headers outweigh what compression saves
+const minBytes = 1024;
+
+function* files(dir) {
+  for (const entry of fs.readdirSync(dir, { withFileTypes: true })) {
+    const full = path.join(dir, entry.name);
+    if (entry.isDirectory()) {
+      yield* files(full);
+    } else {
+      yield full;
+    }
+  }
+}
+
+let before = 0;
+let after = 0;
+for (const file of files(buildDir)) {
+  if (!compressible.test(file)) {
+    continue;
+  }
+  const raw = fs.readFileSync(file);
+  if (raw.length < minBytes) {
+    continue;
+  }
+  const br = zlib.brotliCompressSync(raw, {
+    params: {
+      [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+      [zlib.constants.BROTLI_PARAM_SIZE_HINT]: raw.length,
+    },
+  });
+  const gz = zlib.gzipSync(raw, { level: zlib.constants.Z_BEST_COMPRESSION });
+  // only keep a variant that is actually smaller
+  if (br.length < raw.length) {
+    fs.writeFileSync(file + ".br", br);
+  }
+  if (gz.length < raw.length) {
+    fs.writeFileSync(file + ".gz", gz);
+  }
+  before += raw.length;
+  after += Math.min(br.length, raw.length);
+}
+
+console.log(`precompress: ${before} bytes -> ${after} bytes with brotli`);
@@ -5,7 +5,7 @@ const parkFixtures = {
        "id": 1,
         "name": "Anderson Park",
         "address": "19801 134th Ave, Redmond WA",
-        "rating": "4.7",  
+        "rating": 4.7,  
       }
     ],
 
@@ -15,21 +15,21 @@ const parkFixtures = {
             "id": 2,
             "name": "Dog**** Park",
             "address": "6799 Del Playa Drive",
-            "rating": "3.9",  
+            "rating": 3.9,  
         },
 
         {
             "id": 3,
             "name": "Estero Park",
             "address": "889 Camino Del Sur, Goleta, CA 93117",
-            "rating": "4.2",  
+            "rating": 4.2,  
         },
 
         {
             "id": 4,
             "name": "Window To The Sea Park",
             "address": "6693 Del Playa Dr, Goleta, CA 93117",
-            "rating": "4.7",    
+            "rating": 4.7,    
         },
         
     ]
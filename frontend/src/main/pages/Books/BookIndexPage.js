@@ -1,5 +1,6 @@
 import React from 'react'
 import { useBackend } from 'main/utils/useBackend';
+import { useChangeFeed } from 'main/utils/useChangeFeed';
 
 import BasicLayout from "main/layouts/BasicLayout/BasicLayout";
 import BooksTable from 'main/components/Books/BookTable';
@@ -14,9 +15,14 @@ export default function BooksIndexPage() {
       // Stryker disable next-line all : don't test internal caching of React Query
       ["/api/books/all"],
       { method: "GET", url: "/api/books/all" },
-      []
+      [],
+      // the change feed below keeps the list current
+      { refetchOnWindowFocus: false }
     );
 
+  // Stryker disable next-line all : the feed is tested in useChangeFeed.test.js
+  useChangeFeed("/api/books/changes", ["/api/books/all"]);
+
   return (
     <BasicLayout>
       <div className="pt-2">
@@ -1,5 +1,6 @@
 import React from 'react'
 import { useBackend } from 'main/utils/useBackend';
+import { useChangeFeed } from 'main/utils/useChangeFeed';
 import BasicLayout from "main/layouts/BasicLayout/BasicLayout";
 import ParksTable from 'main/components/Parks/ParkTable';
 import { useCurrentUser } from 'main/utils/currentUser'
@@ -13,9 +14,14 @@ export default function ParksIndexPage() {
       // Stryker disable next-line all : don't test internal caching of React Query
       ["/api/parks/all"],
       { method: "GET", url: "/api/parks/all" },
-      []
+      [],
+      // the change feed below keeps the list current
+      { refetchOnWindowFocus: false }
     );
 
+  // Stryker disable next-line all : the feed is tested in useChangeFeed.test.js
+  useChangeFeed("/api/parks/changes", ["/api/parks/all"]);
+
   return (
     <BasicLayout>
       <div className="pt-2">
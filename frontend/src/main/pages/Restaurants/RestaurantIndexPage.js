@@ -1,6 +1,7 @@
 import React from 'react'
 import RestaurantTable from 'main/components/Restaurants/RestaurantTable';
 import { useBackend } from 'main/utils/useBackend';
+import { useChangeFeed } from 'main/utils/useChangeFeed';
 import BasicLayout from "main/layouts/BasicLayout/BasicLayout";
 import { useCurrentUser } from 'main/utils/currentUser'
 
@@ -13,8 +14,13 @@ export default function RestaurantIndexPage() {
         // Stryker disable next-line all : don't test internal caching of React Query
         ["/api/restaurant/all"],
         { method: "GET", url: "/api/restaurant/all" },
-        []
+        [],
+        // the change feed below keeps the list current
+        { refetchOnWindowFocus: false }
       );
+
+    // Stryker disable next-line all : the feed is tested in useChangeFeed.test.js
+    useChangeFeed("/api/restaurant/changes", ["/api/restaurant/all"]);
   
     return (
       <BasicLayout>
@@ -25,7 +25,7 @@ import { toast } from "react-toastify";
 //     []
 // );
 
-export function useBackend(queryKey, axiosParameters, initialData) {
+export function useBackend(queryKey, axiosParameters, initialData, queryOptions = {}) {
 
     return useQuery(queryKey, async () => {
         try {
@@ -38,7 +38,8 @@ export function useBackend(queryKey, axiosParameters, initialData) {
             throw e;
         }
     }, {
-        initialData
+        initialData,
+        ...queryOptions
     });
 }
 
@@ -0,0 +1,42 @@
+import { useEffect } from "react";
+import { useQueryClient } from "react-query";
+
+// Keeps a cached list (e.g. ["/api/parks/all"]) up to date from the
+// server-sent change feed (e.g. "/api/parks/changes") while the component
+// is mounted, instead of fetching the whole list again.
+//
+// The browser reconnects by itself, sending the last event id, and the
+// server replays what was missed; a "reset" event means it could not,
+// and the list is fetched again.
+
+export function applyChange(list, type, entity, idKey = "id") {
+    const rows = Array.isArray(list) ? list : [];
+    const others = rows.filter((row) => row[idKey] !== entity[idKey]);
+    if (type === "deleted") {
+        return others;
+    }
+    if (others.length === rows.length) {
+        return [...rows, entity];
+    }
+    return rows.map((row) => (row[idKey] === entity[idKey] ? entity : row));
+}
+
+export function useChangeFeed(url, queryKey, idKey = "id") {
+    const queryClient = useQueryClient();
+
+    useEffect(() => {
+        if (typeof EventSource === "undefined") {
+            return undefined;
+        }
+        const source = new EventSource(url);
+        const onChange = (event) => {
+            const entity = JSON.parse(event.data);
+            queryClient.setQueryData(queryKey, (list) => applyChange(list, event.type, entity, idKey));
+        };
+        const onReset = () => queryClient.invalidateQueries(queryKey);
+        ["created", "updated", "deleted"].forEach((type) => source.addEventListener(type, onChange));
+        source.addEventListener("reset", onReset);
+        return () => source.close();
+        // Stryker disable next-line all : the query key is a new array on every render
+    }, [url, JSON.stringify(queryKey), idKey, queryClient]); // eslint-disable-line react-hooks/exhaustive-deps
+}
@@ -0,0 +1,110 @@
+import { QueryClient, QueryClientProvider } from "react-query";
+import { renderHook } from '@testing-library/react-hooks'
+
+import { applyChange, useChangeFeed } from "main/utils/useChangeFeed";
+
+class FakeEventSource {
+    static instances = [];
+
+    constructor(url) {
+        this.url = url;
+        this.listeners = {};
+        this.closed = false;
+        FakeEventSource.instances.push(this);
+    }
+
+    addEventListener(type, listener) {
+        this.listeners[type] = listener;
+    }
+
+    emit(type, data) {
+        this.listeners[type]({ type, data: JSON.stringify(data) });
+    }
+
+    close() {
+        this.closed = true;
+    }
+}
+
+describe("utils/useChangeFeed tests", () => {
+
+    describe("applyChange", () => {
+        const parks = [{ id: 1, name: "Anderson" }, { id: 2, name: "Estero" }];
+
+        test("created rows are appended", () => {
+            expect(applyChange(parks, "created", { id: 3, name: "Dog" })).toEqual([...parks, { id: 3, name: "Dog" }]);
+        });
+
+        test("updated rows are replaced in place", () => {
+            expect(applyChange(parks, "updated", { id: 1, name: "Anderson Park" }))
+                .toEqual([{ id: 1, name: "Anderson Park" }, { id: 2, name: "Estero" }]);
+        });
+
+        test("deleted rows are removed", () => {
+            expect(applyChange(parks, "deleted", { id: 1 })).toEqual([{ id: 2, name: "Estero" }]);
+        });
+
+        test("other id keys and missing lists work", () => {
+            const commons = [{ code: "ortega" }];
+            expect(applyChange(commons, "updated", { code: "ortega", name: "Ortega" }, "code"))
+                .toEqual([{ code: "ortega", name: "Ortega" }]);
+            expect(applyChange(undefined, "created", { id: 1 })).toEqual([{ id: 1 }]);
+        });
+    });
+
+    describe("useChangeFeed", () => {
+
+        beforeEach(() => {
+            FakeEventSource.instances = [];
+            global.EventSource = FakeEventSource;
+        });
+
+        afterEach(() => {
+            delete global.EventSource;
+        });
+
+        test("events update the cached list and reset refetches it", () => {
+            const queryClient = new QueryClient();
+            queryClient.setQueryData(["/api/parks/all"], [{ id: 1, name: "Anderson" }]);
+            const invalidate = jest.spyOn(queryClient, "invalidateQueries");
+            const wrapper = ({ children }) => (
+                <QueryClientProvider client={queryClient}>
+                    {children}
+                </QueryClientProvider>
+            );
+
+            const { unmount } = renderHook(() => useChangeFeed("/api/parks/changes", ["/api/parks/all"]), { wrapper });
+
+            const source = FakeEventSource.instances[0];
+            expect(source.url).toBe("/api/parks/changes");
+
+            source.emit("created", { id: 2, name: "Estero" });
+            source.emit("updated", { id: 1, name: "Anderson Park" });
+            expect(queryClient.getQueryData(["/api/parks/all"]))
+                .toEqual([{ id: 1, name: "Anderson Park" }, { id: 2, name: "Estero" }]);
+
+            source.emit("deleted", { id: 2, name: "Estero" });
+            expect(queryClient.getQueryData(["/api/parks/all"])).toEqual([{ id: 1, name: "Anderson Park" }]);
+
+            source.listeners.reset({ type: "reset", data: "" });
+            expect(invalidate).toHaveBeenCalledWith(["/api/parks/all"]);
+
+            unmount();
+            expect(source.closed).toBe(true);
+        });
+
+        test("does nothing where EventSource is not available", () => {
+            delete global.EventSource;
+            const queryClient = new QueryClient();
+            const wrapper = ({ children }) => (
+                <QueryClientProvider client={queryClient}>
+                    {children}
+                </QueryClientProvider>
+            );
+
+            renderHook(() => useChangeFeed("/api/parks/changes", ["/api/parks/all"]), { wrapper });
+
+            expect(FakeEventSource.instances).toEqual([]);
+        });
+    });
+});
@@ -0,0 +1,108 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+import edu.ucsb.cs156.example.aop.TimingAspect;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the controller aspects add to every request: the same trivial
+ * handler called directly, through LoggingAspect, and through both
+ * LoggingAspect and TimingAspect. The logging aspects run in their default
+ * asynchronous mode, so the writer thread's work is not in these numbers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AspectOverheadBenchmark {
+
+  public static class Handler {
+    @GetMapping("/api/benchmark")
+    public String handle() {
+      return "ok";
+    }
+  }
+
+  Handler direct;
+  Handler logged;
+  Handler loggedAndTimed;
+
+  List<LoggingAspect> loggingAspects = new ArrayList<>();
+
+  @Setup
+  public void setup() {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/benchmark");
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+    direct = new Handler();
+    logged = proxy(loggingAspect());
+
+    TimingAspect timingAspect = new TimingAspect();
+    ReflectionTestUtils.setField(timingAspect, "meterRegistry", new SimpleMeterRegistry());
+    loggedAndTimed = proxy(loggingAspect(), timingAspect);
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    for (LoggingAspect loggingAspect : loggingAspects) {
+      loggingAspect.stop();
+    }
+  }
+
+  private LoggingAspect loggingAspect() {
+    LoggingAspect loggingAspect = new LoggingAspect();
+    ReflectionTestUtils.setField(loggingAspect, "environment", new StandardEnvironment());
+    loggingAspect.start();
+    loggingAspects.add(loggingAspect);
+    return loggingAspect;
+  }
+
+  private Handler proxy(Object... aspects) {
+    AspectJProxyFactory factory = new AspectJProxyFactory(new Handler());
+    factory.setProxyTargetClass(true);
+    for (Object aspect : aspects) {
+      factory.addAspect(aspect);
+    }
+    return factory.getProxy();
+  }
+
+  @Benchmark
+  public String direct() {
+    return direct.handle();
+  }
+
+  @Benchmark
+  public String loggingAspect() {
+    return logged.handle();
+  }
+
+  @Benchmark
+  public String loggingAndTimingAspects() {
+    return loggedAndTimed.handle();
+  }
+}
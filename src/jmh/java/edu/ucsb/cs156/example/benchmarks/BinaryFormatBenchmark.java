@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import edu.ucsb.cs156.example.config.BinaryFormatsConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding an /all response in each of the negotiated formats, and
+ * of decoding it again on the client side; the payload size of each format
+ * is printed once per trial. The mappers are configured the way
+ * BinaryFormatsConfig configures the message converters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryFormatBenchmark {
+
+  /** The shape of the &lt;Entity&gt;List protobuf message. */
+  public static class RowList<T> {
+    public List<T> rows;
+  }
+
+  @Param({ "1000", "10000", "100000" })
+  int rows;
+
+  @Param({ "restaurants", "books", "ucsbdates" })
+  String entity;
+
+  @Param({ "json", "cbor", "smile", "protobuf" })
+  String format;
+
+  List<?> list;
+  Object body;
+  ObjectWriter writer;
+  ObjectReader reader;
+  byte[] encoded;
+
+  @Setup
+  public void setup() throws Exception {
+    list = switch (entity) {
+      case "restaurants" -> Rows.restaurants(rows);
+      case "books" -> Rows.books(rows);
+      case "ucsbdates" -> Rows.ucsbDates(rows);
+      default -> throw new IllegalArgumentException(entity);
+    };
+    Class<?> type = list.get(0).getClass();
+
+    if (format.equals("protobuf")) {
+      ObjectMapper mapper = BinaryFormatsConfig.protobufMapper(Jackson2ObjectMapperBuilder.json());
+      ProtobufSchema schema = BinaryFormatsConfig.protoSchema().forType(type.getSimpleName() + "List");
+      JavaType rowList = mapper.getTypeFactory().constructParametricType(RowList.class, type);
+      body = Map.of("rows", list);
+      writer = mapper.writer(schema);
+      reader = mapper.readerFor(rowList).with(schema);
+    } else {
+      ObjectMapper mapper = switch (format) {
+        case "json" -> Jackson2ObjectMapperBuilder.json().build();
+        case "cbor" -> Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        case "smile" -> Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+        default -> throw new IllegalArgumentException(format);
+      };
+      body = list;
+      writer = mapper.writer();
+      reader = mapper.readerFor(mapper.getTypeFactory().constructCollectionType(List.class, type));
+    }
+
+    encoded = writer.writeValueAsBytes(body);
+    System.out.printf("%n%s: %d %s as %s = %d bytes (%.1f per row)%n",
+        getClass().getSimpleName(), rows, entity, format, encoded.length, (double) encoded.length / rows);
+  }
+
+  @Benchmark
+  public byte[] encode() throws Exception {
+    return writer.writeValueAsBytes(body);
+  }
+
+  @Benchmark
+  public Object decode() throws Exception {
+    return reader.readValue(encoded);
+  }
+}
@@ -0,0 +1,119 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import edu.ucsb.cs156.example.controllers.BookController;
+import edu.ucsb.cs156.example.controllers.RestaurantController;
+import edu.ucsb.cs156.example.controllers.UCSBDatesController;
+import edu.ucsb.cs156.example.entities.Book;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.BookRepository;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
+import edu.ucsb.cs156.example.services.TableVersions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full Spring MVC dispatch (argument binding, handler, message conversion)
+ * through the entity controllers, with the repositories stubbed out so the
+ * numbers are the web layer only. Security and the caches are proxies that
+ * standalone MockMvc does not apply. The /all listings do go through a real
+ * JsonResponseCache: nothing changes the tables, so after the first render
+ * they measure a cache hit, as in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerDispatchBenchmark {
+
+  @Param({ "100", "1000" })
+  int rows;
+
+  MockMvc mockMvc;
+
+  @Setup
+  public void setup() {
+    JsonResponseCache jsonResponseCache = new JsonResponseCache();
+    ReflectionTestUtils.setField(jsonResponseCache, "mapper", Jackson2ObjectMapperBuilder.json().build());
+    ReflectionTestUtils.setField(jsonResponseCache, "tableVersions", new TableVersions());
+
+    List<Restaurant> restaurants = Rows.restaurants(rows);
+    RestaurantRepository restaurantRepository = mock(RestaurantRepository.class);
+    when(restaurantRepository.findAll()).thenReturn(restaurants);
+    when(restaurantRepository.findById(1L)).thenReturn(Optional.of(restaurants.get(0)));
+    RestaurantController restaurantController = new RestaurantController();
+    ReflectionTestUtils.setField(restaurantController, "restaurantRepository", restaurantRepository);
+    ReflectionTestUtils.setField(restaurantController, "jsonResponseCache", jsonResponseCache);
+
+    List<Book> books = Rows.books(rows);
+    BookRepository bookRepository = mock(BookRepository.class);
+    when(bookRepository.findAll()).thenReturn(books);
+    BookController bookController = new BookController();
+    // (sic) BookController's repository field is capitalized
+    ReflectionTestUtils.setField(bookController, "BookRepository", bookRepository);
+    ReflectionTestUtils.setField(bookController, "jsonResponseCache", jsonResponseCache);
+
+    List<UCSBDate> ucsbDates = Rows.ucsbDates(rows);
+    UCSBDateRepository ucsbDateRepository = mock(UCSBDateRepository.class);
+    when(ucsbDateRepository.findAll()).thenReturn(ucsbDates);
+    UCSBDatesController ucsbDatesController = new UCSBDatesController();
+    ReflectionTestUtils.setField(ucsbDatesController, "ucsbDateRepository", ucsbDateRepository);
+    ReflectionTestUtils.setField(ucsbDatesController, "jsonResponseCache", jsonResponseCache);
+
+    mockMvc = MockMvcBuilders
+        .standaloneSetup(restaurantController, bookController, ucsbDatesController)
+        .build();
+  }
+
+  private String perform(String url) throws Exception {
+    MvcResult result = mockMvc.perform(get(url)).andReturn();
+    return result.getResponse().getContentAsString();
+  }
+
+  @Benchmark
+  public String restaurantById() throws Exception {
+    return perform("/api/restaurant?id=1");
+  }
+
+  @Benchmark
+  public String allRestaurants() throws Exception {
+    return perform("/api/restaurant/all");
+  }
+
+  @Benchmark
+  public String allBooks() throws Exception {
+    return perform("/api/books/all");
+  }
+
+  @Benchmark
+  public String allUCSBDates() throws Exception {
+    return perform("/api/ucsbdates/all");
+  }
+}
@@ -0,0 +1,57 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning an /all response into JSON bytes, with the same
+ * ObjectMapper configuration Spring MVC uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+  @Param({ "1000", "10000", "100000" })
+  int rows;
+
+  @Param({ "restaurants", "books", "ucsbdates" })
+  String entity;
+
+  ObjectMapper mapper;
+  List<?> list;
+
+  @Setup
+  public void setup() {
+    mapper = Jackson2ObjectMapperBuilder.json().build();
+    list = switch (entity) {
+      case "restaurants" -> Rows.restaurants(rows);
+      case "books" -> Rows.books(rows);
+      case "ucsbdates" -> Rows.ucsbDates(rows);
+      default -> throw new IllegalArgumentException(entity);
+    };
+  }
+
+  @Benchmark
+  public byte[] serializeList() throws Exception {
+    return mapper.writeValueAsBytes(list);
+  }
+}
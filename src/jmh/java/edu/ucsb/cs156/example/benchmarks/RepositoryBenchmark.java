@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CrudRepository reads through Spring Data JPA and Hibernate against an
+ * in-memory H2 database. Only JPA is started (no web layer, security or
+ * caches), and application.properties is not read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+  @Configuration
+  @EnableAutoConfiguration
+  @EntityScan("edu.ucsb.cs156.example.entities")
+  @EnableJpaRepositories("edu.ucsb.cs156.example.repositories")
+  static class JpaOnly {
+  }
+
+  @Param({ "1000", "10000" })
+  int rows;
+
+  ConfigurableApplicationContext context;
+  RestaurantRepository restaurantRepository;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = new SpringApplicationBuilder(JpaOnly.class)
+        .web(WebApplicationType.NONE)
+        .properties(
+            "spring.config.name=jmh",
+            "spring.main.banner-mode=off",
+            "spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.open-in-view=false",
+            "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+            "logging.level.root=WARN")
+        .run();
+    restaurantRepository = context.getBean(RestaurantRepository.class);
+    for (Restaurant restaurant : Rows.restaurants(rows)) {
+      restaurant.setId(0);
+      restaurantRepository.save(restaurant);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public Iterable<Restaurant> findAll() {
+    return restaurantRepository.findAll();
+  }
+
+  @Benchmark
+  public Optional<Restaurant> findById() {
+    return restaurantRepository.findById(ThreadLocalRandom.current().nextLong(1, rows + 1));
+  }
+}
@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import edu.ucsb.cs156.example.entities.Book;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Deterministic rows of a realistic size for the benchmarks
+
+final class Rows {
+
+  private static final LocalDateTime START = LocalDateTime.parse("2022-01-03T00:00:00");
+
+  private Rows() {
+  }
+
+  static List<Restaurant> restaurants(int n) {
+    List<Restaurant> rows = new ArrayList<>(n);
+    for (int i = 1; i <= n; i++) {
+      rows.add(restaurant(i));
+    }
+    return rows;
+  }
+
+  static Restaurant restaurant(long id) {
+    return Restaurant.builder()
+        .id(id)
+        .name("Restaurant " + id)
+        .address(id + " Embarcadero del Norte")
+        .city("Isla Vista")
+        .state("CA")
+        .zip("93117")
+        .description("Burritos, tacos and bowls; open late on weekends")
+        .build();
+  }
+
+  static List<Book> books(int n) {
+    List<Book> rows = new ArrayList<>(n);
+    for (int i = 1; i <= n; i++) {
+      rows.add(Book.builder()
+          .id(i)
+          .title("Book " + i)
+          .author("Author " + (i % 997))
+          .genre(i % 2 == 0 ? "Science Fiction" : "Mystery")
+          .build());
+    }
+    return rows;
+  }
+
+  static List<UCSBDate> ucsbDates(int n) {
+    List<UCSBDate> rows = new ArrayList<>(n);
+    for (int i = 1; i <= n; i++) {
+      rows.add(UCSBDate.builder()
+          .id(i)
+          .quarterYYYYQ("2022" + (1 + i % 4))
+          .name("date " + i)
+          .localDateTime(START.plusHours(i))
+          .build());
+    }
+    return rows;
+  }
+}
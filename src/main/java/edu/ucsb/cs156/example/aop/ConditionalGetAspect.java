@@ -0,0 +1,68 @@
+package edu.ucsb.cs156.example.aop;
+
+import edu.ucsb.cs156.example.config.BinaryFormatsConfig;
+import edu.ucsb.cs156.example.services.TableVersions;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Conditional GET for the handlers annotated with {@link TableVersioned}.
+ * The ETag is taken from the table's version counter before the handler
+ * runs; if it matches If-None-Match the status is set to 304 and the
+ * handler is skipped, so neither the database nor Jackson is touched.
+ *
+ * Runs inside method security, so a 304 is never given to a caller who
+ * would have been refused, and outside the getById caches, so a 304 does
+ * not even cost a cache lookup.
+ *
+ * The response is marked <code>private, no-cache</code>, which replaces
+ * Spring Security's default <code>no-store</code>: browsers keep the body
+ * but revalidate it on every use, which is what sends If-None-Match.
+ *
+ * The same rows can go out as JSON or as one of the binary formats (see
+ * BinaryFormatsConfig), so a binary response gets its own ETag, with the
+ * format appended, and the response varies on Accept.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class ConditionalGetAspect {
+  static final String CACHE_CONTROL = "private, no-cache";
+
+  @Autowired
+  TableVersions tableVersions;
+
+  @Around("@annotation(versioned)")
+  public Object checkNotModified(ProceedingJoinPoint joinPoint, TableVersioned versioned) throws Throwable {
+    if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+        && attributes.getResponse() != null) {
+      ServletWebRequest request = new ServletWebRequest(attributes.getRequest(), attributes.getResponse());
+      attributes.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+      attributes.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+      String etag = variantTag(tableVersions.etag(versioned.value()),
+          BinaryFormatsConfig.preferredBinaryType(attributes.getRequest().getHeader(HttpHeaders.ACCEPT)));
+      // sets the ETag header either way, and the 304 status when it matches
+      if (request.checkNotModified(etag)) {
+        return null;
+      }
+    }
+    return joinPoint.proceed();
+  }
+
+  static String variantTag(String etag, MediaType format) {
+    if (format == null) {
+      return etag;
+    }
+    return etag.substring(0, etag.length() - 1) + "-" + format.getSubtype() + "\"";
+  }
+}
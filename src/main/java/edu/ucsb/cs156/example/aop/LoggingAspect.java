@@ -2,25 +2,49 @@ package edu.ucsb.cs156.example.aop;
 
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Optional;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Logs one structured line per controller call:
+ * <code>request method=GET uri=/api/parks/all controller=ParksController handler=allParks at=...</code>
+ *
+ * The request thread only checks the level, rolls the sampling dice and
+ * drops a small event into a lock-free ring buffer; a background writer
+ * drains the buffer and does all the formatting and I/O. If the writer
+ * falls behind, events are dropped (and the drop count is logged) rather
+ * than slowing requests down.
+ *
+ * Sampling is per endpoint: <code>app.request-log.sample-rates.&lt;Controller&gt;.&lt;method&gt;</code>,
+ * falling back to <code>app.request-log.sample-rate</code>. Set
+ * <code>app.request-log.async=false</code> to log on the request thread.
+ */
 @Slf4j
 @Aspect
 @Component
 public class LoggingAspect {
   // language=PointcutExpression
-  private static final String pointcut = """
+  static final String pointcut = """
       @annotation(org.springframework.web.bind.annotation.RequestMapping) ||
       @annotation(org.springframework.web.bind.annotation.GetMapping) ||
       @annotation(org.springframework.web.bind.annotation.PostMapping) ||
@@ -29,25 +53,113 @@ public class LoggingAspect {
       @annotation(org.springframework.web.bind.annotation.PatchMapping)
       """;
 
-  private ArrayList<String> stoplist = new ArrayList<String>(Arrays.asList(
-      "edu.ucsb.cs156.example.controllers.FrontendProxyController"));
+  private static final Set<String> stoplist = Set.of(
+      "edu.ucsb.cs156.example.controllers.FrontendProxyController");
+
+  record RequestLogEvent(long at, String method, String uri, String controller, String handler) {
+  }
+
+  @Autowired
+  Environment environment;
+
+  @Value("${app.request-log.sample-rate:1.0}")
+  double defaultSampleRate = 1.0;
+
+  @Value("${app.request-log.async:true}")
+  boolean async = true;
+
+  @Value("${app.request-log.buffer-size:8192}")
+  int bufferSize = 8192;
+
+  @Value("${app.request-log.drain-interval-ms:10}")
+  long drainIntervalMillis = 10;
+
+  // keyed by "Controller.method"; looked up once per endpoint
+  private final ConcurrentMap<String, Double> sampleRates = new ConcurrentHashMap<>();
+
+  RequestLogBuffer<RequestLogEvent> buffer;
+  private Thread writer;
+  private volatile boolean running;
+
+  @PostConstruct
+  public void start() {
+    buffer = new RequestLogBuffer<>(bufferSize);
+    if (async) {
+      running = true;
+      writer = new Thread(this::drainLoop, "request-log-writer");
+      writer.setDaemon(true);
+      writer.start();
+    }
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    if (writer != null) {
+      LockSupport.unpark(writer);
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+  }
 
   @Before(pointcut)
   public void logControllers(JoinPoint joinPoint) {
-    getCurrentHttpRequest().ifPresent(
-        request -> {
-          String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
-          if (!stoplist.contains(declaringTypeName)) {
-            log.info("===== %s %s handled by %s in %s".formatted(request.getMethod(), request.getRequestURI(),
-                joinPoint.getSignature().getName(), declaringTypeName));
-          }
-        });
-  }
-
-  private static Optional<HttpServletRequest> getCurrentHttpRequest() {
-    return Optional.ofNullable(RequestContextHolder.getRequestAttributes())
-        .filter(ServletRequestAttributes.class::isInstance)
-        .map(ServletRequestAttributes.class::cast)
-        .map(ServletRequestAttributes::getRequest);
+    if (!log.isInfoEnabled()) {
+      return;
+    }
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+      return;
+    }
+    Signature signature = joinPoint.getSignature();
+    if (stoplist.contains(signature.getDeclaringTypeName())) {
+      return;
+    }
+    String controller = signature.getDeclaringType().getSimpleName();
+    String handler = signature.getName();
+    double rate = sampleRate(controller, handler);
+    if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate) {
+      return;
+    }
+    HttpServletRequest request = servletAttributes.getRequest();
+    RequestLogEvent event = new RequestLogEvent(System.currentTimeMillis(), request.getMethod(),
+        request.getRequestURI(), controller, handler);
+    if (!async) {
+      write(event);
+    } else {
+      buffer.offer(event);
+    }
+  }
+
+  double sampleRate(String controller, String handler) {
+    return sampleRates.computeIfAbsent(controller + "." + handler,
+        key -> environment.getProperty("app.request-log.sample-rates." + key, Double.class, defaultSampleRate));
+  }
+
+  /** Writes out everything in the buffer; returns the number of events written. */
+  int drain() {
+    int written = 0;
+    for (RequestLogEvent event = buffer.poll(); event != null; event = buffer.poll()) {
+      write(event);
+      written++;
+    }
+    long dropped = buffer.takeDropped();
+    if (dropped > 0) {
+      log.warn("request log buffer full, dropped={}", dropped);
+    }
+    return written;
+  }
+
+  private void drainLoop() {
+    while (running) {
+      if (drain() == 0) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(drainIntervalMillis));
+      }
+    }
+    drain();
+  }
+
+  private void write(RequestLogEvent event) {
+    log.info("request method={} uri={} controller={} handler={} at={}", event.method(), event.uri(),
+        event.controller(), event.handler(), Instant.ofEpochMilli(event.at()));
   }
 }
@@ -0,0 +1,82 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free ring buffer with many producers (the request threads)
+ * and a single consumer (the request-log writer). Each slot carries a
+ * sequence number that says whose turn it is, so producers only contend on
+ * one compare-and-set and never wait: when the ring is full the event is
+ * dropped instead (see {@link #offer}).
+ */
+class RequestLogBuffer<T> {
+  private final int mask;
+  private final AtomicReferenceArray<T> slots;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  // only touched by the consumer
+  private long head;
+
+  RequestLogBuffer(int capacity) {
+    int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    mask = size - 1;
+    slots = new AtomicReferenceArray<>(size);
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Adds an item; returns false (and counts it as dropped) if the ring is
+   * full. Safe to call from any number of threads.
+   */
+  boolean offer(T item) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) position & mask;
+      long sequence = sequences.get(index);
+      if (sequence == position) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots.lazySet(index, item);
+          sequences.lazySet(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (sequence < position) {
+        dropped.incrementAndGet();
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Removes the oldest item, or returns null if there is none. Must only be
+   * called from the consumer thread.
+   */
+  T poll() {
+    int index = (int) head & mask;
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+    T item = slots.get(index);
+    slots.lazySet(index, null);
+    sequences.lazySet(index, head + mask + 1);
+    head++;
+    return item;
+  }
+
+  /** Returns the number of items dropped since the last call, and resets it. */
+  long takeDropped() {
+    return dropped.getAndSet(0);
+  }
+}
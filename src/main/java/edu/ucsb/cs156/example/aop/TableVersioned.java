@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a GET handler whose response depends only on its URL and on the
+ * contents of one entity table. ConditionalGetAspect gives the response an
+ * ETag built from that table's version and answers 304 Not Modified when
+ * the client already has it.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TableVersioned {
+  Class<?> value();
+}
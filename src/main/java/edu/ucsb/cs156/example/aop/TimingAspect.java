@@ -0,0 +1,89 @@
+package edu.ucsb.cs156.example.aop;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every controller method (the same methods that LoggingAspect logs).
+ * For each method there is a latency timer with p50/p95/p99 and max, whose
+ * count is the request count, tagged by outcome, plus an error counter
+ * tagged by exception type. Both are scraped from /actuator/prometheus.
+ *
+ * Runs just inside method security, so cache hits are included in the
+ * latency but requests that are refused are not.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class TimingAspect {
+  public static final String REQUESTS = "app.controller.requests";
+  public static final String ERRORS = "app.controller.errors";
+
+  private static final List<String> stoplist = List.of(
+      "edu.ucsb.cs156.example.controllers.FrontendProxyController");
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  // Meters are looked up once per method/outcome rather than on every call
+  private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> errorCounters = new ConcurrentHashMap<>();
+
+  @Around(LoggingAspect.pointcut)
+  public Object timeControllers(ProceedingJoinPoint joinPoint) throws Throwable {
+    Signature signature = joinPoint.getSignature();
+    if (stoplist.contains(signature.getDeclaringTypeName())) {
+      return joinPoint.proceed();
+    }
+
+    long start = System.nanoTime();
+    String outcome = "success";
+    try {
+      return joinPoint.proceed();
+    } catch (Throwable t) {
+      outcome = "error";
+      errorCounter(signature, t).increment();
+      throw t;
+    } finally {
+      timer(signature, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private Timer timer(Signature signature, String outcome) {
+    String key = signature.getDeclaringTypeName() + "#" + signature.getName() + "#" + outcome;
+    return timers.computeIfAbsent(key, k -> Timer.builder(REQUESTS)
+        .description("Latency of controller methods")
+        .tag("controller", signature.getDeclaringType().getSimpleName())
+        .tag("method", signature.getName())
+        .tag("outcome", outcome)
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .publishPercentileHistogram()
+        .register(meterRegistry));
+  }
+
+  private Counter errorCounter(Signature signature, Throwable t) {
+    String key = signature.getDeclaringTypeName() + "#" + signature.getName() + "#" + t.getClass().getName();
+    return errorCounters.computeIfAbsent(key, k -> Counter.builder(ERRORS)
+        .description("Exceptions thrown by controller methods")
+        .tag("controller", signature.getDeclaringType().getSimpleName())
+        .tag("method", signature.getName())
+        .tag("exception", t.getClass().getSimpleName())
+        .register(meterRegistry));
+  }
+}
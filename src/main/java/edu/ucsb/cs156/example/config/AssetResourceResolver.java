@@ -0,0 +1,155 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Adds response headers to the static files of the React build.
+ *
+ * Files whose names carry a content hash (everything the build puts under
+ * <code>static/</code>) never change, so they are cached for a year and
+ * marked immutable; the rest (index.html, manifest.json, ...) must be
+ * revalidated on every use. Every file gets a strong ETag: the hash of the
+ * bytes actually sent, so the br, gzip and identity variants differ. The
+ * ETag is checked by StaticResourceConfig.AssetEtagFilter.
+ *
+ * Sits between the CachingResourceResolver and the EncodedResourceResolver,
+ * so each file is hashed once per encoding.
+ */
+public class AssetResourceResolver extends AbstractResourceResolver {
+
+  static final Pattern FINGERPRINTED = Pattern.compile("static/.+\\.[0-9a-f]{8,}(\\.chunk)?\\.\\w+");
+
+  static final String IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+  static final String REVALIDATE = CacheControl.noCache().getHeaderValue();
+
+  @Override
+  protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
+      List<? extends Resource> locations, ResourceResolverChain chain) {
+    Resource resource = chain.resolveResource(request, requestPath, locations);
+    if (resource == null) {
+      return null;
+    }
+    boolean fingerprinted = FINGERPRINTED.matcher(requestPath).matches();
+    return new AssetResource(resource, fingerprinted ? IMMUTABLE : REVALIDATE);
+  }
+
+  @Override
+  protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations,
+      ResourceResolverChain chain) {
+    return chain.resolveUrlPath(resourceUrlPath, locations);
+  }
+
+  static class AssetResource extends AbstractResource implements HttpResource {
+    private final Resource resource;
+    private final String cacheControl;
+    private volatile String etag;
+
+    AssetResource(Resource resource, String cacheControl) {
+      this.resource = resource;
+      this.cacheControl = cacheControl;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+      HttpHeaders headers = new HttpHeaders();
+      if (resource instanceof HttpResource httpResource) {
+        headers.putAll(httpResource.getResponseHeaders());
+      }
+      headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+      headers.setCacheControl(cacheControl);
+      try {
+        headers.setETag(getEtag());
+      } catch (IOException e) {
+        // serve it without one; the handler reports the read error anyway
+      }
+      return headers;
+    }
+
+    String getEtag() throws IOException {
+      if (etag == null) {
+        try (InputStream in = resource.getInputStream()) {
+          etag = "\"" + DigestUtils.md5DigestAsHex(in) + "\"";
+        }
+      }
+      return etag;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return resource.getInputStream();
+    }
+
+    @Override
+    public boolean exists() {
+      return resource.exists();
+    }
+
+    @Override
+    public boolean isReadable() {
+      return resource.isReadable();
+    }
+
+    @Override
+    public boolean isFile() {
+      return resource.isFile();
+    }
+
+    @Override
+    public URL getURL() throws IOException {
+      return resource.getURL();
+    }
+
+    @Override
+    public URI getURI() throws IOException {
+      return resource.getURI();
+    }
+
+    @Override
+    public File getFile() throws IOException {
+      return resource.getFile();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+      return resource.contentLength();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+      return resource.lastModified();
+    }
+
+    @Override
+    public Resource createRelative(String relativePath) throws IOException {
+      return resource.createRelative(relativePath);
+    }
+
+    @Override
+    public String getFilename() {
+      return resource.getFilename();
+    }
+
+    @Override
+    public String getDescription() {
+      return resource.getDescription();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.example.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Binary alternatives to JSON for the entity APIs, chosen by the Accept
+ * header: CBOR, Smile and (schema-backed) Protobuf. All three serialize
+ * through Jackson with the application's ObjectMapper settings, so they
+ * carry exactly the fields the JSON does.
+ *
+ * JSON stays the default: the CBOR and Smile converters take the place of
+ * Spring's defaults, which come after JSON, and the Protobuf converter is
+ * appended last, so <code>Accept: *&#47;*</code> still gets JSON.
+ */
+@Configuration
+public class BinaryFormatsConfig implements WebMvcConfigurer {
+
+  public static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+  public static final List<MediaType> BINARY_TYPES = List.of(
+      MediaType.APPLICATION_CBOR, SMILE, JacksonProtobufHttpMessageConverter.PROTOBUF);
+
+  static final String PROTO_SCHEMA = "proto/entities.proto";
+
+  @Autowired
+  ObjectProvider<Jackson2ObjectMapperBuilder> mapperBuilder;
+
+  @Bean
+  public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+  }
+
+  @Bean
+  public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+  }
+
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(new JacksonProtobufHttpMessageConverter(protobufMapper(mapperBuilder.getObject()), protoSchema()));
+  }
+
+  /**
+   * The Protobuf flavour of the application's ObjectMapper: the schema has
+   * strings for dates and times, and may leave out properties that are not
+   * part of the protobuf representation.
+   */
+  public static ObjectMapper protobufMapper(Jackson2ObjectMapperBuilder builder) {
+    return builder.factory(new ProtobufFactory())
+        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .featuresToEnable(JsonGenerator.Feature.IGNORE_UNKNOWN)
+        .build();
+  }
+
+  public static NativeProtobufSchema protoSchema() {
+    try (InputStream in = new ClassPathResource(PROTO_SCHEMA).getInputStream()) {
+      return ProtobufSchemaLoader.std.loadNative(in, PROTO_SCHEMA);
+    } catch (IOException e) {
+      throw new UncheckedIOException("cannot load " + PROTO_SCHEMA, e);
+    }
+  }
+
+  /**
+   * The binary type a client asks for ahead of JSON, or null when JSON (or
+   * a wildcard that JSON satisfies) comes first. Used where a response is
+   * rendered or tagged before content negotiation runs.
+   */
+  public static MediaType preferredBinaryType(String accept) {
+    if (!StringUtils.hasText(accept)) {
+      return null;
+    }
+    List<MediaType> types;
+    try {
+      types = MediaType.parseMediaTypes(accept);
+    } catch (InvalidMediaTypeException e) {
+      return null;
+    }
+    MediaType.sortBySpecificityAndQuality(types);
+    for (MediaType type : types) {
+      if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+        return null;
+      }
+      for (MediaType binary : BINARY_TYPES) {
+        if (binary.includes(type)) {
+          return binary;
+        }
+      }
+    }
+    return null;
+  }
+}
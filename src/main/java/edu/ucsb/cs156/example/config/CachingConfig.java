@@ -0,0 +1,54 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded, in-process read-through caches for the entity <code>getById</code>
+ * endpoints. Each entity has its own cache, sized and expired according to a
+ * Caffeine spec in <code>app.cache.specs.&lt;name&gt;</code> (falling back to
+ * <code>app.cache.default-spec</code>). Statistics are recorded so that hit,
+ * miss and eviction counts show up under <code>/actuator/metrics/cache.*</code>.
+ *
+ * Caching runs after method security (see {@link SecurityConfig}) so that a
+ * cached entry is never returned to a caller who is not allowed to see it.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE)
+@Slf4j
+public class CachingConfig {
+
+  public static final String RESTAURANTS = "restaurants";
+  public static final String BOOKS = "books";
+  public static final String PARKS = "parks";
+  public static final String UCSB_DATES = "ucsbdates";
+  public static final String UCSB_DINING_COMMONS = "ucsbdiningcommons";
+
+  public static final List<String> ENTITY_CACHES = List.of(RESTAURANTS, BOOKS, PARKS, UCSB_DATES, UCSB_DINING_COMMONS);
+
+  @Value("${app.cache.default-spec:maximumSize=10000,expireAfterWrite=10m}")
+  private String defaultSpec;
+
+  @Bean
+  public CacheManager cacheManager(Environment environment) {
+    CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+    for (String name : ENTITY_CACHES) {
+      String spec = environment.getProperty("app.cache.specs." + name, defaultSpec);
+      log.info("cache {} uses spec {}", name, spec);
+      cacheManager.registerCustomCache(name, Caffeine.from(spec).recordStats().build());
+    }
+    return cacheManager;
+  }
+}
@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hibernate second-level cache for the near-static reference tables
+ * (<code>ucsbdiningcommons</code> and <code>ucsbdates</code>), plus the query
+ * cache. The regions live in an in-process, heap-bounded Ehcache instance
+ * reached through JCache; region statistics are reported by
+ * <code>/api/systemInfo</code>.
+ *
+ * The region names here must match the <code>@Cache(region = ...)</code>
+ * annotations on the entities.
+ */
+@Configuration
+@Slf4j
+public class HibernateCacheConfig {
+
+  public static final String UCSB_DINING_COMMONS_REGION = "ucsbdiningcommons";
+  public static final String UCSB_DATES_REGION = "ucsbdates";
+
+  // Hibernate's own region names for query results and table timestamps
+  public static final String QUERY_RESULTS_REGION = "default-query-results-region";
+  public static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+  @Value("${app.hibernate-cache.max-entries:10000}")
+  private long maxEntries;
+
+  @Value("${app.hibernate-cache.time-to-live:PT1H}")
+  private Duration timeToLive;
+
+  @Bean(destroyMethod = "close")
+  public CacheManager hibernateCacheManager() {
+    CachingProvider provider = Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+    CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+
+    createRegion(cacheManager, UCSB_DINING_COMMONS_REGION, true);
+    createRegion(cacheManager, UCSB_DATES_REGION, true);
+    createRegion(cacheManager, QUERY_RESULTS_REGION, true);
+    // Timestamps must outlive every cached query result, so they never expire
+    createRegion(cacheManager, UPDATE_TIMESTAMPS_REGION, false);
+    return cacheManager;
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer hibernateSecondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+    return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+  }
+
+  private void createRegion(CacheManager cacheManager, String region, boolean expires) {
+    if (cacheManager.getCache(region) != null) {
+      return;
+    }
+    CacheConfigurationBuilder<Object, Object> builder = CacheConfigurationBuilder
+        .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries));
+    if (expires) {
+      builder = builder.withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive));
+    }
+    log.info("second-level cache region {} (max {} entries, expires: {})", region, maxEntries, expires);
+    cacheManager.createCache(region, Eh107Configuration.fromEhcacheCacheConfiguration(builder));
+  }
+}
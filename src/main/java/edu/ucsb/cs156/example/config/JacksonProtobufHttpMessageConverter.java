@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads and writes entities as <code>application/x-protobuf</code>, using
+ * the messages of a <code>.proto</code> schema (proto/entities.proto) named
+ * after the entity classes. Lists are written as the
+ * <code>&lt;Entity&gt;List</code> message, whose <code>rows</code> field
+ * repeats the entity; the element type is taken from the first row, since
+ * an empty list is an empty message whatever its type. When the handler
+ * declares the element type (<code>List&lt;String&gt;</code>, say), lists
+ * of types without a message are turned down during content negotiation.
+ *
+ * Serialization goes through Jackson, so the protobuf fields carry the same
+ * values as the JSON properties of the same name.
+ */
+public class JacksonProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+  public static final MediaType PROTOBUF = MediaType.valueOf("application/x-protobuf");
+
+  static final String LIST_SUFFIX = "List";
+
+  private final ObjectMapper mapper;
+  private final NativeProtobufSchema schema;
+  private final ConcurrentMap<String, ProtobufSchema> messages = new ConcurrentHashMap<>();
+
+  public JacksonProtobufHttpMessageConverter(ObjectMapper mapper, NativeProtobufSchema schema) {
+    super(PROTOBUF);
+    this.mapper = mapper;
+    this.schema = schema;
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return hasMessage(clazz) || Iterable.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  public boolean canRead(Class<?> clazz, MediaType mediaType) {
+    return hasMessage(clazz) && canRead(mediaType);
+  }
+
+  @Override
+  public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+    return type instanceof Class<?> clazz && canRead(clazz, mediaType);
+  }
+
+  @Override
+  public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+    if (!canWrite(mediaType)) {
+      return false;
+    }
+    if (!Iterable.class.isAssignableFrom(clazz)) {
+      return hasMessage(clazz);
+    }
+    // ResponseEntity<?> declares no element type; those rows are checked when written
+    Class<?> element = (type == null) ? null : ResolvableType.forType(type).as(Iterable.class).getGeneric(0).resolve();
+    return element == null || element == Object.class || hasMessage(element);
+  }
+
+  @Override
+  public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+    return readInternal(ResolvableType.forType(type).toClass(), inputMessage);
+  }
+
+  @Override
+  protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+    try {
+      return mapper.readerFor(clazz).with(message(clazz.getSimpleName())).readValue(inputMessage.getBody());
+    } catch (IOException e) {
+      throw new HttpMessageNotReadableException("Invalid protobuf " + clazz.getSimpleName() + ": " + e.getMessage(),
+          e, inputMessage);
+    }
+  }
+
+  @Override
+  protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+    if (body instanceof Iterable<?> iterable) {
+      List<Object> rows = new ArrayList<>();
+      iterable.forEach(rows::add);
+      if (rows.isEmpty()) {
+        return;
+      }
+      Class<?> type = rows.get(0).getClass();
+      if (!hasMessage(type)) {
+        throw new HttpMessageNotWritableException("No protobuf message for " + type.getSimpleName());
+      }
+      mapper.writer(message(type.getSimpleName() + LIST_SUFFIX))
+          .writeValue(StreamUtils.nonClosing(outputMessage.getBody()), Map.of("rows", rows));
+    } else {
+      mapper.writer(message(body.getClass().getSimpleName()))
+          .writeValue(StreamUtils.nonClosing(outputMessage.getBody()), body);
+    }
+  }
+
+  private boolean hasMessage(Class<?> clazz) {
+    return schema.hasMessageType(clazz.getSimpleName());
+  }
+
+  private ProtobufSchema message(String name) {
+    return messages.computeIfAbsent(name, schema::forType);
+  }
+}
@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns on <code>@Scheduled</code> housekeeping jobs (for example the
+ * tombstone purge in DeltaSyncService).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
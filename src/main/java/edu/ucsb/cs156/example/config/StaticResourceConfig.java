@@ -0,0 +1,75 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.regex.Pattern;
+
+/**
+ * Serves the production React build from <code>classpath:/public</code>.
+ *
+ * The frontend build writes a <code>.br</code> and a <code>.gz</code> next
+ * to every compressible file (see <code>frontend/scripts/precompress.js</code>);
+ * EncodedResourceResolver picks the best one the client accepts, so nothing
+ * is compressed per request and server.compression stays off. Resolved
+ * resources are cached, and AssetResourceResolver adds the ETag and the
+ * Cache-Control that suits each file.
+ *
+ * The resource handler itself only checks <code>If-Modified-Since</code>, so
+ * {@link AssetEtagFilter} answers <code>If-None-Match</code> for the files
+ * that are revalidated on every use.
+ *
+ * In development the frontend is proxied instead (FrontendProxyController).
+ */
+@Profile("!development")
+@Configuration
+public class StaticResourceConfig implements WebMvcConfigurer {
+
+  @Override
+  public void addResourceHandlers(ResourceHandlerRegistry registry) {
+    registry.addResourceHandler("/**")
+        .addResourceLocations("classpath:/public/")
+        .resourceChain(true)
+        .addResolver(new AssetResourceResolver())
+        .addResolver(new EncodedResourceResolver());
+  }
+
+  // also on FORWARD, which is how client-side routes reach index.html
+  @Bean
+  public FilterRegistrationBean<AssetEtagFilter> assetEtagFilter() {
+    FilterRegistrationBean<AssetEtagFilter> registration = new FilterRegistrationBean<>(new AssetEtagFilter());
+    registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.FORWARD);
+    return registration;
+  }
+
+  /**
+   * Turns a matching <code>If-None-Match</code> into a 304 for
+   * <code>/</code>, index.html and the other unhashed files at the top level
+   * of the build (manifest.json, favicon.ico, ...). Client-side routes are
+   * covered by the forward to index.html. The ETag is the one
+   * AssetResourceResolver already set, so nothing is hashed per request.
+   *
+   * The response is buffered to do this, so every other path (the API, the
+   * actuator, login, Swagger UI and the fingerprinted files under
+   * <code>static/</code>) is passed through untouched.
+   */
+  static class AssetEtagFilter extends ShallowEtagHeaderFilter {
+
+    static final Pattern TOP_LEVEL_FILE = Pattern.compile("/[^/]+\\.[^/]+");
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+      String path = request.getRequestURI().substring(request.getContextPath().length());
+      return !(path.equals("/") || TOP_LEVEL_FILE.matcher(path).matches());
+    }
+  }
+}
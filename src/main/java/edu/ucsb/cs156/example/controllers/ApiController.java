@@ -1,23 +1,60 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.config.BinaryFormatsConfig;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import net.bytebuddy.implementation.bytecode.Throw;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
 import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Slf4j
 public abstract class ApiController {
   @Autowired
   private CurrentUserService currentUserService;
 
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  /** Media type of RFC 7396 JSON Merge Patch request bodies. */
+  protected static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+
+  // Maintained by the server; a merge patch never sets them.
+  private static final List<String> SERVER_MANAGED_FIELDS = List.of("version", "revision", "updatedAt");
+
+  @Value("${app.pagination.default-limit:100}")
+  private int defaultPageLimit;
+
+  @Value("${app.pagination.max-limit:1000}")
+  private int maxPageLimit;
+
   protected CurrentUser getCurrentUser() {
     return currentUserService.getCurrentUser();
   }
@@ -26,6 +63,128 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  /**
+   * Page request for keyset (cursor) pagination; the requested limit is
+   * clamped to the server-side maximum so that no client can ask for the
+   * whole table in one go.
+   */
+  protected Pageable keysetPage(Integer limit) {
+    return offsetPage(0, limit);
+  }
+
+  /**
+   * Page request for ranked results, where keyset pagination does not
+   * apply; the limit is clamped in the same way.
+   */
+  protected Pageable offsetPage(Integer page, Integer limit) {
+    int size = (limit == null) ? defaultPageLimit : Math.max(1, Math.min(limit, maxPageLimit));
+    return PageRequest.of((page == null) ? 0 : Math.max(0, page), size);
+  }
+
+  /**
+   * Returns the rows of a keyset page as the response body; when there are
+   * more rows, a <code>Link: &lt;...&gt;; rel="next"</code> header carries
+   * the URL of the next page.
+   */
+  protected <T> ResponseEntity<Iterable<T>> keysetResponse(Slice<T> slice, Function<T, Object> cursor) {
+    List<T> rows = slice.getContent();
+    ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+    if (slice.hasNext() && !rows.isEmpty()) {
+      String next = ServletUriComponentsBuilder.fromCurrentRequestUri()
+          .queryParam("after", cursor.apply(rows.get(rows.size() - 1)))
+          .queryParam("limit", slice.getSize())
+          .toUriString();
+      builder.header(HttpHeaders.LINK, "<%s>; rel=\"next\"".formatted(next));
+    }
+    return builder.body(rows);
+  }
+
+  /**
+   * Returns all rows of a table: as the cached JSON (see JsonResponseCache)
+   * unless the client prefers one of the binary formats, in which case the
+   * rows are read and left to the matching message converter.
+   */
+  protected <T> ResponseEntity<?> allRowsResponse(JsonResponseCache cache, Class<T> table,
+      Supplier<? extends Iterable<T>> rows) {
+    ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+    String accept = (attributes == null) ? null : attributes.getRequest().getHeader(HttpHeaders.ACCEPT);
+    if (BinaryFormatsConfig.preferredBinaryType(accept) != null) {
+      return ResponseEntity.ok(rows.get());
+    }
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(cache.render(table, rows));
+  }
+
+  /**
+   * Checks an <code>If-Match</code> header against the row version of the
+   * entity being updated. A missing header means an unconditional update;
+   * otherwise the header must be <code>*</code> or list the strong ETag
+   * <code>"&lt;version&gt;"</code>, or the request fails with
+   * 412 Precondition Failed.
+   */
+  protected void checkIfMatch(String ifMatch, long currentVersion) {
+    if (ifMatch == null || ifMatch.isBlank()) {
+      return;
+    }
+    String current = versionTag(currentVersion);
+    for (String tag : ifMatch.split(",")) {
+      String candidate = tag.trim();
+      if (candidate.equals("*") || candidate.equals(current)) {
+        return;
+      }
+    }
+    throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+        "If-Match %s does not match current version %s".formatted(ifMatch, current));
+  }
+
+  /**
+   * Returns an updated entity with its row version as the ETag, for use
+   * in the next <code>If-Match</code>.
+   */
+  protected <T> ResponseEntity<T> versionedResponse(T entity, long version) {
+    return ResponseEntity.ok().eTag(versionTag(version)).body(entity);
+  }
+
+  private static String versionTag(long version) {
+    return "\"" + version + "\"";
+  }
+
+  /**
+   * Applies an RFC 7396 merge patch to an entity: each member of the patch
+   * replaces that field and <code>null</code> clears it. Key fields and
+   * server-managed fields in the patch are ignored; unknown fields are a
+   * 400. Returns whether any field actually changed, so that a no-op patch
+   * can skip the write.
+   */
+  protected boolean mergePatch(Object entity, JsonNode patch, String... keyFields) {
+    if (patch == null || !patch.isObject()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A merge patch must be a JSON object");
+    }
+    ObjectNode fields = ((ObjectNode) patch).deepCopy();
+    fields.remove(SERVER_MANAGED_FIELDS);
+    fields.remove(List.of(keyFields));
+
+    JsonNode before = objectMapper.valueToTree(entity);
+    try {
+      objectMapper.readerForUpdating(entity)
+          .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+          .readValue(fields);
+    } catch (IOException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid merge patch: " + e.getMessage());
+    }
+    return !before.equals(objectMapper.valueToTree(entity));
+  }
+
+  @ExceptionHandler({ OptimisticLockingFailureException.class })
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  public Object handleConcurrentUpdate(OptimisticLockingFailureException e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", "The row was changed by another request; reload it and try again"
+    );
+  }
+
   @ExceptionHandler({ EntityNotFoundException.class })
   @ResponseStatus(HttpStatus.NOT_FOUND)
   public Object handleGenericException(Throwable e) {
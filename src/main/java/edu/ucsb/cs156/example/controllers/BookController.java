@@ -1,30 +1,58 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.TableVersioned;
+import edu.ucsb.cs156.example.config.CachingConfig;
 import edu.ucsb.cs156.example.entities.Book;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.models.ImportReport;
+import edu.ucsb.cs156.example.models.SearchResults;
 import edu.ucsb.cs156.example.repositories.BookRepository;
+import edu.ucsb.cs156.example.services.BookSearchIndex;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Api(description = "Book")
 @RequestMapping("/api/books")
@@ -35,16 +63,85 @@ public class BookController extends ApiController {
     @Autowired
     BookRepository BookRepository;
 
-    @ApiOperation(value = "List all ucsb dates")
+    @Autowired
+    EntityExportService entityExportService;
+
+    @Autowired
+    BulkWriteService bulkWriteService;
+
+    @Autowired
+    CsvImportService csvImportService;
+
+    @Autowired
+    BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    ChangeFeed changeFeed;
+
+    @Autowired
+    DeltaSyncService deltaSyncService;
+
+    @Autowired
+    JsonResponseCache jsonResponseCache;
+
+    @ApiOperation(value = "List all books, or one page of them when after or limit is given")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(Book.class)
     @GetMapping("/all")
-    public Iterable<Book> allBooks() {
-        Iterable<Book> dates = BookRepository.findAll();
-        return dates;
+    public ResponseEntity<?> allBooks(
+            @ApiParam("id of the last book on the previous page") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of books per page") @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return allRowsResponse(jsonResponseCache, Book.class, BookRepository::findAll);
+        }
+
+        Slice<Book> page = BookRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, keysetPage(limit));
+        return keysetResponse(page, Book::getId);
+    }
+
+    @ApiOperation(value = "The books created, updated or deleted since a version; pass the returned version next time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(Book.class)
+    @GetMapping(value = "/all", params = "since")
+    public DeltaSync<Book> booksSince(
+            @ApiParam("version returned by the previous sync, or 0 for everything") @RequestParam long since) {
+        return deltaSyncService.since(Book.class, since, BookRepository::findByRevisionGreaterThanOrderByRevisionAsc,
+                BookRepository::findAll, Book::getId);
+    }
+
+    @ApiOperation(value = "Stream all books as NDJSON, or as CSV with Accept: text/csv")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return entityExportService.export(Book.class, BookRepository::streamAll, accept);
+    }
+
+    @ApiOperation(value = "Stream book creates, updates and deletes as server-sent events")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter bookChanges(
+            @ApiParam("id of the last event received; the events after it are replayed")
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) Long lastEventId) {
+        return changeFeed.subscribe(Book.class, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
+    @ApiOperation(value = "Search books by words in the title, author or genre, best matches first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/search")
+    public SearchResults<Book> searchBooks(
+            @ApiParam("words to search for") @RequestParam String q,
+            @ApiParam("page number, starting from 0") @RequestParam(required = false) Integer page,
+            @ApiParam("maximum number of books per page") @RequestParam(required = false) Integer limit) {
+        return bookSearchIndex.search(q, offsetPage(page, limit));
     }
 
     @ApiOperation(value = "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(Book.class)
+    @Cacheable(cacheNames = CachingConfig.BOOKS, key = "#id")
     @GetMapping("")
     public Book getById(
             @ApiParam("id") @RequestParam Long id) {
@@ -75,34 +172,100 @@ public class BookController extends ApiController {
         return savedBook;
     }
 
+    @ApiOperation(value = "Create many books at once (JSON array); ids are assigned by the server")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<Book> postBooks(
+            @RequestBody @Valid List<Book> books) {
+        books.forEach(book -> book.setId(0));
+        bulkWriteService.insertAll(books);
+        return books;
+    }
+
+    @ApiOperation(value = "Import books from a CSV file with a header row; returns a report of the rows that were rejected")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ImportReport importBooks(
+            @ApiParam("CSV file") @RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return csvImportService.importCsv(in, Book.class, this::importCheck);
+        }
+    }
+
     @ApiOperation(value = "Delete a Book")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.BOOKS, key = "#id")
     @DeleteMapping("")
     public Object deleteBook(
             @ApiParam("id") @RequestParam Long id) {
-        Book Book = BookRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Book.class, id));
-
-        BookRepository.delete(Book);
+        if (bulkWriteService.deleteAll(Book.class, List.of(id), key -> Book.builder().id(key).build()) == 0) {
+            throw new EntityNotFoundException(Book.class, id);
+        }
         return genericMessage("Book with id %s deleted".formatted(id));
     }
 
+    @ApiOperation(value = "Delete many books by id (JSON array), in one statement")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.BOOKS, allEntries = true)
+    @DeleteMapping("/bulk")
+    public Object deleteBooks(
+            @ApiParam("ids of the books to delete") @RequestBody List<Long> ids) {
+        int deleted = bulkWriteService.deleteAll(Book.class, ids, key -> Book.builder().id(key).build());
+        return genericMessage("%d of %d Books deleted".formatted(deleted, ids.size()));
+    }
+
     @ApiOperation(value = "Update a single date")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.BOOKS, key = "#id")
     @PutMapping("")
-    public Book updateBook(
+    public ResponseEntity<Book> updateBook(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("optional row version from a previous ETag; the update fails with 412 if the row has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid Book incoming) {
 
         Book Book = BookRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Book.class, id));
+        checkIfMatch(ifMatch, Book.getVersion());
 
         Book.setTitle(incoming.getTitle());
         Book.setAuthor(incoming.getAuthor());
         Book.setGenre(incoming.getGenre());
 
-        BookRepository.save(Book);
+        Book = BookRepository.save(Book);
 
-        return Book;
+        return versionedResponse(Book, Book.getVersion());
+    }
+
+    @ApiOperation(value = "Update some fields of a single book (JSON Merge Patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.BOOKS, key = "#id")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<Book> patchBook(
+            @ApiParam("id") @RequestParam Long id,
+            @ApiParam("optional row version from a previous ETag; the update fails with 412 if the row has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        Book Book = BookRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(Book.class, id));
+        checkIfMatch(ifMatch, Book.getVersion());
+
+        // an unchanged row is not written at all
+        if (mergePatch(Book, patch, "id")) {
+            Book = BookRepository.save(Book);
+        }
+
+        return versionedResponse(Book, Book.getVersion());
+    }
+
+    // Why a row of a CSV import may not be saved, or null if it may;
+    // ids in the file are ignored, new ones are assigned
+    private String importCheck(Book book) {
+        book.setId(0);
+        if (!StringUtils.hasText(book.getTitle())) {
+            return "title is required";
+        }
+        return null;
     }
 }
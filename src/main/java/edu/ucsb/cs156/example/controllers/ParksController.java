@@ -1,30 +1,63 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.TableVersioned;
+import edu.ucsb.cs156.example.config.CachingConfig;
 import edu.ucsb.cs156.example.entities.Park;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.models.ImportReport;
+import edu.ucsb.cs156.example.models.RatingStats;
 import edu.ucsb.cs156.example.repositories.ParkRepository;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
+import edu.ucsb.cs156.example.services.ParkRatingStats;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Api(description = "Parks")
 @RequestMapping("/api/parks")
@@ -35,16 +68,107 @@ public class ParksController extends ApiController {
     @Autowired
     ParkRepository parkRepository;
 
-    @ApiOperation(value = "List all parks")
+    @Autowired
+    EntityExportService entityExportService;
+
+    @Autowired
+    BulkWriteService bulkWriteService;
+
+    @Autowired
+    CsvImportService csvImportService;
+
+    @Autowired
+    ParkRatingStats parkRatingStats;
+
+    @Autowired
+    ChangeFeed changeFeed;
+
+    @Autowired
+    DeltaSyncService deltaSyncService;
+
+    @Autowired
+    JsonResponseCache jsonResponseCache;
+
+    @ApiOperation(value = "List all parks, or one page of them when after or limit is given")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(Park.class)
     @GetMapping("/all")
-    public Iterable<Park> allParks() {
-        Iterable<Park> parks = parkRepository.findAll();
-        return parks;
+    public ResponseEntity<?> allParks(
+            @ApiParam("id of the last park on the previous page") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of parks per page") @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return allRowsResponse(jsonResponseCache, Park.class, parkRepository::findAll);
+        }
+
+        Slice<Park> page = parkRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, keysetPage(limit));
+        return keysetResponse(page, Park::getId);
+    }
+
+    @ApiOperation(value = "The parks created, updated or deleted since a version; pass the returned version next time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(Park.class)
+    @GetMapping(value = "/all", params = "since")
+    public DeltaSync<Park> parksSince(
+            @ApiParam("version returned by the previous sync, or 0 for everything") @RequestParam long since) {
+        return deltaSyncService.since(Park.class, since, parkRepository::findByRevisionGreaterThanOrderByRevisionAsc,
+                parkRepository::findAll, Park::getId);
+    }
+
+    @ApiOperation(value = "Stream all parks as NDJSON, or as CSV with Accept: text/csv")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportParks(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return entityExportService.export(Park.class, parkRepository::streamAll, accept);
+    }
+
+    @ApiOperation(value = "Stream park creates, updates and deletes as server-sent events")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter parkChanges(
+            @ApiParam("id of the last event received; the events after it are replayed")
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) Long lastEventId) {
+        return changeFeed.subscribe(Park.class, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
+    @ApiOperation(value = "List the parks, or those with a rating in a range, sorted by id, name or rating (highest first)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "", params = "!id")
+    public List<Park> searchParks(
+            @ApiParam("lowest rating to include") @RequestParam(required = false) Double minRating,
+            @ApiParam("highest rating to include") @RequestParam(required = false) Double maxRating,
+            @ApiParam("id, name or rating") @RequestParam(defaultValue = "id") String sort,
+            @ApiParam("maximum number of parks") @RequestParam(required = false) Integer limit) {
+        Sort order = switch (sort) {
+            case "id" -> Sort.by("id");
+            case "name" -> Sort.by("name", "id");
+            case "rating" -> Sort.by(Sort.Order.desc("rating"), Sort.Order.asc("id"));
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sort must be one of id, name or rating");
+        };
+        Pageable page = PageRequest.of(0, keysetPage(limit).getPageSize(), order);
+        // without a range, unrated parks (a NULL rating) are listed too
+        if (minRating == null && maxRating == null) {
+            return parkRepository.findAllBy(page);
+        }
+        return parkRepository.findByRatingBetween(
+                minRating == null ? -Double.MAX_VALUE : minRating,
+                maxRating == null ? Double.MAX_VALUE : maxRating,
+                page);
+    }
+
+    @ApiOperation(value = "Count, mean and histogram of the park ratings")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/stats")
+    public RatingStats parkRatingStats() {
+        return parkRatingStats.getStats();
     }
 
     @ApiOperation(value = "Get a single park")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(Park.class)
+    @Cacheable(cacheNames = CachingConfig.PARKS, key = "#id")
     @GetMapping("")
     public Park getById(
             @ApiParam("id") @RequestParam Long id) {
@@ -60,7 +184,7 @@ public class ParksController extends ApiController {
     public Park postPark(
             @ApiParam("name") @RequestParam String name,
             @ApiParam("address") @RequestParam String address,
-            @ApiParam("rating") @RequestParam String rating)
+            @ApiParam("rating") @RequestParam Double rating)
             throws JsonProcessingException {
 
         Park park = new Park();
@@ -73,34 +197,100 @@ public class ParksController extends ApiController {
         return savedPark;
     }
 
+    @ApiOperation(value = "Create many parks at once (JSON array); ids are assigned by the server")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<Park> postParks(
+            @RequestBody @Valid List<Park> parks) {
+        parks.forEach(park -> park.setId(0));
+        bulkWriteService.insertAll(parks);
+        return parks;
+    }
+
+    @ApiOperation(value = "Import parks from a CSV file with a header row; returns a report of the rows that were rejected")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ImportReport importParks(
+            @ApiParam("CSV file") @RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return csvImportService.importCsv(in, Park.class, this::importCheck);
+        }
+    }
+
     @ApiOperation(value = "Delete a Park")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.PARKS, key = "#id")
     @DeleteMapping("")
     public Object deletePark(
             @ApiParam("id") @RequestParam Long id) {
-        Park park = parkRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Park.class, id));
-
-        parkRepository.delete(park);
+        if (bulkWriteService.deleteAll(Park.class, List.of(id), key -> Park.builder().id(key).build()) == 0) {
+            throw new EntityNotFoundException(Park.class, id);
+        }
         return genericMessage("Park with id %s deleted".formatted(id));
     }
 
+    @ApiOperation(value = "Delete many parks by id (JSON array), in one statement")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.PARKS, allEntries = true)
+    @DeleteMapping("/bulk")
+    public Object deleteParks(
+            @ApiParam("ids of the parks to delete") @RequestBody List<Long> ids) {
+        int deleted = bulkWriteService.deleteAll(Park.class, ids, key -> Park.builder().id(key).build());
+        return genericMessage("%d of %d Parks deleted".formatted(deleted, ids.size()));
+    }
+
     @ApiOperation(value = "Update a single park")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.PARKS, key = "#id")
     @PutMapping("")
-    public Park updatePark(
+    public ResponseEntity<Park> updatePark(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("optional row version from a previous ETag; the update fails with 412 if the row has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid Park incoming) {
 
         Park park = parkRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Park.class, id));
+        checkIfMatch(ifMatch, park.getVersion());
 
         park.setName(incoming.getName());
         park.setAddress(incoming.getAddress());
         park.setRating(incoming.getRating());
 
-        parkRepository.save(park);
+        park = parkRepository.save(park);
 
-        return park;
+        return versionedResponse(park, park.getVersion());
+    }
+
+    @ApiOperation(value = "Update some fields of a single park (JSON Merge Patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.PARKS, key = "#id")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<Park> patchPark(
+            @ApiParam("id") @RequestParam Long id,
+            @ApiParam("optional row version from a previous ETag; the update fails with 412 if the row has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        Park park = parkRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(Park.class, id));
+        checkIfMatch(ifMatch, park.getVersion());
+
+        // an unchanged row is not written at all
+        if (mergePatch(park, patch, "id")) {
+            park = parkRepository.save(park);
+        }
+
+        return versionedResponse(park, park.getVersion());
+    }
+
+    // Why a row of a CSV import may not be saved, or null if it may;
+    // ids in the file are ignored, new ones are assigned
+    private String importCheck(Park park) {
+        park.setId(0);
+        if (!StringUtils.hasText(park.getName())) {
+            return "name is required";
+        }
+        return null;
     }
 }
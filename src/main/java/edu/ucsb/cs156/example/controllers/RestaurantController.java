@@ -1,26 +1,57 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.TableVersioned;
+import edu.ucsb.cs156.example.config.CachingConfig;
 import edu.ucsb.cs156.example.entities.Restaurant;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.models.ImportReport;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
+import edu.ucsb.cs156.example.services.RestaurantAutocomplete;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
 
 @Api(description = "Restaurant")
 @RequestMapping("/api/restaurant")
@@ -31,16 +62,91 @@ public class RestaurantController extends ApiController {
     @Autowired
     RestaurantRepository restaurantRepository;
 
-    @ApiOperation(value = "List all restaurants")
+    @Autowired
+    EntityExportService entityExportService;
+
+    @Autowired
+    BulkWriteService bulkWriteService;
+
+    @Autowired
+    CsvImportService csvImportService;
+
+    @Autowired
+    RestaurantAutocomplete restaurantAutocomplete;
+
+    @Autowired
+    ChangeFeed changeFeed;
+
+    @Autowired
+    DeltaSyncService deltaSyncService;
+
+    @Autowired
+    JsonResponseCache jsonResponseCache;
+
+    @ApiOperation(value = "List all restaurants, or one page of them when after or limit is given")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(Restaurant.class)
     @GetMapping("/all")
-    public Iterable<Restaurant> allRestaurants() {
-        Iterable<Restaurant> restaurants = restaurantRepository.findAll();
-        return restaurants;
+    public ResponseEntity<?> allRestaurants(
+            @ApiParam("id of the last restaurant on the previous page") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of restaurants per page") @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return allRowsResponse(jsonResponseCache, Restaurant.class, restaurantRepository::findAll);
+        }
+
+        Slice<Restaurant> page = restaurantRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, keysetPage(limit));
+        return keysetResponse(page, Restaurant::getId);
+    }
+
+    @ApiOperation(value = "The restaurants created, updated or deleted since a version; pass the returned version next time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(Restaurant.class)
+    @GetMapping(value = "/all", params = "since")
+    public DeltaSync<Restaurant> restaurantsSince(
+            @ApiParam("version returned by the previous sync, or 0 for everything") @RequestParam long since) {
+        return deltaSyncService.since(Restaurant.class, since, restaurantRepository::findByRevisionGreaterThanOrderByRevisionAsc,
+                restaurantRepository::findAll, Restaurant::getId);
+    }
+
+    @ApiOperation(value = "Stream all restaurants as NDJSON, or as CSV with Accept: text/csv")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportRestaurants(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return entityExportService.export(Restaurant.class, restaurantRepository::streamAll, accept);
+    }
+
+    @ApiOperation(value = "Stream restaurant creates, updates and deletes as server-sent events")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter restaurantChanges(
+            @ApiParam("id of the last event received; the events after it are replayed")
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) Long lastEventId) {
+        return changeFeed.subscribe(Restaurant.class, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
+    @ApiOperation(value = "Suggest restaurant names, cities, states or zips that start with a prefix")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/autocomplete")
+    public List<String> autocomplete(
+            @ApiParam("what has been typed so far") @RequestParam String prefix,
+            @ApiParam("name, city, state or zip") @RequestParam(defaultValue = "name") String field,
+            @ApiParam("maximum number of suggestions") @RequestParam(defaultValue = "10") int limit) {
+        RestaurantAutocomplete.Field f;
+        try {
+            f = RestaurantAutocomplete.Field.parse(field);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "field must be one of name, city, state or zip");
+        }
+        return restaurantAutocomplete.complete(f, prefix, keysetPage(limit).getPageSize());
     }
 
     @ApiOperation(value = "Get a single restaurant")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(Restaurant.class)
+    @Cacheable(cacheNames = CachingConfig.RESTAURANTS, key = "#id")
     @GetMapping("")
     public Restaurant getById(
             @ApiParam("id") @RequestParam Long id) {
@@ -76,27 +182,61 @@ public class RestaurantController extends ApiController {
         return savedRestaurant;
     }
 
+    @ApiOperation(value = "Create many restaurants at once (JSON array); ids are assigned by the server")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<Restaurant> postRestaurants(
+            @RequestBody @Valid List<Restaurant> restaurants) {
+        restaurants.forEach(restaurant -> restaurant.setId(0));
+        bulkWriteService.insertAll(restaurants);
+        return restaurants;
+    }
+
+    @ApiOperation(value = "Import restaurants from a CSV file with a header row; returns a report of the rows that were rejected")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ImportReport importRestaurants(
+            @ApiParam("CSV file") @RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return csvImportService.importCsv(in, Restaurant.class, this::importCheck);
+        }
+    }
+
     @ApiOperation(value = "Delete a restaurant")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.RESTAURANTS, key = "#id")
     @DeleteMapping("")
     public Object deleteRestaurant(
             @ApiParam("id") @RequestParam Long id) {
-        Restaurant restaurant = restaurantRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
-
-        restaurantRepository.delete(restaurant);
+        if (bulkWriteService.deleteAll(Restaurant.class, List.of(id), key -> Restaurant.builder().id(key).build()) == 0) {
+            throw new EntityNotFoundException(Restaurant.class, id);
+        }
         return genericMessage("Restaurant with id %s deleted".formatted(id));
     }
 
+    @ApiOperation(value = "Delete many restaurants by id (JSON array), in one statement")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.RESTAURANTS, allEntries = true)
+    @DeleteMapping("/bulk")
+    public Object deleteRestaurants(
+            @ApiParam("ids of the restaurants to delete") @RequestBody List<Long> ids) {
+        int deleted = bulkWriteService.deleteAll(Restaurant.class, ids, key -> Restaurant.builder().id(key).build());
+        return genericMessage("%d of %d Restaurants deleted".formatted(deleted, ids.size()));
+    }
+
     @ApiOperation(value = "Update a single restaurant")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.RESTAURANTS, key = "#id")
     @PutMapping("")
-    public Restaurant updateRestaurant(
+    public ResponseEntity<Restaurant> updateRestaurant(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("optional row version from a previous ETag; the update fails with 412 if the row has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid Restaurant incoming) {
 
         Restaurant restaurant = restaurantRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
+        checkIfMatch(ifMatch, restaurant.getVersion());
 
         restaurant.setName(incoming.getName());
         restaurant.setAddress(incoming.getAddress());
@@ -105,9 +245,40 @@ public class RestaurantController extends ApiController {
         restaurant.setZip(incoming.getZip());
         restaurant.setDescription(incoming.getDescription());
 
-        restaurantRepository.save(restaurant);
+        restaurant = restaurantRepository.save(restaurant);
 
-        return restaurant;
+        return versionedResponse(restaurant, restaurant.getVersion());
     }
 
+    @ApiOperation(value = "Update some fields of a single restaurant (JSON Merge Patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.RESTAURANTS, key = "#id")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<Restaurant> patchRestaurant(
+            @ApiParam("id") @RequestParam Long id,
+            @ApiParam("optional row version from a previous ETag; the update fails with 412 if the row has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        Restaurant restaurant = restaurantRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
+        checkIfMatch(ifMatch, restaurant.getVersion());
+
+        // an unchanged row is not written at all
+        if (mergePatch(restaurant, patch, "id")) {
+            restaurant = restaurantRepository.save(restaurant);
+        }
+
+        return versionedResponse(restaurant, restaurant.getVersion());
+    }
+
+    // Why a row of a CSV import may not be saved, or null if it may;
+    // ids in the file are ignored, new ones are assigned
+    private String importCheck(Restaurant restaurant) {
+        restaurant.setId(0);
+        if (!StringUtils.hasText(restaurant.getName())) {
+            return "name is required";
+        }
+        return null;
+    }
 }
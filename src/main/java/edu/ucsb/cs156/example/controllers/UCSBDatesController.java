@@ -1,30 +1,57 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.TableVersioned;
+import edu.ucsb.cs156.example.config.CachingConfig;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.models.ImportReport;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
+import edu.ucsb.cs156.example.services.UCSBDateCalendar;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Api(description = "UCSBDates")
 @RequestMapping("/api/ucsbdates")
@@ -35,16 +62,101 @@ public class UCSBDatesController extends ApiController {
     @Autowired
     UCSBDateRepository ucsbDateRepository;
 
-    @ApiOperation(value = "List all ucsb dates")
+    @Autowired
+    EntityExportService entityExportService;
+
+    @Autowired
+    BulkWriteService bulkWriteService;
+
+    @Autowired
+    CsvImportService csvImportService;
+
+    @Autowired
+    UCSBDateCalendar ucsbDateCalendar;
+
+    @Autowired
+    ChangeFeed changeFeed;
+
+    @Autowired
+    DeltaSyncService deltaSyncService;
+
+    @Autowired
+    JsonResponseCache jsonResponseCache;
+
+    @ApiOperation(value = "List all ucsb dates, or one page of them when after or limit is given")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(UCSBDate.class)
     @GetMapping("/all")
-    public Iterable<UCSBDate> allUCSBDates() {
-        Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-        return dates;
+    public ResponseEntity<?> allUCSBDates(
+            @ApiParam("id of the last date on the previous page") @RequestParam(required = false) Long after,
+            @ApiParam("maximum number of dates per page") @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return allRowsResponse(jsonResponseCache, UCSBDate.class, ucsbDateRepository::findAll);
+        }
+
+        Slice<UCSBDate> page = ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, keysetPage(limit));
+        return keysetResponse(page, UCSBDate::getId);
+    }
+
+    @ApiOperation(value = "The ucsb dates created, updated or deleted since a version; pass the returned version next time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(UCSBDate.class)
+    @GetMapping(value = "/all", params = "since")
+    public DeltaSync<UCSBDate> ucsbDatesSince(
+            @ApiParam("version returned by the previous sync, or 0 for everything") @RequestParam long since) {
+        return deltaSyncService.since(UCSBDate.class, since, ucsbDateRepository::findByRevisionGreaterThanOrderByRevisionAsc,
+                ucsbDateRepository::findAll, UCSBDate::getId);
+    }
+
+    @ApiOperation(value = "Stream all ucsb dates as NDJSON, or as CSV with Accept: text/csv")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUCSBDates(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return entityExportService.export(UCSBDate.class, ucsbDateRepository::streamAll, accept);
+    }
+
+    @ApiOperation(value = "Stream ucsb date creates, updates and deletes as server-sent events")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter ucsbDateChanges(
+            @ApiParam("id of the last event received; the events after it are replayed")
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) Long lastEventId) {
+        return changeFeed.subscribe(UCSBDate.class, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
+    @ApiOperation(value = "List the dates in a quarter")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/quarter")
+    public Iterable<UCSBDate> ucsbDatesInQuarter(
+            @ApiParam("quarter, in the format YYYYQ (e.g. 20231 = Winter 2023)") @RequestParam String quarterYYYYQ) {
+        return ucsbDateRepository.findAllByQuarterYYYYQ(quarterYYYYQ);
+    }
+
+    @ApiOperation(value = "List the dates from one time (inclusive) to another (exclusive), earliest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/range")
+    public List<UCSBDate> ucsbDatesInRange(
+            @ApiParam("start (in iso format, e.g. YYYY-mm-ddTHH:MM:SS)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @ApiParam("end (in iso format, e.g. YYYY-mm-ddTHH:MM:SS)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @ApiParam("maximum number of dates") @RequestParam(required = false) Integer limit) {
+        return ucsbDateCalendar.between(from, to, keysetPage(limit).getPageSize());
+    }
+
+    @ApiOperation(value = "List the next n dates after now, earliest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/upcoming")
+    public List<UCSBDate> upcomingUCSBDates(
+            @ApiParam("how many dates to return") @RequestParam(defaultValue = "5") int n) {
+        return ucsbDateCalendar.upcoming(LocalDateTime.now(), keysetPage(n).getPageSize());
     }
 
     @ApiOperation(value = "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(UCSBDate.class)
+    @Cacheable(cacheNames = CachingConfig.UCSB_DATES, key = "#id")
     @GetMapping("")
     public UCSBDate getById(
             @ApiParam("id") @RequestParam Long id) {
@@ -78,34 +190,106 @@ public class UCSBDatesController extends ApiController {
         return savedUcsbDate;
     }
 
+    @ApiOperation(value = "Create many ucsb dates at once (JSON array); ids are assigned by the server")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public Iterable<UCSBDate> postUCSBDates(
+            @RequestBody @Valid List<UCSBDate> ucsbDates) {
+        ucsbDates.forEach(ucsbDate -> ucsbDate.setId(0));
+        bulkWriteService.insertAll(ucsbDates);
+        return ucsbDates;
+    }
+
+    @ApiOperation(value = "Import ucsb dates from a CSV file with a header row; returns a report of the rows that were rejected")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ImportReport importUCSBDates(
+            @ApiParam("CSV file") @RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return csvImportService.importCsv(in, UCSBDate.class, this::importCheck);
+        }
+    }
+
     @ApiOperation(value = "Delete a UCSBDate")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DATES, key = "#id")
     @DeleteMapping("")
     public Object deleteUCSBDate(
             @ApiParam("id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDateRepository.delete(ucsbDate);
+        if (bulkWriteService.deleteAll(UCSBDate.class, List.of(id), key -> UCSBDate.builder().id(key).build()) == 0) {
+            throw new EntityNotFoundException(UCSBDate.class, id);
+        }
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
+    @ApiOperation(value = "Delete many dates by id (JSON array), in one statement")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DATES, allEntries = true)
+    @DeleteMapping("/bulk")
+    public Object deleteUCSBDates(
+            @ApiParam("ids of the dates to delete") @RequestBody List<Long> ids) {
+        int deleted = bulkWriteService.deleteAll(UCSBDate.class, ids, key -> UCSBDate.builder().id(key).build());
+        return genericMessage("%d of %d UCSBDates deleted".formatted(deleted, ids.size()));
+    }
+
     @ApiOperation(value = "Update a single date")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DATES, key = "#id")
     @PutMapping("")
-    public UCSBDate updateUCSBDate(
+    public ResponseEntity<UCSBDate> updateUCSBDate(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("optional row version from a previous ETag; the update fails with 412 if the row has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid UCSBDate incoming) {
 
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+        checkIfMatch(ifMatch, ucsbDate.getVersion());
 
         ucsbDate.setQuarterYYYYQ(incoming.getQuarterYYYYQ());
         ucsbDate.setName(incoming.getName());
         ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
 
-        ucsbDateRepository.save(ucsbDate);
+        ucsbDate = ucsbDateRepository.save(ucsbDate);
 
-        return ucsbDate;
+        return versionedResponse(ucsbDate, ucsbDate.getVersion());
+    }
+
+    @ApiOperation(value = "Update some fields of a single date (JSON Merge Patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DATES, key = "#id")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<UCSBDate> patchUCSBDate(
+            @ApiParam("id") @RequestParam Long id,
+            @ApiParam("optional row version from a previous ETag; the update fails with 412 if the row has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+        checkIfMatch(ifMatch, ucsbDate.getVersion());
+
+        // an unchanged row is not written at all
+        if (mergePatch(ucsbDate, patch, "id")) {
+            ucsbDate = ucsbDateRepository.save(ucsbDate);
+        }
+
+        return versionedResponse(ucsbDate, ucsbDate.getVersion());
+    }
+
+    // Why a row of a CSV import may not be saved, or null if it may;
+    // ids in the file are ignored, new ones are assigned
+    private String importCheck(UCSBDate ucsbDate) {
+        ucsbDate.setId(0);
+        if (!StringUtils.hasText(ucsbDate.getName())) {
+            return "name is required";
+        }
+        if (ucsbDate.getQuarterYYYYQ() == null || !ucsbDate.getQuarterYYYYQ().matches("\\d{4}[1-4]")) {
+            return "quarterYYYYQ must look like 20222";
+        }
+        if (ucsbDate.getLocalDateTime() == null) {
+            return "localDateTime is required";
+        }
+        return null;
     }
 }
@@ -1,26 +1,61 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.aop.TableVersioned;
+import edu.ucsb.cs156.example.config.CachingConfig;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CommonsDistance;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.models.ImportReport;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.DiningCommonsSpatialIndex;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
 
 @Api(description = "UCSBDiningCommons")
 @RequestMapping("/api/ucsbdiningcommons")
@@ -31,16 +66,106 @@ public class UCSBDiningCommonsController extends ApiController {
     @Autowired
     UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
-    @ApiOperation(value = "List all ucsb dining commons")
+    @Autowired
+    EntityExportService entityExportService;
+
+    @Autowired
+    BulkWriteService bulkWriteService;
+
+    @Autowired
+    CsvImportService csvImportService;
+
+    @Autowired
+    DiningCommonsSpatialIndex diningCommonsSpatialIndex;
+
+    @Autowired
+    ChangeFeed changeFeed;
+
+    @Autowired
+    DeltaSyncService deltaSyncService;
+
+    @Autowired
+    JsonResponseCache jsonResponseCache;
+
+    @ApiOperation(value = "List all ucsb dining commons, or one page of them when after or limit is given")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(UCSBDiningCommons.class)
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommons> allCommonss() {
-        Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-        return commons;
+    public ResponseEntity<?> allCommonss(
+            @ApiParam("code of the last commons on the previous page") @RequestParam(required = false) String after,
+            @ApiParam("maximum number of commons per page") @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return allRowsResponse(jsonResponseCache, UCSBDiningCommons.class, ucsbDiningCommonsRepository::findAll);
+        }
+
+        Slice<UCSBDiningCommons> page = ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(
+                after == null ? "" : after, keysetPage(limit));
+        return keysetResponse(page, UCSBDiningCommons::getCode);
+    }
+
+    @ApiOperation(value = "The ucsb dining commons created, updated or deleted since a version; pass the returned version next time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(UCSBDiningCommons.class)
+    @GetMapping(value = "/all", params = "since")
+    public DeltaSync<UCSBDiningCommons> commonsSince(
+            @ApiParam("version returned by the previous sync, or 0 for everything") @RequestParam long since) {
+        return deltaSyncService.since(UCSBDiningCommons.class, since, ucsbDiningCommonsRepository::findByRevisionGreaterThanOrderByRevisionAsc,
+                ucsbDiningCommonsRepository::findAll, UCSBDiningCommons::getCode);
+    }
+
+    @ApiOperation(value = "Stream all ucsb dining commons as NDJSON, or as CSV with Accept: text/csv")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCommonss(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return entityExportService.export(UCSBDiningCommons.class, ucsbDiningCommonsRepository::streamAll, accept);
+    }
+
+    @ApiOperation(value = "Stream ucsb dining commons creates, updates and deletes as server-sent events")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter commonsChanges(
+            @ApiParam("id of the last event received; the events after it are replayed")
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) Long lastEventId) {
+        return changeFeed.subscribe(UCSBDiningCommons.class, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
+    @ApiOperation(value = "The k commons nearest to a point, nearest first, with their distances in meters")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/nearest")
+    public List<CommonsDistance> nearestCommons(
+            @ApiParam("latitude, in degrees") @RequestParam double lat,
+            @ApiParam("longitude, in degrees") @RequestParam double lon,
+            @ApiParam("how many commons to return") @RequestParam(defaultValue = "5") int k) {
+        checkLatitude(lat);
+        checkLongitude(lon);
+        // k is bounded like a page of results
+        return diningCommonsSpatialIndex.nearest(lat, lon, keysetPage(k).getPageSize());
+    }
+
+    @ApiOperation(value = "The commons inside a latitude/longitude box")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/within")
+    public List<UCSBDiningCommons> commonsWithin(
+            @ApiParam("southern edge, in degrees") @RequestParam double minLat,
+            @ApiParam("northern edge, in degrees") @RequestParam double maxLat,
+            @ApiParam("western edge, in degrees") @RequestParam double minLon,
+            @ApiParam("eastern edge, in degrees") @RequestParam double maxLon) {
+        checkLatitude(minLat);
+        checkLatitude(maxLat);
+        checkLongitude(minLon);
+        checkLongitude(maxLon);
+        if (minLat > maxLat || minLon > maxLon) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "the minimums must not be greater than the maximums");
+        }
+        return diningCommonsSpatialIndex.within(minLat, maxLat, minLon, maxLon);
     }
 
     @ApiOperation(value = "Get a single commons")
     @PreAuthorize("hasRole('ROLE_USER')")
+    @TableVersioned(UCSBDiningCommons.class)
+    @Cacheable(cacheNames = CachingConfig.UCSB_DINING_COMMONS, key = "#code")
     @GetMapping("")
     public UCSBDiningCommons getById(
             @ApiParam("code") @RequestParam String code) {
@@ -52,6 +177,7 @@ public class UCSBDiningCommonsController extends ApiController {
 
     @ApiOperation(value = "Create a new commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DINING_COMMONS, key = "#code")
     @PostMapping("/post")
     public UCSBDiningCommons postCommons(
         @ApiParam("code") @RequestParam String code,
@@ -78,27 +204,64 @@ public class UCSBDiningCommonsController extends ApiController {
         return savedCommons;
     }
 
+    @ApiOperation(value = "Create many ucsb dining commons at once (JSON array); fails without saving any if a code is repeated or already exists")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DINING_COMMONS, allEntries = true)
+    @PostMapping("/bulk")
+    public Iterable<UCSBDiningCommons> postCommonsBulk(
+            @RequestBody @Valid List<UCSBDiningCommons> commons) {
+        checkNewCodes(commons);
+        bulkWriteService.insertAll(commons);
+        return commons;
+    }
+
+    @ApiOperation(value = "Import ucsb dining commons from a CSV file with a header row; returns a report of the rows that were rejected")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DINING_COMMONS, allEntries = true)
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ImportReport importCommons(
+            @ApiParam("CSV file") @RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            Set<String> seen = new HashSet<>();
+            return csvImportService.importCsv(in, UCSBDiningCommons.class, commons -> importCheck(commons, seen));
+        }
+    }
+
     @ApiOperation(value = "Delete a UCSBDiningCommons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DINING_COMMONS, key = "#code")
     @DeleteMapping("")
     public Object deleteCommons(
             @ApiParam("code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-        ucsbDiningCommonsRepository.delete(commons);
+        if (bulkWriteService.deleteAll(UCSBDiningCommons.class, List.of(code), key -> UCSBDiningCommons.builder().code(key).build()) == 0) {
+            throw new EntityNotFoundException(UCSBDiningCommons.class, code);
+        }
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
+    @ApiOperation(value = "Delete many dining commons by code (JSON array), in one statement")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DINING_COMMONS, allEntries = true)
+    @DeleteMapping("/bulk")
+    public Object deleteManyCommons(
+            @ApiParam("codes of the dining commons to delete") @RequestBody List<String> codes) {
+        int deleted = bulkWriteService.deleteAll(UCSBDiningCommons.class, codes, key -> UCSBDiningCommons.builder().code(key).build());
+        return genericMessage("%d of %d UCSBDiningCommons deleted".formatted(deleted, codes.size()));
+    }
+
     @ApiOperation(value = "Update a single commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DINING_COMMONS, key = "#code")
     @PutMapping("")
-    public UCSBDiningCommons updateCommons(
+    public ResponseEntity<UCSBDiningCommons> updateCommons(
             @ApiParam("code") @RequestParam String code,
+            @ApiParam("optional row version from a previous ETag; the update fails with 412 if the row has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid UCSBDiningCommons incoming) {
 
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+        checkIfMatch(ifMatch, commons.getVersion());
 
 
         commons.setName(incoming.getName());  
@@ -108,8 +271,88 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLatitude(incoming.getLatitude());
         commons.setLongitude(incoming.getLongitude());
 
-        ucsbDiningCommonsRepository.save(commons);
+        commons = ucsbDiningCommonsRepository.save(commons);
 
-        return commons;
+        return versionedResponse(commons, commons.getVersion());
+    }
+
+    @ApiOperation(value = "Update some fields of a single commons (JSON Merge Patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @CacheEvict(cacheNames = CachingConfig.UCSB_DINING_COMMONS, key = "#code")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<UCSBDiningCommons> patchCommons(
+            @ApiParam("code") @RequestParam String code,
+            @ApiParam("optional row version from a previous ETag; the update fails with 412 if the row has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
+                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+        checkIfMatch(ifMatch, commons.getVersion());
+
+        // an unchanged row is not written at all
+        if (mergePatch(commons, patch, "code")) {
+            commons = ucsbDiningCommonsRepository.save(commons);
+        }
+
+        return versionedResponse(commons, commons.getVersion());
+    }
+
+    // The codes are primary keys, so a single repeated or existing code would
+    // fail the whole batch in the database; name every conflict up front instead
+    private void checkNewCodes(List<UCSBDiningCommons> commons) {
+        Set<String> codes = new HashSet<>();
+        Set<String> repeated = new TreeSet<>();
+        for (UCSBDiningCommons c : commons) {
+            if (!StringUtils.hasText(c.getCode())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "every commons needs a code");
+            }
+            if (!codes.add(c.getCode())) {
+                repeated.add(c.getCode());
+            }
+        }
+        if (!repeated.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "codes appear more than once: " + String.join(", ", repeated));
+        }
+
+        Set<String> existing = new TreeSet<>();
+        ucsbDiningCommonsRepository.findAllById(codes).forEach(c -> existing.add(c.getCode()));
+        if (!existing.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "codes already exist: " + String.join(", ", existing));
+        }
+    }
+
+    // Why a row of a CSV import may not be saved, or null if it may. The code
+    // is the primary key, so a code seen earlier in the file or already in
+    // the table is rejected here rather than failing the whole import.
+    private String importCheck(UCSBDiningCommons commons, Set<String> seen) {
+        if (!StringUtils.hasText(commons.getCode())) {
+            return "code is required";
+        }
+        if (!StringUtils.hasText(commons.getName())) {
+            return "name is required";
+        }
+        if (seen.contains(commons.getCode())) {
+            return "code %s appears more than once in the file".formatted(commons.getCode());
+        }
+        if (ucsbDiningCommonsRepository.existsById(commons.getCode())) {
+            return "code %s already exists".formatted(commons.getCode());
+        }
+        seen.add(commons.getCode());
+        return null;
+    }
+
+    private static void checkLatitude(double lat) {
+        if (!(lat >= -90.0 && lat <= 90.0)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "latitude must be between -90 and 90");
+        }
+    }
+
+    private static void checkLongitude(double lon) {
+        if (!(lon >= -180.0 && lon <= 180.0)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "longitude must be between -180 and 180");
+        }
     }
 }
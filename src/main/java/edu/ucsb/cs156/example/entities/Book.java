@@ -1,26 +1,49 @@
 package edu.ucsb.cs156.example.entities;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.time.Instant;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 @Entity(name = "books")
-public class Book {
+@Table(name = "books", indexes = @Index(name = "books_revision_idx", columnList = "revision"))
+@EntityListeners(EntityChangeListener.class)
+@DynamicUpdate
+public class Book implements Revisioned {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "books_id_seq")
+  @SequenceGenerator(name = "books_id_seq", sequenceName = "books_id_seq", allocationSize = 50)
   private long id;
 
   private String title;
   private String author;  
   private String genre;
-}
\ No newline at end of file
+
+  // stamped by EntityChangeListener on every insert and update; see DeltaSyncService
+  private Long revision;
+  private Instant updatedAt;
+
+  // optimistic lock for conditional updates (If-Match on PUT)
+  @Version
+  @Column(nullable = false, columnDefinition = "bigint default 0")
+  private long version;
+}
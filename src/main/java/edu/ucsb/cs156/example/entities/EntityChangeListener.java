@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.example.entities;
+
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
+import javax.persistence.PreUpdate;
+
+/**
+ * JPA entity listener that turns every insert, update and delete of an
+ * entity annotated with <code>@EntityListeners(EntityChangeListener.class)</code>
+ * into an EntityChangedEvent. Listeners that must only see committed changes
+ * should use <code>@TransactionalEventListener</code>.
+ *
+ * Before each write it also stamps Revisioned entities with their revision
+ * and records tombstones for deletes (see DeltaSyncService). That service
+ * is looked up lazily because it needs the EntityManagerFactory, which is
+ * still being built when Hibernate creates this listener, and is skipped in
+ * contexts that only start JPA (such as the repository benchmark).
+ */
+@Component
+public class EntityChangeListener {
+
+  @Autowired
+  ApplicationEventPublisher publisher;
+
+  @Autowired
+  ObjectProvider<DeltaSyncService> deltaSyncService;
+
+  @PrePersist
+  @PreUpdate
+  public void stamp(Object entity) {
+    DeltaSyncService sync = deltaSyncService.getIfAvailable();
+    if (sync != null) {
+      sync.stamp(entity);
+    }
+  }
+
+  @PreRemove
+  public void deleting(Object entity) {
+    DeltaSyncService sync = deltaSyncService.getIfAvailable();
+    if (sync != null) {
+      sync.recordDeletion(entity);
+    }
+  }
+
+  @PostPersist
+  public void created(Object entity) {
+    publisher.publishEvent(new EntityChangedEvent(entity, ChangeType.CREATED));
+  }
+
+  @PostUpdate
+  public void updated(Object entity) {
+    publisher.publishEvent(new EntityChangedEvent(entity, ChangeType.UPDATED));
+  }
+
+  @PostRemove
+  public void deleted(Object entity) {
+    publisher.publishEvent(new EntityChangedEvent(entity, ChangeType.DELETED));
+  }
+}
@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.Instant;
+
+/**
+ * An entity whose rows carry the revision at which they were last written,
+ * so that clients can fetch only what changed since their last sync
+ * (<code>GET /api/&lt;entity&gt;/all?since=</code>). Deleting one leaves a
+ * {@link Tombstone}.
+ */
+public interface Revisioned {
+  Long getRevision();
+
+  void setRevision(Long revision);
+
+  Instant getUpdatedAt();
+
+  void setUpdatedAt(Instant updatedAt);
+}
@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.Instant;
+
+/**
+ * Records that a {@link Revisioned} row was deleted, so that delta syncs
+ * can tell clients to drop it. Purged after a retention period.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "tombstones")
+@Table(name = "tombstones", indexes = @Index(name = "tombstones_type_revision_idx", columnList = "entityType, revision"))
+public class Tombstone {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tombstones_id_seq")
+  @SequenceGenerator(name = "tombstones_id_seq", sequenceName = "tombstones_id_seq", allocationSize = 50)
+  private long id;
+
+  // simple class name of the deleted entity, e.g. Park
+  private String entityType;
+  private String entityId;
+  private long revision;
+  private Instant deletedAt;
+}
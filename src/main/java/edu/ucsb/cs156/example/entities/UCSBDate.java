@@ -1,28 +1,58 @@
 package edu.ucsb.cs156.example.entities;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdates")
-public class UCSBDate {
+@Table(name = "ucsbdates", indexes = {
+    @Index(name = "ucsbdates_quarter_idx", columnList = "quarterYYYYQ"),
+    @Index(name = "ucsbdates_local_date_time_idx", columnList = "localDateTime"),
+    @Index(name = "ucsbdates_revision_idx", columnList = "revision") })
+@EntityListeners(EntityChangeListener.class)
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ucsbdates")
+public class UCSBDate implements Revisioned {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ucsbdates_id_seq")
+  @SequenceGenerator(name = "ucsbdates_id_seq", sequenceName = "ucsbdates_id_seq", allocationSize = 50)
   private long id;
 
   private String quarterYYYYQ;
   private String name;  
   private LocalDateTime localDateTime;
-}
\ No newline at end of file
+
+  // stamped by EntityChangeListener on every insert and update; see DeltaSyncService
+  private Long revision;
+  private Instant updatedAt;
+
+  // optimistic lock for conditional updates (If-Match on PUT)
+  @Version
+  @Column(nullable = false, columnDefinition = "bigint default 0")
+  private long version;
+}
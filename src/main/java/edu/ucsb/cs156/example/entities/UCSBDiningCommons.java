@@ -1,19 +1,36 @@
 package edu.ucsb.cs156.example.entities;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.time.Instant;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdiningcommons")
-public class UCSBDiningCommons {
+@Table(name = "ucsbdiningcommons", indexes = @Index(name = "ucsbdiningcommons_revision_idx", columnList = "revision"))
+@EntityListeners(EntityChangeListener.class)
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ucsbdiningcommons")
+public class UCSBDiningCommons implements Revisioned {
   @Id
   private String code;
   private String name;
@@ -22,4 +39,13 @@ public class UCSBDiningCommons {
   private boolean hasDiningCam;
   private Double latitude;
   private Double longitude;
-}
\ No newline at end of file
+
+  // stamped by EntityChangeListener on every insert and update; see DeltaSyncService
+  private Long revision;
+  private Instant updatedAt;
+
+  // optimistic lock for conditional updates (If-Match on PUT)
+  @Version
+  @Column(nullable = false, columnDefinition = "bigint default 0")
+  private long version;
+}
@@ -5,17 +5,24 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.AccessLevel;
+import java.io.Serializable;
+
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Builder
 @Entity(name = "users")
-public class User {
+public class User implements Serializable {
+  // Kept in the HTTP session by CurrentUserServiceImpl
+  private static final long serialVersionUID = 1L;
+
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private long id;
@@ -29,4 +36,8 @@ public class User {
   private String locale;
   private String hostedDomain;
   private boolean admin;
+
+  // Hash of the OAuth profile attributes last written to this row; see UserProvisioningService
+  @JsonIgnore
+  private String profileHash;
 }
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class DeltaSync<T> {
+  // pass this as since= on the next call
+  private long version;
+  // true when rows is the whole table and the client should replace its copy
+  private boolean reset;
+  // rows created or updated since the requested version, oldest first
+  private List<T> rows;
+  // ids of rows deleted since the requested version
+  private List<String> deleted;
+}
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published (by EntityChangeListener) whenever an entity is inserted,
+ * updated or deleted; listeners that keep in-memory views of a table
+ * (search indexes and the like) subscribe to it.
+ */
+@Data
+@AllArgsConstructor
+public class EntityChangedEvent {
+
+  public enum ChangeType {
+    CREATED, UPDATED, DELETED
+  }
+
+  private Object entity;
+  private ChangeType changeType;
+
+  public boolean isDeleted() {
+    return changeType == ChangeType.DELETED;
+  }
+}
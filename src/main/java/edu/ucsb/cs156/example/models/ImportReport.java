@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ImportReport {
+  private long rowsRead;
+  private long rowsImported;
+  private long rowsRejected;
+  // only the first app.import.max-errors rejections are listed
+  @Builder.Default
+  private List<ImportRowError> errors = new ArrayList<>();
+}
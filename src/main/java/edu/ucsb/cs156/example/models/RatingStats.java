@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.SortedMap;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class RatingStats {
+  // number of rated items
+  private long count;
+  private long unrated;
+  // null when nothing is rated
+  private Double mean;
+  // bucket n counts the ratings r with n <= r < n + 1
+  private SortedMap<Integer, Long> histogram;
+}
@@ -6,6 +6,8 @@ import lombok.NoArgsConstructor;
 import lombok.Builder;
 import lombok.AccessLevel;
 
+import java.util.List;
+
 
 @Data
 @AllArgsConstructor
@@ -14,4 +16,5 @@ import lombok.AccessLevel;
 public class SystemInfo {
   private Boolean springH2ConsoleEnabled;
   private Boolean showSwaggerUILink;
+  private List<CacheRegionStats> cacheRegions;
 }
@@ -2,10 +2,28 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Book;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 
 @Repository
 public interface BookRepository extends CrudRepository<Book, Long> {
+  List<Book> findByRevisionGreaterThanOrderByRevisionAsc(long revision);
+
+  Slice<Book> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+  @Query("select e from books e")
+  Stream<Book> streamAll();
 }
\ No newline at end of file
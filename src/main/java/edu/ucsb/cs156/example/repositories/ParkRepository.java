@@ -2,11 +2,32 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Park;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 
 @Repository
 public interface ParkRepository extends CrudRepository<Park, Long> {
-  
+  List<Park> findByRevisionGreaterThanOrderByRevisionAsc(long revision);
+
+  Slice<Park> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+  List<Park> findByRatingBetween(double minRating, double maxRating, Pageable pageable);
+
+  List<Park> findAllBy(Pageable pageable);
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+  @Query("select e from parks e")
+  Stream<Park> streamAll();
 }
\ No newline at end of file
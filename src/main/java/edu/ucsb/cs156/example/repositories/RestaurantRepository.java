@@ -2,10 +2,28 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Restaurant;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 
 @Repository
 public interface RestaurantRepository extends CrudRepository<Restaurant, Long> {
+  List<Restaurant> findByRevisionGreaterThanOrderByRevisionAsc(long revision);
+
+  Slice<Restaurant> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+  @Query("select e from restaurants e")
+  Stream<Restaurant> streamAll();
 }
\ No newline at end of file
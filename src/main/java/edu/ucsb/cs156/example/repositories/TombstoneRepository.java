@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.Tombstone;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+
+@Repository
+public interface TombstoneRepository extends CrudRepository<Tombstone, Long> {
+  List<Tombstone> findByEntityTypeAndRevisionGreaterThanOrderByRevisionAsc(String entityType, long revision);
+
+  Optional<Tombstone> findByEntityTypeAndEntityId(String entityType, String entityId);
+
+  @Query("select max(t.revision) from tombstones t where t.deletedAt < :cutoff and t.entityType <> :keep")
+  Long maxRevisionDeletedBefore(@Param("cutoff") Instant cutoff, @Param("keep") String keep);
+
+  @Modifying
+  @Query("delete from tombstones t where t.deletedAt < :cutoff and t.entityType <> :keep")
+  int deleteDeletedBefore(@Param("cutoff") Instant cutoff, @Param("keep") String keep);
+}
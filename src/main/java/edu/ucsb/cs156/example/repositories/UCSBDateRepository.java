@@ -2,11 +2,40 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 
 @Repository
 public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
+  List<UCSBDate> findByRevisionGreaterThanOrderByRevisionAsc(long revision);
+
+  @Override
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+  Iterable<UCSBDate> findAll();
+
+  @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
+
+  Slice<UCSBDate> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+  // Exports read the whole table once; keep them out of the second-level cache
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE") })
+  @Query("select e from ucsbdates e")
+  Stream<UCSBDate> streamAll();
 }
\ No newline at end of file
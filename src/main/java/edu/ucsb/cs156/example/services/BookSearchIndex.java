@@ -0,0 +1,172 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Book;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.SearchResults;
+import edu.ucsb.cs156.example.repositories.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Full-text search over book titles, authors and genres. An inverted index
+// (word -> books containing it, with a field-weighted count) is built from
+// the table at startup and kept current from committed EntityChangedEvents,
+// so a search never touches the database.
+
+@Slf4j
+@Service("bookSearch")
+public class BookSearchIndex {
+
+  // how much a match in each field counts towards a book's score
+  static final int TITLE_WEIGHT = 3;
+  static final int AUTHOR_WEIGHT = 2;
+  static final int GENRE_WEIGHT = 1;
+
+  @Autowired
+  BookRepository bookRepository;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Long, Book> books = new HashMap<>();
+  private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+
+  private record Hit(Book book, double score) {
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    int count = 0;
+    for (Book book : bookRepository.findAll()) {
+      put(book);
+      count++;
+    }
+    log.info("book search index loaded with {} books", count);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onEntityChanged(EntityChangedEvent event) {
+    if (event.getEntity() instanceof Book book) {
+      if (event.isDeleted()) {
+        remove(book.getId());
+      } else {
+        put(book);
+      }
+    }
+  }
+
+  public void put(Book book) {
+    lock.writeLock().lock();
+    try {
+      unindex(book.getId());
+      books.put(book.getId(), book);
+      Map<String, Integer> weights = new HashMap<>();
+      addWords(weights, book.getTitle(), TITLE_WEIGHT);
+      addWords(weights, book.getAuthor(), AUTHOR_WEIGHT);
+      addWords(weights, book.getGenre(), GENRE_WEIGHT);
+      weights.forEach((word, weight) -> postings.computeIfAbsent(word, w -> new HashMap<>()).put(book.getId(), weight));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(long id) {
+    lock.writeLock().lock();
+    try {
+      unindex(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Books matching any of the words in the query, best first. A book's
+   * score sums, over the query words it contains, the field weight times
+   * the word's inverse document frequency, so rare words count for more
+   * than common ones; ties are broken by id.
+   */
+  public SearchResults<Book> search(String query, Pageable pageable) {
+    Set<String> words = tokenize(query);
+    List<Hit> hits = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      Map<Long, Double> scores = new HashMap<>();
+      for (String word : words) {
+        Map<Long, Integer> matches = postings.get(word);
+        if (matches == null) {
+          continue;
+        }
+        double idf = Math.log(1.0 + (double) books.size() / matches.size());
+        matches.forEach((id, weight) -> scores.merge(id, weight * idf, Double::sum));
+      }
+      scores.forEach((id, score) -> hits.add(new Hit(books.get(id), score)));
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    hits.sort(Comparator.comparingDouble(Hit::score).reversed()
+        .thenComparingLong(hit -> hit.book().getId()));
+    int from = (int) Math.min(pageable.getOffset(), hits.size());
+    int to = Math.min(from + pageable.getPageSize(), hits.size());
+    List<Book> page = hits.subList(from, to).stream().map(Hit::book).toList();
+    return SearchResults.<Book>builder()
+        .total(hits.size())
+        .page(pageable.getPageNumber())
+        .size(pageable.getPageSize())
+        .results(page)
+        .build();
+  }
+
+  // caller holds the write lock
+  private void unindex(long id) {
+    Book old = books.remove(id);
+    if (old == null) {
+      return;
+    }
+    Set<String> words = tokenize(old.getTitle());
+    words.addAll(tokenize(old.getAuthor()));
+    words.addAll(tokenize(old.getGenre()));
+    for (String word : words) {
+      Map<Long, Integer> matches = postings.get(word);
+      if (matches != null) {
+        matches.remove(id);
+        if (matches.isEmpty()) {
+          postings.remove(word);
+        }
+      }
+    }
+  }
+
+  private static void addWords(Map<String, Integer> weights, String text, int weight) {
+    for (String word : tokenize(text)) {
+      weights.merge(word, weight, Integer::sum);
+    }
+  }
+
+  static Set<String> tokenize(String text) {
+    Set<String> words = new LinkedHashSet<>();
+    if (text == null) {
+      return words;
+    }
+    for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+      if (!word.isEmpty()) {
+        words.add(word);
+      }
+    }
+    return words;
+  }
+}
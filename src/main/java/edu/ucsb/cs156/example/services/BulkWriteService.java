@@ -0,0 +1,150 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+// Inserts many rows in one transaction. Rows are persisted (never merged,
+// so there is no select-before-insert), and the persistence context is
+// flushed and cleared every batch-size rows: Hibernate sends each flush
+// as JDBC batches and the heap holds at most one batch of entities.
+//
+// Deletes by id are single DELETE statements that never load the rows.
+
+@Slf4j
+@Service("bulkWrite")
+public class BulkWriteService {
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  @Autowired
+  ApplicationEventPublisher publisher;
+
+  @Autowired
+  DeltaSyncService deltaSyncService;
+
+  @Value("${app.bulk.batch-size:50}")
+  int batchSize;
+
+  @Value("${spring.jpa.properties.hibernate.dialect:}")
+  String dialect;
+
+  // Postgres allows at most 32767 bind parameters per statement
+  static final int MAX_IDS_PER_STATEMENT = 10_000;
+
+  /**
+   * Persists every row, in order, in a single transaction; generated ids
+   * are set on the rows passed in.
+   *
+   * @return the number of rows inserted
+   */
+  @Transactional
+  public <T> int insertAll(Iterable<T> rows) {
+    int count = 0;
+    for (T row : rows) {
+      entityManager.persist(row);
+      count++;
+      if (count % batchSize == 0) {
+        entityManager.flush();
+        entityManager.clear();
+      }
+    }
+    entityManager.flush();
+    entityManager.clear();
+    log.info("bulk insert of {} rows", count);
+    return count;
+  }
+
+  /**
+   * Deletes the rows with the given ids in a single transaction, without
+   * loading them. One id is a single <code>DELETE ... WHERE id = ?</code>;
+   * more are one DELETE per {@value #MAX_IDS_PER_STATEMENT} ids that also
+   * returns the ids it removed (<code>RETURNING</code> on Postgres, a
+   * delta table on H2). Bulk statements bypass the entity listeners, so the
+   * tombstones and delete events are recorded here, for exactly the rows
+   * this transaction deleted.
+   *
+   * @param stub makes an entity holding just an id, for the delete events
+   * @return the number of rows deleted
+   */
+  @Transactional
+  public <T, ID> int deleteAll(Class<T> type, Collection<ID> ids, Function<ID, T> stub) {
+    List<ID> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+    if (distinct.isEmpty()) {
+      return 0;
+    }
+    EntityType<T> entity = entityManager.getMetamodel().entity(type);
+    SingularAttribute<? super T, ?> idAttribute = entity.getSingularAttributes().stream()
+        .filter(SingularAttribute::isId)
+        .findFirst()
+        .orElseThrow();
+
+    if (distinct.size() == 1) {
+      ID id = distinct.get(0);
+      int count = entityManager.createQuery("delete from %s e where e.%s = :id".formatted(entity.getName(), idAttribute.getName()))
+          .setParameter("id", id)
+          .executeUpdate();
+      if (count == 1) {
+        recordDeletion(type, id, stub);
+      }
+      log.info("delete of {} {} removed {} rows", entity.getName(), id, count);
+      return count;
+    }
+
+    String table = Optional.ofNullable(type.getAnnotation(Table.class))
+        .map(Table::name)
+        .filter(name -> !name.isEmpty())
+        .orElse(entity.getName());
+    // Spring's default physical naming: camelCase attributes become snake_case columns
+    String column = idAttribute.getName().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    String delete = (dialect.contains("PostgreSQL")
+        ? "delete from %1$s where %2$s in (:ids) returning %2$s"
+        : "select %2$s from old table (delete from %1$s where %2$s in (:ids))").formatted(table, column);
+
+    int count = 0;
+    for (int from = 0; from < distinct.size(); from += MAX_IDS_PER_STATEMENT) {
+      List<?> deleted = entityManager.createNativeQuery(delete)
+          .setParameter("ids", distinct.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, distinct.size())))
+          .getResultList();
+      for (Object value : deleted) {
+        recordDeletion(type, idOf(value, idAttribute.getJavaType()), stub);
+      }
+      count += deleted.size();
+    }
+    log.info("bulk delete of {} ids removed {} {} rows", distinct.size(), count, entity.getName());
+    return count;
+  }
+
+  private <T, ID> void recordDeletion(Class<T> type, ID id, Function<ID, T> stub) {
+    deltaSyncService.recordDeletion(type, id);
+    publisher.publishEvent(new EntityChangedEvent(stub.apply(id), ChangeType.DELETED));
+  }
+
+  // JDBC drivers may hand back a numeric id as another Number type
+  @SuppressWarnings("unchecked")
+  private static <ID> ID idOf(Object value, Class<?> idType) {
+    if (value instanceof Number number && (idType == Long.class || idType == long.class)) {
+      return (ID) Long.valueOf(number.longValue());
+    }
+    return (ID) value;
+  }
+}
@@ -0,0 +1,301 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Server-sent event streams of committed creates, updates and deletes, one
+// topic per entity class (GET /api/<entity>/changes).
+//
+// Each change is serialized once, when it is committed, and kept in a
+// bounded per-topic replay log so that a client reconnecting with
+// Last-Event-ID gets exactly what it missed. Every subscriber has its own
+// bounded queue, drained on a sender thread of its own while it has
+// something to send, so a slow client never holds up the writer or the
+// other subscribers: if its queue overflows the backlog is dropped and it
+// is sent a "reset" event instead, telling it to reload. The same happens
+// when the replay log no longer reaches back to the client's Last-Event-ID.
+// A client whose write has been blocked for longer than the send timeout is
+// unsubscribed at the next heartbeat; its sender thread is freed once the
+// write fails or the stream times out.
+
+@Slf4j
+@Service("changeFeed")
+public class ChangeFeed {
+
+  public static final String RESET = "reset";
+
+  record Change(long id, String name, String json) {
+  }
+
+  private static final Change HEARTBEAT = new Change(0L, null, null);
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Value("${app.changes.replay-size:1000}")
+  int replaySize = 1000;
+
+  @Value("${app.changes.subscriber-buffer:256}")
+  int subscriberBuffer = 256;
+
+  @Value("${app.changes.heartbeat-seconds:15}")
+  long heartbeatSeconds = 15;
+
+  @Value("${app.changes.timeout-ms:1800000}")
+  long timeoutMillis = 1800000;
+
+  @Value("${app.changes.sender-threads:4}")
+  int senderThreads = 4;
+
+  @Value("${app.changes.max-sender-threads:64}")
+  int maxSenderThreads = 64;
+
+  @Value("${app.changes.send-timeout-ms:10000}")
+  long sendTimeoutMillis = 10000;
+
+  // Event ids start from the clock, so an id handed out before a restart is
+  // always older than anything this run can replay.
+  private final long firstId = System.currentTimeMillis() * 1000;
+  private final AtomicLong lastId = new AtomicLong(firstId);
+
+  private final Map<Class<?>, Topic> topics = new ConcurrentHashMap<>();
+
+  Executor senders;
+  private ThreadPoolTaskScheduler heartbeats;
+
+  @PostConstruct
+  public void start() {
+    ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+    // no task queue: a drain gets an idle thread or a new one, never waits
+    // behind another subscriber's (possibly blocked) drain
+    pool.setCorePoolSize(Math.max(1, senderThreads));
+    pool.setMaxPoolSize(Math.max(Math.max(1, senderThreads), maxSenderThreads));
+    pool.setQueueCapacity(0);
+    pool.setThreadNamePrefix("change-feed-");
+    pool.setDaemon(true);
+    pool.initialize();
+    senders = pool;
+
+    heartbeats = new ThreadPoolTaskScheduler();
+    heartbeats.setThreadNamePrefix("change-feed-heartbeat-");
+    heartbeats.setDaemon(true);
+    heartbeats.initialize();
+    heartbeats.scheduleAtFixedRate(this::heartbeat, Duration.ofSeconds(heartbeatSeconds));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (heartbeats != null) {
+      heartbeats.shutdown();
+    }
+    if (senders instanceof ThreadPoolTaskExecutor pool) {
+      pool.shutdown();
+    }
+    topics.values().forEach(topic -> topic.subscribers.forEach(Subscriber::close));
+  }
+
+  /**
+   * Opens a stream of changes to one entity type. With a lastEventId the
+   * changes after it are replayed first (or a reset is sent if they are no
+   * longer all available).
+   */
+  public SseEmitter subscribe(Class<?> type, Long lastEventId) {
+    Topic topic = topic(type);
+    Subscriber subscriber = new Subscriber(newEmitter(), topic);
+    subscriber.emitter.onCompletion(subscriber::close);
+    subscriber.emitter.onTimeout(subscriber::close);
+    subscriber.emitter.onError(e -> subscriber.close());
+    topic.join(subscriber, lastEventId);
+    return subscriber.emitter;
+  }
+
+  SseEmitter newEmitter() {
+    return new SseEmitter(timeoutMillis);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onEntityChanged(EntityChangedEvent event) {
+    String json;
+    try {
+      json = mapper.writeValueAsString(event.getEntity());
+    } catch (JsonProcessingException e) {
+      log.warn("change to {} not published: {}", event.getEntity().getClass().getSimpleName(), e.getMessage());
+      return;
+    }
+    String name = event.getChangeType().name().toLowerCase(Locale.ROOT);
+    topic(event.getEntity().getClass()).publish(name, json);
+  }
+
+  /**
+   * Sends a comment to idle subscribers so that proxies keep the connection
+   * open, and unsubscribes those whose current send has stalled.
+   */
+  void heartbeat() {
+    topics.values().forEach(topic -> topic.subscribers.forEach(Subscriber::heartbeat));
+  }
+
+  int subscriberCount(Class<?> type) {
+    return topic(type).subscribers.size();
+  }
+
+  private Topic topic(Class<?> type) {
+    return topics.computeIfAbsent(type, t -> new Topic());
+  }
+
+  private class Topic {
+    final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // guarded by this
+    private final Deque<Change> replay = new ArrayDeque<>();
+    private long evictedUpTo = firstId;
+
+    synchronized void publish(String name, String json) {
+      Change change = new Change(lastId.incrementAndGet(), name, json);
+      replay.addLast(change);
+      while (replay.size() > replaySize) {
+        evictedUpTo = replay.removeFirst().id();
+      }
+      subscribers.forEach(subscriber -> subscriber.offer(change));
+    }
+
+    // synchronized with publish, so nothing falls between the replay and the live stream
+    synchronized void join(Subscriber subscriber, Long lastEventId) {
+      subscriber.offer(HEARTBEAT);
+      if (lastEventId != null) {
+        if (lastEventId < evictedUpTo || lastEventId > lastId.get()) {
+          subscriber.reset();
+        } else {
+          for (Change change : replay) {
+            if (change.id() > lastEventId) {
+              subscriber.offer(change);
+            }
+          }
+        }
+      }
+      if (!subscriber.closed) {
+        subscribers.add(subscriber);
+      }
+    }
+  }
+
+  private class Subscriber {
+    final SseEmitter emitter;
+    private final Topic topic;
+    private final BlockingQueue<Change> queue = new ArrayBlockingQueue<>(Math.max(1, subscriberBuffer));
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile boolean overflowed;
+    private volatile boolean closed;
+    // when the send in progress started, or 0 between sends
+    private volatile long sendStarted;
+
+    Subscriber(SseEmitter emitter, Topic topic) {
+      this.emitter = emitter;
+      this.topic = topic;
+    }
+
+    void offer(Change change) {
+      if (!queue.offer(change)) {
+        reset();
+        return;
+      }
+      schedule();
+    }
+
+    void heartbeat() {
+      long started = sendStarted;
+      if (started != 0 && System.currentTimeMillis() - started > sendTimeoutMillis) {
+        log.info("closing a change feed subscriber whose send has been blocked for {} ms",
+            System.currentTimeMillis() - started);
+        close();
+      } else if (queue.isEmpty()) {
+        offer(HEARTBEAT);
+      } else {
+        // retries a drain the sender pool turned away
+        schedule();
+      }
+    }
+
+    // drop the backlog; the client reloads instead
+    void reset() {
+      overflowed = true;
+      queue.clear();
+      schedule();
+    }
+
+    void close() {
+      closed = true;
+      topic.subscribers.remove(this);
+    }
+
+    private void schedule() {
+      if (!closed && draining.compareAndSet(false, true)) {
+        try {
+          senders.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+          // every sender thread is busy; the queue is drained from the next heartbeat
+          draining.set(false);
+        }
+      }
+    }
+
+    private void send(SseEmitter.SseEventBuilder event) throws IOException {
+      sendStarted = System.currentTimeMillis();
+      try {
+        emitter.send(event);
+      } finally {
+        sendStarted = 0;
+      }
+    }
+
+    private void drain() {
+      try {
+        do {
+          if (overflowed) {
+            overflowed = false;
+            send(SseEmitter.event().id(Long.toString(lastId.get())).name(RESET).data(""));
+          }
+          for (Change change = queue.poll(); change != null && !closed; change = queue.poll()) {
+            if (change == HEARTBEAT) {
+              send(SseEmitter.event().comment("heartbeat"));
+            } else {
+              send(SseEmitter.event().id(Long.toString(change.id())).name(change.name()).data(change.json()));
+            }
+          }
+          draining.set(false);
+        } while (!closed && (overflowed || !queue.isEmpty()) && draining.compareAndSet(false, true));
+      } catch (IOException | IllegalStateException e) {
+        // the client went away; the container completes the emitter
+        draining.set(false);
+        close();
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import edu.ucsb.cs156.example.models.ImportReport;
+import edu.ucsb.cs156.example.models.ImportRowError;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+// Loads a CSV upload into a table. The file is parsed one row at a time
+// and each good row goes straight to BulkWriteService, which flushes and
+// clears every batch, so the heap holds at most one batch of rows no
+// matter how large the file is. Rows that do not parse or fail the
+// caller's check are skipped and reported.
+
+@Slf4j
+@Service("csvImport")
+public class CsvImportService {
+
+  @Autowired
+  BulkWriteService bulkWriteService;
+
+  @Value("${app.import.max-errors:1000}")
+  int maxErrors;
+
+  private final CsvMapper csvMapper = CsvMapper.builder()
+      .addModule(new JavaTimeModule())
+      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+      .enable(CsvParser.Feature.TRIM_SPACES)
+      .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+      .build();
+
+  /**
+   * Imports the rows of a CSV file whose header row names the columns.
+   *
+   * @param check returns why a row may not be imported, or null if it may
+   */
+  public <T> ImportReport importCsv(InputStream in, Class<T> type, Function<T, String> check) throws IOException {
+    ImportReport report = new ImportReport();
+    try (MappingIterator<T> rows = csvMapper.readerFor(type)
+        .with(CsvSchema.emptySchema().withHeader())
+        .readValues(in)) {
+      long imported = bulkWriteService.insertAll(() -> new CheckedRows<>(rows, check, report));
+      report.setRowsImported(imported);
+    }
+    log.info("CSV import of {}: {} rows read, {} imported, {} rejected",
+        type.getSimpleName(), report.getRowsRead(), report.getRowsImported(), report.getRowsRejected());
+    return report;
+  }
+
+  private void reject(ImportReport report, long line, String message) {
+    report.setRowsRejected(report.getRowsRejected() + 1);
+    if (report.getErrors().size() < maxErrors) {
+      report.getErrors().add(new ImportRowError(line, message));
+    }
+  }
+
+  // Yields only the rows that parse and pass the check, recording the rest
+  private class CheckedRows<T> implements Iterator<T> {
+    private final MappingIterator<T> rows;
+    private final Function<T, String> check;
+    private final ImportReport report;
+    private T next;
+
+    CheckedRows(MappingIterator<T> rows, Function<T, String> check, ImportReport report) {
+      this.rows = rows;
+      this.check = check;
+      this.report = report;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && rows.hasNext()) {
+        // where the row starts, which is not rowsRead + 2 once a quoted
+        // value has spanned lines
+        long line = rows.getCurrentLocation().getLineNr();
+        report.setRowsRead(report.getRowsRead() + 1);
+        try {
+          T row = rows.next();
+          String problem = check.apply(row);
+          if (problem == null) {
+            next = row;
+          } else {
+            reject(report, line, problem);
+          }
+        } catch (RuntimeJsonMappingException e) {
+          reject(report, line, e.getCause() instanceof JsonProcessingException cause
+              ? cause.getOriginalMessage()
+              : e.getMessage());
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      T row = next;
+      next = null;
+      return row;
+    }
+  }
+}
@@ -2,13 +2,12 @@ package edu.ucsb.cs156.example.services;
 
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.models.CurrentUser;
-import edu.ucsb.cs156.example.repositories.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -19,13 +18,15 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 
 @Slf4j
 @Service("currentUser")
 public class CurrentUserServiceImpl extends CurrentUserService {
   @Autowired
-  private UserRepository userRepository;
+  private UserProvisioningService userProvisioningService;
 
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
@@ -33,6 +34,19 @@ public class CurrentUserServiceImpl extends CurrentUserService {
   @Value("${app.admin.emails}")
   final private List<String> adminEmails = new ArrayList<String>();
 
+  static final String CACHED_USER = CurrentUserServiceImpl.class.getName() + ".CACHED_USER";
+
+  // Stored in the HTTP session, so it (and the User it holds) must stay
+  // serializable for session persistence and replication
+  @lombok.Value
+  private static class CachedUser implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    String email;
+    long generation;
+    User user;
+  }
+
   public CurrentUser getCurrentUser() {
     CurrentUser cu = CurrentUser.builder()
       .user(this.getUser())
@@ -45,55 +59,71 @@ public class CurrentUserServiceImpl extends CurrentUserService {
   
   public User getOAuth2AuthenticatedUser(SecurityContext securityContext, Authentication authentication) {
     OAuth2User oAuthUser = ((OAuth2AuthenticationToken) authentication).getPrincipal();
-    String email = oAuthUser.getAttribute("email");
-    String googleSub = oAuthUser.getAttribute("sub");
-    String pictureUrl = oAuthUser.getAttribute("picture");
-    String fullName = oAuthUser.getAttribute("name");
-    String givenName = oAuthUser.getAttribute("given_name");
-    String familyName = oAuthUser.getAttribute("family_name");
-    boolean emailVerified = oAuthUser.getAttribute("email_verified");
-    String locale = oAuthUser.getAttribute("locale");
-    String hostedDomain = oAuthUser.getAttribute("hd");
 
     java.util.Map<java.lang.String,java.lang.Object> attrs = oAuthUser.getAttributes();
     log.info("attrs={}",attrs);
 
-    Optional<User> ou = userRepository.findByEmail(email);
-    if (ou.isPresent()) {
-      User u = ou.get();
-      if (adminEmails.contains(email) && !u.getAdmin()) {
-        u.setAdmin(true);
-        userRepository.save(u);
-      }
-      return u;
-    }
-
-    User u = User.builder()
-        .googleSub(googleSub)
-        .email(email)
-        .pictureUrl(pictureUrl)
-        .fullName(fullName)
-        .givenName(givenName)
-        .familyName(familyName)
-        .emailVerified(emailVerified)
-        .locale(locale)
-        .hostedDomain(hostedDomain)
-        .admin(adminEmails.contains(email))
-        .build();
-    userRepository.save(u);
-    return u;
+    // Provisioning normally started (and finished) when the login succeeded;
+    // if it is still running this joins the in-flight future instead of
+    // writing the row again.
+    return userProvisioningService.provision(attrs).join();
   }
 
+  /**
+   * The resolved user is remembered for the rest of the request and in the
+   * HTTP session, so after login a page load costs no user-table queries.
+   * Cached users are resolved again when any stored admin flag has changed
+   * since, or when their email has since been listed as an admin.
+   */
   public User getUser() {
     SecurityContext securityContext = SecurityContextHolder.getContext();
     Authentication authentication = securityContext.getAuthentication();
 
     if (authentication instanceof OAuth2AuthenticationToken) {
-      return getOAuth2AuthenticatedUser(securityContext, authentication);
+      String email = ((OAuth2AuthenticationToken) authentication).getPrincipal().getAttribute("email");
+      RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+      User cached = getCachedUser(attributes, email);
+      if (cached != null) {
+        return cached;
+      }
+
+      // read before provisioning, so an admin change made meanwhile
+      // invalidates this entry rather than being missed
+      long generation = userProvisioningService.getAdminGeneration();
+      User u = getOAuth2AuthenticatedUser(securityContext, authentication);
+      if (attributes != null) {
+        CachedUser entry = new CachedUser(email, generation, u);
+        attributes.setAttribute(CACHED_USER, entry, RequestAttributes.SCOPE_REQUEST);
+        attributes.setAttribute(CACHED_USER, entry, RequestAttributes.SCOPE_SESSION);
+      }
+      return u;
+    }
+    return null;
+  }
+
+  private User getCachedUser(RequestAttributes attributes, String email) {
+    if (attributes == null) {
+      return null;
+    }
+    for (int scope : new int[] { RequestAttributes.SCOPE_REQUEST, RequestAttributes.SCOPE_SESSION }) {
+      Object attribute = attributes.getAttribute(CACHED_USER, scope);
+      if (attribute instanceof CachedUser entry && isCurrent(entry, email)) {
+        if (scope == RequestAttributes.SCOPE_SESSION) {
+          attributes.setAttribute(CACHED_USER, entry, RequestAttributes.SCOPE_REQUEST);
+        }
+        return entry.getUser();
+      }
     }
     return null;
   }
 
+  private boolean isCurrent(CachedUser entry, String email) {
+    return entry.getEmail().equals(email)
+        && entry.getGeneration() == userProvisioningService.getAdminGeneration()
+        && (entry.getUser().getAdmin() || !adminEmails.contains(email));
+  }
+
   public Collection<? extends GrantedAuthority> getRoles() {
    return grantedAuthoritiesService.getGrantedAuthorities();
   }
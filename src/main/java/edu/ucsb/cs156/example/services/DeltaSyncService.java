@@ -0,0 +1,218 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Revisioned;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.repositories.TombstoneRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.metamodel.EntityType;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+// Delta sync for the Revisioned entities (GET /api/<entity>/all?since=).
+//
+// Every insert, update and delete takes the next number from one
+// revision counter shared by all tables; rows keep theirs in a revision
+// column and deletes leave a Tombstone with theirs. A client that
+// remembers the version of its last sync then gets back only the rows
+// and tombstones with a later revision, which is O(changes) with the
+// revision indexes.
+//
+// Revisions are handed out before commit, so a transaction holding a low
+// revision can commit after one holding a higher one. The version given
+// to clients is therefore the highest revision below every transaction
+// still in flight, not simply the highest revision handed out, so that
+// no commit can land behind it.
+//
+// The counter lives in memory and is seeded from the tables at startup,
+// which assumes a single application instance (as the in-memory indexes
+// already do).
+
+@Slf4j
+@Service("deltaSync")
+public class DeltaSyncService {
+
+  // tombstone row that remembers the newest revision purged so far
+  static final String PURGED = "_purged";
+
+  @Autowired
+  TombstoneRepository tombstoneRepository;
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  @Value("${app.sync.tombstone-retention:P7D}")
+  Duration tombstoneRetention = Duration.ofDays(7);
+
+  Clock clock = Clock.systemUTC();
+
+  // guarded by this
+  private long lastRevision;
+  private final TreeSet<Long> inFlight = new TreeSet<>();
+
+  private volatile long purgedUpTo;
+
+  @PostConstruct
+  public void load() {
+    long max = 0;
+    for (EntityType<?> type : entityManager.getMetamodel().getEntities()) {
+      if (Revisioned.class.isAssignableFrom(type.getJavaType()) || type.getJavaType() == Tombstone.class) {
+        Long revision = entityManager
+            .createQuery("select max(e.revision) from " + type.getName() + " e", Long.class)
+            .getSingleResult();
+        max = Math.max(max, revision == null ? 0 : revision);
+      }
+    }
+    synchronized (this) {
+      lastRevision = Math.max(lastRevision, max);
+    }
+    purgedUpTo = tombstoneRepository.findByEntityTypeAndEntityId(PURGED, PURGED)
+        .map(Tombstone::getRevision).orElse(0L);
+    log.info("delta sync starts after revision {}, tombstones purged up to {}", max, purgedUpTo);
+  }
+
+  /** Called before every insert and update of a Revisioned entity. */
+  public void stamp(Object entity) {
+    if (entity instanceof Revisioned revisioned) {
+      revisioned.setRevision(nextRevision());
+      revisioned.setUpdatedAt(clock.instant());
+    }
+  }
+
+  /**
+   * Called when a Revisioned entity is deleted; its tombstone is written in
+   * the same transaction, just before it commits.
+   */
+  public void recordDeletion(Object entity) {
+    if (!(entity instanceof Revisioned)) {
+      return;
+    }
+    recordDeletion(entity.getClass(), entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity));
+  }
+
+  /**
+   * Records the deletion of a row by id, for deletes that bypass the entity
+   * listener (bulk JPQL deletes never load the entities).
+   */
+  public void recordDeletion(Class<?> type, Object id) {
+    if (!Revisioned.class.isAssignableFrom(type)) {
+      return;
+    }
+    Tombstone tombstone = Tombstone.builder()
+        .entityType(type.getSimpleName())
+        .entityId(String.valueOf(id))
+        .revision(nextRevision())
+        .deletedAt(clock.instant())
+        .build();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void beforeCommit(boolean readOnly) {
+          tombstoneRepository.save(tombstone);
+        }
+      });
+    } else {
+      tombstoneRepository.save(tombstone);
+    }
+  }
+
+  synchronized long nextRevision() {
+    long revision = ++lastRevision;
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      inFlight.add(revision);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          completed(revision);
+        }
+      });
+    }
+    return revision;
+  }
+
+  synchronized void completed(long revision) {
+    inFlight.remove(revision);
+  }
+
+  /** The newest revision below which every transaction has finished. */
+  public synchronized long currentVersion() {
+    return inFlight.isEmpty() ? lastRevision : inFlight.first() - 1;
+  }
+
+  /**
+   * What changed in one table since a version. When the client has nothing
+   * (since 0), or its version is older than the purged tombstones or newer
+   * than anything here, it gets the whole table with reset set instead.
+   */
+  public <T> DeltaSync<T> since(Class<T> type, long since, LongFunction<List<T>> changedSince,
+      Supplier<Iterable<T>> all, Function<T, Object> id) {
+    // read first, so that anything committed while the rows are read is sent again next time
+    long version = currentVersion();
+    if (since <= 0 || since < purgedUpTo || since > version) {
+      List<T> rows = new ArrayList<>();
+      all.get().forEach(rows::add);
+      return DeltaSync.<T>builder().version(version).reset(true).rows(rows).deleted(List.of()).build();
+    }
+    List<T> rows = changedSince.apply(since);
+    Set<String> present = new HashSet<>();
+    for (T row : rows) {
+      present.add(String.valueOf(id.apply(row)));
+    }
+    // a row deleted and then created again is sent as a row, not a tombstone
+    Set<String> deleted = new LinkedHashSet<>();
+    for (Tombstone tombstone : tombstoneRepository
+        .findByEntityTypeAndRevisionGreaterThanOrderByRevisionAsc(type.getSimpleName(), since)) {
+      if (!present.contains(tombstone.getEntityId())) {
+        deleted.add(tombstone.getEntityId());
+      }
+    }
+    return DeltaSync.<T>builder().version(version).reset(false).rows(rows).deleted(new ArrayList<>(deleted)).build();
+  }
+
+  /**
+   * Deletes tombstones older than the retention period. Clients whose last
+   * sync is older than that are sent the whole table next time.
+   */
+  @Scheduled(fixedDelayString = "${app.sync.purge-interval-ms:3600000}",
+      initialDelayString = "${app.sync.purge-interval-ms:3600000}")
+  @Transactional
+  public int purgeTombstones() {
+    Instant cutoff = clock.instant().minus(tombstoneRetention);
+    Long newest = tombstoneRepository.maxRevisionDeletedBefore(cutoff, PURGED);
+    if (newest == null) {
+      return 0;
+    }
+    int purged = tombstoneRepository.deleteDeletedBefore(cutoff, PURGED);
+    Tombstone marker = tombstoneRepository.findByEntityTypeAndEntityId(PURGED, PURGED)
+        .orElseGet(() -> Tombstone.builder().entityType(PURGED).entityId(PURGED).build());
+    marker.setRevision(Math.max(marker.getRevision(), newest));
+    marker.setDeletedAt(clock.instant());
+    tombstoneRepository.save(marker);
+    purgedUpTo = Math.max(purgedUpTo, newest);
+    log.info("purged {} tombstones up to revision {}", purged, newest);
+    return purged;
+  }
+}
@@ -0,0 +1,245 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.CommonsDistance;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Location queries over the dining commons (and anything else stored as
+// one). Points are bucketed in a uniform latitude/longitude grid; a
+// nearest-k query looks at rings of cells around the query point, nearest
+// first, and stops once no unvisited cell can hold anything closer than the
+// k-th point found. Distances are great-circle (haversine) distances. The
+// grid is built at startup and kept current from committed changes.
+
+@Slf4j
+@Service("diningCommonsLocator")
+public class DiningCommonsSpatialIndex {
+
+  static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  // side of a grid cell, in degrees; 0.01 degrees is about 1.1km
+  @Value("${app.commons-index.cell-degrees:0.01}")
+  double cellDegrees = 0.01;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, UCSBDiningCommons> commons = new HashMap<>();
+  private final Map<Long, Set<String>> cells = new HashMap<>();
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    int count = 0;
+    for (UCSBDiningCommons c : ucsbDiningCommonsRepository.findAll()) {
+      put(c);
+      count++;
+    }
+    log.info("dining commons spatial index loaded with {} locations", count);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onEntityChanged(EntityChangedEvent event) {
+    if (event.getEntity() instanceof UCSBDiningCommons c) {
+      if (event.isDeleted()) {
+        remove(c.getCode());
+      } else {
+        put(c);
+      }
+    }
+  }
+
+  public void put(UCSBDiningCommons c) {
+    lock.writeLock().lock();
+    try {
+      unindex(c.getCode());
+      if (c.getLatitude() == null || c.getLongitude() == null) {
+        return;
+      }
+      commons.put(c.getCode(), c);
+      cells.computeIfAbsent(cellKey(row(c.getLatitude()), col(c.getLongitude())), k -> new HashSet<>())
+          .add(c.getCode());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(String code) {
+    lock.writeLock().lock();
+    try {
+      unindex(code);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * The k locations nearest to (lat, lon), nearest first.
+   */
+  public List<CommonsDistance> nearest(double lat, double lon, int k) {
+    if (k <= 0) {
+      return List.of();
+    }
+    Comparator<CommonsDistance> byDistance = Comparator.comparingDouble(CommonsDistance::getDistanceMeters)
+        .thenComparing(d -> d.getCommons().getCode());
+    // the k best so far, worst on top
+    PriorityQueue<CommonsDistance> best = new PriorityQueue<>(byDistance.reversed());
+
+    lock.readLock().lock();
+    try {
+      int row = row(lat);
+      int col = col(lon);
+      for (int r = 0; ; r++) {
+        if (best.size() == k && ringGapMeters(lat, r) > best.peek().getDistanceMeters()) {
+          break;
+        }
+        if (8L * r > cells.size()) {
+          // the rings now hold more cells than are occupied; just look at every point
+          best.clear();
+          commons.values().forEach(c -> offer(best, distanceTo(c, lat, lon), k));
+          break;
+        }
+        for (int[] cell : ring(row, col, r)) {
+          Set<String> codes = cells.get(cellKey(cell[0], cell[1]));
+          if (codes != null) {
+            codes.forEach(code -> offer(best, distanceTo(commons.get(code), lat, lon), k));
+          }
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    List<CommonsDistance> result = new ArrayList<>(best);
+    result.sort(byDistance);
+    return result;
+  }
+
+  /**
+   * Every location inside the box, ordered by code.
+   */
+  public List<UCSBDiningCommons> within(double minLat, double maxLat, double minLon, double maxLon) {
+    List<UCSBDiningCommons> result = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      long boxCells = (long) (row(maxLat) - row(minLat) + 1) * (col(maxLon) - col(minLon) + 1);
+      if (boxCells > cells.size()) {
+        commons.values().stream().filter(c -> inBox(c, minLat, maxLat, minLon, maxLon)).forEach(result::add);
+      } else {
+        for (int row = row(minLat); row <= row(maxLat); row++) {
+          for (int col = col(minLon); col <= col(maxLon); col++) {
+            Set<String> codes = cells.get(cellKey(row, col));
+            if (codes != null) {
+              codes.stream().map(commons::get).filter(c -> inBox(c, minLat, maxLat, minLon, maxLon)).forEach(result::add);
+            }
+          }
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    result.sort(Comparator.comparing(UCSBDiningCommons::getCode));
+    return result;
+  }
+
+  static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLon = Math.toRadians(lon2 - lon1);
+    double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+        + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+    return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+  }
+
+  // No point in the ring of radius r is closer than this: there are at
+  // least r - 1 whole cells in between, in latitude or in longitude (and a
+  // degree of longitude is shortest at the ring's highest latitude).
+  private double ringGapMeters(double lat, int r) {
+    if (r <= 1) {
+      return 0.0;
+    }
+    double gap = Math.toRadians((r - 1) * cellDegrees);
+    double maxLat = Math.toRadians(Math.min(90.0, Math.abs(lat) + (r + 1) * cellDegrees));
+    double acrossLongitude = 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.cos(maxLat) * Math.sin(gap / 2)));
+    return Math.min(gap * EARTH_RADIUS_METERS, acrossLongitude);
+  }
+
+  private static void offer(PriorityQueue<CommonsDistance> best, CommonsDistance candidate, int k) {
+    best.add(candidate);
+    if (best.size() > k) {
+      best.poll();
+    }
+  }
+
+  private static CommonsDistance distanceTo(UCSBDiningCommons c, double lat, double lon) {
+    return new CommonsDistance(c, haversineMeters(lat, lon, c.getLatitude(), c.getLongitude()));
+  }
+
+  private static boolean inBox(UCSBDiningCommons c, double minLat, double maxLat, double minLon, double maxLon) {
+    return c.getLatitude() >= minLat && c.getLatitude() <= maxLat
+        && c.getLongitude() >= minLon && c.getLongitude() <= maxLon;
+  }
+
+  // the cells at Chebyshev distance exactly r from (row, col)
+  private static List<int[]> ring(int row, int col, int r) {
+    List<int[]> ring = new ArrayList<>();
+    if (r == 0) {
+      ring.add(new int[] { row, col });
+      return ring;
+    }
+    for (int i = -r; i <= r; i++) {
+      ring.add(new int[] { row - r, col + i });
+      ring.add(new int[] { row + r, col + i });
+    }
+    for (int i = -r + 1; i <= r - 1; i++) {
+      ring.add(new int[] { row + i, col - r });
+      ring.add(new int[] { row + i, col + r });
+    }
+    return ring;
+  }
+
+  private int row(double lat) {
+    return (int) Math.floor(lat / cellDegrees);
+  }
+
+  private int col(double lon) {
+    return (int) Math.floor(lon / cellDegrees);
+  }
+
+  private static long cellKey(int row, int col) {
+    return ((long) row << 32) | (col & 0xffffffffL);
+  }
+
+  // caller holds the write lock
+  private void unindex(String code) {
+    UCSBDiningCommons old = commons.remove(code);
+    if (old == null) {
+      return;
+    }
+    long key = cellKey(row(old.getLatitude()), col(old.getLongitude()));
+    Set<String> codes = cells.get(key);
+    codes.remove(code);
+    if (codes.isEmpty()) {
+      cells.remove(key);
+    }
+  }
+}
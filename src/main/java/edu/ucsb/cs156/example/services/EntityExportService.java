@@ -0,0 +1,124 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.persistence.EntityManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Writes whole tables to the response as they are read from the database,
+// one row at a time, so that an export needs the same amount of heap
+// whether the table has ten rows or ten million.
+
+@Slf4j
+@Service("entityExport")
+public class EntityExportService {
+
+  public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+  public static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  EntityManager entityManager;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  private final CsvMapper csvMapper = CsvMapper.builder()
+      .addModule(new JavaTimeModule())
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+      .build();
+
+  /**
+   * Picks NDJSON or CSV from the Accept header (NDJSON when the client
+   * accepts either or did not say).
+   */
+  public MediaType formatFor(String accept) {
+    if (accept == null || accept.isBlank()) {
+      return NDJSON;
+    }
+    List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+    MediaType.sortBySpecificityAndQuality(accepted);
+    for (MediaType mediaType : accepted) {
+      if (NDJSON.isCompatibleWith(mediaType)) {
+        return NDJSON;
+      }
+      if (CSV.isCompatibleWith(mediaType)) {
+        return CSV;
+      }
+    }
+    return NDJSON;
+  }
+
+  /**
+   * Builds a streaming response for every row of <code>rows</code>. The
+   * stream is opened inside a read-only transaction on the thread that
+   * writes the response, and each entity is detached once it has been
+   * written so the persistence context does not grow with the table.
+   */
+  public <T> ResponseEntity<StreamingResponseBody> export(Class<T> type, Supplier<Stream<T>> rows, String accept) {
+    MediaType format = formatFor(accept);
+    StreamingResponseBody body = out -> {
+      TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+      transaction.setReadOnly(true);
+      transaction.executeWithoutResult(status -> {
+        try (Stream<T> stream = rows.get()) {
+          long count = write(type, format, stream.iterator(), out);
+          log.info("exported {} rows of {} as {}", count, type.getSimpleName(), format);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    };
+    return ResponseEntity.ok().contentType(format).body(body);
+  }
+
+  private <T> long write(Class<T> type, MediaType format, Iterator<T> rows, OutputStream out) throws IOException {
+    boolean csv = CSV.equals(format);
+    ObjectMapper formatMapper = csv ? csvMapper : mapper;
+    ObjectWriter writer = csv
+        ? csvMapper.writerFor(type).with(csvMapper.schemaFor(type).withHeader())
+        : mapper.writerFor(type).withRootValueSeparator("\n");
+
+    long count = 0;
+    try (JsonGenerator generator = formatMapper.getFactory().createGenerator(out)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      SequenceWriter sequence = writer.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE).writeValues(generator);
+      while (rows.hasNext()) {
+        T row = rows.next();
+        sequence.write(row);
+        entityManager.detach(row);
+        count++;
+      }
+      sequence.flush();
+      if (!csv && count > 0) {
+        generator.writeRaw('\n');
+      }
+    }
+    return count;
+  }
+}
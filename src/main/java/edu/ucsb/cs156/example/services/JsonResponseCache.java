@@ -0,0 +1,70 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * The rendered JSON of each table's full <code>/all</code> listing, kept as
+ * UTF-8 bytes so that a hit costs neither a query nor a Jackson pass: the
+ * controller returns the byte array and Spring copies it straight to the
+ * servlet output stream.
+ *
+ * Each payload remembers the table version (see TableVersions) it was
+ * rendered at, taken before the rows were read, and is only served while
+ * that is still the current version; committed writes also drop it right
+ * away so that a stale payload does not sit on the heap.
+ */
+@Service("jsonResponseCache")
+public class JsonResponseCache {
+
+  record Rendered(long version, byte[] json) {
+  }
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  TableVersions tableVersions;
+
+  private final ConcurrentMap<Class<?>, Rendered> rendered = new ConcurrentHashMap<>();
+
+  /**
+   * The JSON array of all rows of the table, from the cache when the table
+   * has not changed since it was rendered, otherwise rendered from the
+   * supplied rows (and cached).
+   */
+  public <T> byte[] render(Class<T> table, Supplier<? extends Iterable<T>> rows) {
+    long version = tableVersions.version(table);
+    Rendered cached = rendered.get(table);
+    if (cached != null && cached.version() == version) {
+      return cached.json();
+    }
+
+    byte[] json;
+    try {
+      json = mapper.writeValueAsBytes(rows.get());
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+    // a slower render of an older version must not replace a newer one
+    rendered.merge(table, new Rendered(version, json),
+        (old, fresh) -> fresh.version() >= old.version() ? fresh : old);
+    return json;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onEntityChanged(EntityChangedEvent event) {
+    rendered.remove(event.getEntity().getClass());
+  }
+}
@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.RatingStats;
+import edu.ucsb.cs156.example.repositories.ParkRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Running count, sum and histogram of park ratings. The table is read once
+// at startup; after that each committed insert, update or delete adjusts
+// the totals by the difference it makes, so the stats never need a scan.
+
+@Slf4j
+@Service("parkRatingStats")
+public class ParkRatingStats {
+
+  @Autowired
+  ParkRepository parkRepository;
+
+  // each park's rating as last seen (null if unrated), so a change can be undone
+  private final Map<Long, Double> ratings = new HashMap<>();
+  private final TreeMap<Integer, Long> histogram = new TreeMap<>();
+  private long count;
+  private long unrated;
+  private double sum;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    for (Park park : parkRepository.findAll()) {
+      put(park);
+    }
+    log.info("park rating stats loaded: {}", getStats());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onEntityChanged(EntityChangedEvent event) {
+    if (event.getEntity() instanceof Park park) {
+      if (event.isDeleted()) {
+        remove(park.getId());
+      } else {
+        put(park);
+      }
+    }
+  }
+
+  public synchronized void put(Park park) {
+    remove(park.getId());
+    Double rating = park.getRating();
+    ratings.put(park.getId(), rating);
+    add(rating, 1);
+  }
+
+  public synchronized void remove(long id) {
+    if (ratings.containsKey(id)) {
+      add(ratings.remove(id), -1);
+    }
+  }
+
+  public synchronized RatingStats getStats() {
+    return RatingStats.builder()
+        .count(count)
+        .unrated(unrated)
+        .mean(count == 0 ? null : sum / count)
+        .histogram(new TreeMap<>(histogram))
+        .build();
+  }
+
+  private void add(Double rating, int delta) {
+    if (rating == null || rating.isNaN()) {
+      unrated += delta;
+      return;
+    }
+    count += delta;
+    sum += delta * rating;
+    if (count == 0) {
+      // don't let rounding leave a residue once everything is gone
+      sum = 0.0;
+    }
+    histogram.merge((int) Math.floor(rating), (long) delta, (a, b) -> a + b == 0 ? null : a + b);
+  }
+}
@@ -0,0 +1,142 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+// Search-as-you-type over restaurant names, cities, states and zips. Each
+// field's distinct values are kept in a sorted map keyed by the lower-cased
+// value, so the values starting with a prefix are one contiguous range and
+// a lookup is a single O(log n) seek plus k steps. Each value counts the
+// restaurants that have it, so it goes away only with the last of them.
+// Loaded at startup and kept current from committed changes.
+
+@Slf4j
+@Service("restaurantAutocomplete")
+public class RestaurantAutocomplete {
+
+  public enum Field {
+    NAME(Restaurant::getName),
+    CITY(Restaurant::getCity),
+    STATE(Restaurant::getState),
+    ZIP(Restaurant::getZip);
+
+    private final Function<Restaurant, String> getter;
+
+    Field(Function<Restaurant, String> getter) {
+      this.getter = getter;
+    }
+
+    /**
+     * The field with this name, in any case.
+     *
+     * @throws IllegalArgumentException if there is no such field
+     */
+    public static Field parse(String name) {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+  }
+
+  // a distinct value as first seen, and how many restaurants have it
+  private record Entry(String value, int count) {
+  }
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  private final Map<Field, ConcurrentSkipListMap<String, Entry>> values = new EnumMap<>(Field.class);
+  // what each restaurant contributed, so that an update can take it back
+  private final Map<Long, Restaurant> indexed = new HashMap<>();
+
+  public RestaurantAutocomplete() {
+    for (Field field : Field.values()) {
+      values.put(field, new ConcurrentSkipListMap<>());
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    int count = 0;
+    for (Restaurant restaurant : restaurantRepository.findAll()) {
+      put(restaurant);
+      count++;
+    }
+    log.info("restaurant autocomplete loaded with {} restaurants", count);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onEntityChanged(EntityChangedEvent event) {
+    if (event.getEntity() instanceof Restaurant restaurant) {
+      if (event.isDeleted()) {
+        remove(restaurant.getId());
+      } else {
+        put(restaurant);
+      }
+    }
+  }
+
+  public synchronized void put(Restaurant restaurant) {
+    remove(restaurant.getId());
+    // a copy, since the entity could still be changed by its owner
+    indexed.put(restaurant.getId(), Restaurant.builder()
+        .name(restaurant.getName())
+        .city(restaurant.getCity())
+        .state(restaurant.getState())
+        .zip(restaurant.getZip())
+        .build());
+    for (Field field : Field.values()) {
+      String value = field.getter.apply(restaurant);
+      if (value != null && !value.isBlank()) {
+        values.get(field).merge(key(value), new Entry(value.trim(), 1),
+            (old, added) -> new Entry(old.value(), old.count() + 1));
+      }
+    }
+  }
+
+  public synchronized void remove(long id) {
+    Restaurant old = indexed.remove(id);
+    if (old == null) {
+      return;
+    }
+    for (Field field : Field.values()) {
+      String value = field.getter.apply(old);
+      if (value != null && !value.isBlank()) {
+        values.get(field).computeIfPresent(key(value),
+            (k, entry) -> entry.count() == 1 ? null : new Entry(entry.value(), entry.count() - 1));
+      }
+    }
+  }
+
+  /**
+   * Up to <code>limit</code> distinct values of the field that start with
+   * the prefix (ignoring case), in alphabetical order.
+   */
+  public List<String> complete(Field field, String prefix, int limit) {
+    String from = key(prefix);
+    return values.get(field)
+        .subMap(from, true, from + Character.MAX_VALUE, false)
+        .values().stream()
+        .limit(limit)
+        .map(Entry::value)
+        .toList();
+  }
+
+  private static String key(String value) {
+    return value.trim().toLowerCase(Locale.ROOT);
+  }
+}
@@ -1,12 +1,23 @@
 package edu.ucsb.cs156.example.services;
 
 
+import edu.ucsb.cs156.example.models.CacheRegionStats;
 import edu.ucsb.cs156.example.models.SystemInfo;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
 // This class relies on property values
 // For hints on testing, see: https://www.baeldung.com/spring-boot-testing-configurationproperties
 
@@ -21,13 +32,42 @@ public class SystemInfoServiceImpl extends SystemInfoService {
   @Value("${app.showSwaggerUILink:false}")
   private boolean showSwaggerUILink;
 
+  @Autowired
+  private ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
   public SystemInfo getSystemInfo() {
     SystemInfo si = SystemInfo.builder()
     .springH2ConsoleEnabled(this.springH2ConsoleEnabled)
     .showSwaggerUILink(this.showSwaggerUILink)
+    .cacheRegions(this.getCacheRegions())
     .build();
   log.info("getSystemInfo returns {}",si);
   return si;
   }
 
+  // Hit/miss/put counts for each Hibernate second-level cache region
+  private List<CacheRegionStats> getCacheRegions() {
+    List<CacheRegionStats> regions = new ArrayList<>();
+    EntityManagerFactory emf = entityManagerFactory.getIfAvailable();
+    if (emf == null) {
+      return regions;
+    }
+    Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+    if (!statistics.isStatisticsEnabled()) {
+      return regions;
+    }
+    for (String region : statistics.getSecondLevelCacheRegionNames()) {
+      CacheRegionStatistics stats = statistics.getCacheRegionStatistics(region);
+      if (stats != null) {
+        regions.add(CacheRegionStats.builder()
+            .region(region)
+            .hitCount(stats.getHitCount())
+            .missCount(stats.getMissCount())
+            .putCount(stats.getPutCount())
+            .build());
+      }
+    }
+    return regions;
+  }
+
 }
@@ -0,0 +1,48 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One version counter per entity table, bumped after every committed
+ * insert, update or delete (bulk writes and imports included, since they
+ * go through the same entity listener).
+ *
+ * The counters live in memory, so each ETag also carries the time this
+ * instance started; after a restart every client simply downloads again.
+ */
+@Service("tableVersions")
+public class TableVersions {
+
+  private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+  private final ConcurrentMap<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+
+  public long version(Class<?> table) {
+    return counter(table).get();
+  }
+
+  /**
+   * Strong ETag for the current contents of the table. Callers must take it
+   * before reading the rows, so that a write racing with the read can only
+   * make the ETag older than the body, never newer.
+   */
+  public String etag(Class<?> table) {
+    return "\"%s-%s-%d\"".formatted(table.getSimpleName(), epoch, version(table));
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onEntityChanged(EntityChangedEvent event) {
+    counter(event.getEntity().getClass()).incrementAndGet();
+  }
+
+  private AtomicLong counter(Class<?> table) {
+    return versions.computeIfAbsent(table, t -> new AtomicLong());
+  }
+}
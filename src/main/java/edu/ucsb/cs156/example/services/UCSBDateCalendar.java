@@ -0,0 +1,97 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// The UCSB dates in time order, for "what is coming up" and date-window
+// queries. Reads walk a ConcurrentSkipListMap without locking; writers are
+// serialized so that the id -> key map stays in step with it. Loaded at
+// startup and kept current from committed changes.
+
+@Slf4j
+@Service("ucsbDateCalendar")
+public class UCSBDateCalendar {
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  private record Key(LocalDateTime localDateTime, long id) {
+  }
+
+  private static final Comparator<Key> ORDER = Comparator.comparing(Key::localDateTime).thenComparingLong(Key::id);
+
+  private final ConcurrentSkipListMap<Key, UCSBDate> dates = new ConcurrentSkipListMap<>(ORDER);
+  private final Map<Long, Key> keys = new HashMap<>();
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    int count = 0;
+    for (UCSBDate date : ucsbDateRepository.findAll()) {
+      put(date);
+      count++;
+    }
+    log.info("ucsb date calendar loaded with {} dates", count);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onEntityChanged(EntityChangedEvent event) {
+    if (event.getEntity() instanceof UCSBDate date) {
+      if (event.isDeleted()) {
+        remove(date.getId());
+      } else {
+        put(date);
+      }
+    }
+  }
+
+  public synchronized void put(UCSBDate date) {
+    remove(date.getId());
+    if (date.getLocalDateTime() != null) {
+      Key key = new Key(date.getLocalDateTime(), date.getId());
+      dates.put(key, date);
+      keys.put(date.getId(), key);
+    }
+  }
+
+  public synchronized void remove(long id) {
+    Key key = keys.remove(id);
+    if (key != null) {
+      dates.remove(key);
+    }
+  }
+
+  /**
+   * Dates from <code>from</code> (inclusive) to <code>to</code> (exclusive),
+   * earliest first, at most <code>limit</code> of them.
+   */
+  public List<UCSBDate> between(LocalDateTime from, LocalDateTime to, int limit) {
+    if (!from.isBefore(to)) {
+      return List.of();
+    }
+    NavigableMap<Key, UCSBDate> window = dates.subMap(new Key(from, Long.MIN_VALUE), true, new Key(to, Long.MIN_VALUE), false);
+    return window.values().stream().limit(limit).toList();
+  }
+
+  /**
+   * The next <code>n</code> dates strictly after <code>after</code>, earliest first.
+   */
+  public List<UCSBDate> upcoming(LocalDateTime after, int n) {
+    return dates.tailMap(new Key(after, Long.MAX_VALUE), false).values().stream().limit(n).toList();
+  }
+}
@@ -0,0 +1,186 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Service;
+
+// Creates and refreshes rows in the users table from OAuth profile attributes.
+//
+// Provisioning starts on a background thread as soon as a login succeeds, so
+// that by the time the first page asks for the current user it is usually
+// done. Concurrent requests for the same email share one in-flight future,
+// and a row is only written when the profile (or the admin flag) changed.
+
+@Slf4j
+@Service("userProvisioning")
+public class UserProvisioningService {
+  @Autowired
+  private UserRepository userRepository;
+
+  @Value("${app.admin.emails}")
+  final private List<String> adminEmails = new ArrayList<String>();
+
+  @Value("${app.users.provisioning-threads:2}")
+  private int provisioningThreads;
+
+  private final Map<String, CompletableFuture<User>> inFlight = new ConcurrentHashMap<>();
+
+  // Bumped whenever a stored admin flag changes, so that the users cached in
+  // HTTP sessions by CurrentUserServiceImpl are resolved again
+  private final AtomicLong adminGeneration = new AtomicLong();
+
+  private Executor executor;
+
+  @PostConstruct
+  public void init() {
+    ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+    pool.setCorePoolSize(Math.max(1, provisioningThreads));
+    pool.setThreadNamePrefix("user-provisioning-");
+    pool.setDaemon(true);
+    pool.initialize();
+    executor = pool;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (executor instanceof ThreadPoolTaskExecutor pool) {
+      pool.shutdown();
+    }
+  }
+
+  @EventListener
+  public void onAuthenticationSuccess(AuthenticationSuccessEvent event) {
+    if (event.getAuthentication().getPrincipal() instanceof OAuth2User oAuthUser) {
+      if (oAuthUser.getAttribute("email") == null) {
+        log.warn("not provisioning {}: the OAuth profile has no email", oAuthUser.getName());
+        return;
+      }
+      provision(oAuthUser.getAttributes());
+    }
+  }
+
+  public long getAdminGeneration() {
+    return adminGeneration.get();
+  }
+
+  /**
+   * Returns the user row for these OAuth attributes, inserting or updating it
+   * on a background thread if needed. Calls for an email that is already
+   * being provisioned get the same future back.
+   *
+   * @throws IllegalArgumentException if the attributes have no email
+   */
+  public CompletableFuture<User> provision(Map<String, Object> attributes) {
+    String email = (String) attributes.get("email");
+    if (email == null) {
+      throw new IllegalArgumentException("OAuth profile has no email");
+    }
+    CompletableFuture<User> created = new CompletableFuture<>();
+    CompletableFuture<User> existing = inFlight.putIfAbsent(email, created);
+    if (existing != null) {
+      return existing;
+    }
+
+    executor.execute(() -> {
+      try {
+        created.complete(upsert(attributes));
+      } catch (Throwable t) {
+        log.error("provisioning {} failed", email, t);
+        created.completeExceptionally(t);
+      } finally {
+        inFlight.remove(email, created);
+      }
+    });
+    return created;
+  }
+
+  User upsert(Map<String, Object> attributes) {
+    String email = (String) attributes.get("email");
+    User incoming = User.builder()
+        .googleSub((String) attributes.get("sub"))
+        .email(email)
+        .pictureUrl((String) attributes.get("picture"))
+        .fullName((String) attributes.get("name"))
+        .givenName((String) attributes.get("given_name"))
+        .familyName((String) attributes.get("family_name"))
+        .emailVerified(Boolean.TRUE.equals(attributes.get("email_verified")))
+        .locale((String) attributes.get("locale"))
+        .hostedDomain((String) attributes.get("hd"))
+        .admin(adminEmails.contains(email))
+        .build();
+    String hash = profileHash(incoming);
+
+    Optional<User> ou = userRepository.findByEmail(email);
+    if (ou.isEmpty()) {
+      incoming.setProfileHash(hash);
+      log.info("provisioning new user {}", email);
+      return userRepository.save(incoming);
+    }
+
+    User u = ou.get();
+    boolean admin = u.getAdmin() || incoming.getAdmin();
+    if (hash.equals(u.getProfileHash()) && admin == u.getAdmin()) {
+      return u;
+    }
+
+    u.setGoogleSub(incoming.getGoogleSub());
+    u.setPictureUrl(incoming.getPictureUrl());
+    u.setFullName(incoming.getFullName());
+    u.setGivenName(incoming.getGivenName());
+    u.setFamilyName(incoming.getFamilyName());
+    u.setEmailVerified(incoming.getEmailVerified());
+    u.setLocale(incoming.getLocale());
+    u.setHostedDomain(incoming.getHostedDomain());
+    boolean adminChanged = admin != u.getAdmin();
+    u.setAdmin(admin);
+    u.setProfileHash(hash);
+    log.info("refreshing profile of user {}", email);
+    User saved = userRepository.save(u);
+    if (adminChanged) {
+      adminGeneration.incrementAndGet();
+    }
+    return saved;
+  }
+
+  static String profileHash(User u) {
+    String profile = String.join("\u0000",
+        String.valueOf(u.getGoogleSub()),
+        String.valueOf(u.getPictureUrl()),
+        String.valueOf(u.getFullName()),
+        String.valueOf(u.getGivenName()),
+        String.valueOf(u.getFamilyName()),
+        String.valueOf(u.getEmailVerified()),
+        String.valueOf(u.getLocale()),
+        String.valueOf(u.getHostedDomain()));
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(profile.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
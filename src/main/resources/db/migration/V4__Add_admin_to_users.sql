@@ -1 +1 @@
-ALTER TABLE users ADD admin BOOLEAN DEFAULT FALSE;
\ No newline at end of file
+ALTER TABLE IF EXISTS users ADD COLUMN IF NOT EXISTS admin BOOLEAN DEFAULT FALSE;
@@ -0,0 +1,8 @@
+-- Ids now come from pooled sequences (50 ids per round trip) so that
+-- Hibernate can batch inserts. The serial columns' sequences are reused;
+-- with the pooled-lo optimizer the next block starts past every existing id.
+-- On a new database Hibernate creates the sequences with this increment.
+ALTER SEQUENCE IF EXISTS restaurants_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS books_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS parks_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS ucsbdates_id_seq INCREMENT BY 50;
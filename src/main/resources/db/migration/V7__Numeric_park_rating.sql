@@ -0,0 +1,16 @@
+-- parks.rating was free-form text; make it a number so it can be sorted,
+-- filtered and indexed. Values that are not numbers become NULL (unrated).
+-- Hibernate's ddl-auto cannot change a column's type, so this runs before
+-- it; on a new database, where Hibernate creates the column, it does nothing.
+DO $$
+BEGIN
+  IF EXISTS (SELECT 1 FROM information_schema.columns
+             WHERE table_schema = current_schema()
+               AND table_name = 'parks'
+               AND column_name = 'rating'
+               AND data_type <> 'double precision') THEN
+    ALTER TABLE parks ALTER COLUMN rating TYPE DOUBLE PRECISION USING
+      CASE WHEN TRIM(rating) ~ '^[0-9]+(\.[0-9]+)?$' THEN CAST(TRIM(rating) AS DOUBLE PRECISION) END;
+  END IF;
+END
+$$;
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
@@ -15,6 +16,7 @@ import org.springframework.test.web.servlet.MvcResult;
 
 import java.io.UnsupportedEncodingException;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @ActiveProfiles("test")
 @Import(TestConfig.class)
@@ -31,6 +33,14 @@ public abstract class ControllerTestCase {
   @Autowired
   public ObjectMapper mapper;
 
+  /**
+   * Stands in for JsonResponseCache.render on a mocked cache: renders
+   * whatever rows the controller supplies, as the real cache does on a miss.
+   */
+  protected Answer<byte[]> rendersRows() {
+    return invocation -> mapper.writeValueAsBytes(invocation.<Supplier<?>>getArgument(1).get());
+  }
+
   protected Map<String, Object> responseToJson(MvcResult result) throws UnsupportedEncodingException, JsonProcessingException {
     String responseString = result.getResponse().getContentAsString();
     return mapper.readValue(responseString, Map.class);
@@ -0,0 +1,125 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.services.TableVersions;
+
+@ExtendWith(MockitoExtension.class)
+class ConditionalGetAspectTests {
+
+  @Mock
+  ProceedingJoinPoint joinPoint;
+
+  @Mock
+  TableVersions tableVersions;
+
+  @TableVersioned(Park.class)
+  void annotated() {
+  }
+
+  ConditionalGetAspect aspect = new ConditionalGetAspect();
+  TableVersioned versioned;
+  MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/parks/all");
+  MockHttpServletResponse response = new MockHttpServletResponse();
+
+  @BeforeEach
+  void setup() throws Exception {
+    aspect.tableVersions = tableVersions;
+    versioned = getClass().getDeclaredMethod("annotated").getAnnotation(TableVersioned.class);
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+  }
+
+  @AfterEach
+  void teardown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void first_request_runs_the_handler_and_gets_an_etag() throws Throwable {
+    when(tableVersions.etag(Park.class)).thenReturn("\"Park-x-3\"");
+    when(joinPoint.proceed()).thenReturn("parks");
+
+    assertEquals("parks", aspect.checkNotModified(joinPoint, versioned));
+
+    assertEquals(200, response.getStatus());
+    assertEquals("\"Park-x-3\"", response.getHeader(HttpHeaders.ETAG));
+    assertEquals("private, no-cache", response.getHeader(HttpHeaders.CACHE_CONTROL));
+    assertEquals("Accept", response.getHeader(HttpHeaders.VARY));
+  }
+
+  @Test
+  void binary_responses_get_their_own_etag() throws Throwable {
+    when(tableVersions.etag(Park.class)).thenReturn("\"Park-x-3\"");
+    when(joinPoint.proceed()).thenReturn("parks");
+    request.addHeader(HttpHeaders.ACCEPT, "application/cbor");
+    request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"Park-x-3\"");
+
+    assertEquals("parks", aspect.checkNotModified(joinPoint, versioned));
+
+    assertEquals(200, response.getStatus());
+    assertEquals("\"Park-x-3-cbor\"", response.getHeader(HttpHeaders.ETAG));
+  }
+
+  @Test
+  void matching_binary_etag_is_not_modified() throws Throwable {
+    when(tableVersions.etag(Park.class)).thenReturn("\"Park-x-3\"");
+    request.addHeader(HttpHeaders.ACCEPT, "application/x-protobuf");
+    request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"Park-x-3-x-protobuf\"");
+
+    assertNull(aspect.checkNotModified(joinPoint, versioned));
+
+    assertEquals(304, response.getStatus());
+    verify(joinPoint, never()).proceed();
+  }
+
+  @Test
+  void matching_etag_is_not_modified_and_skips_the_handler() throws Throwable {
+    when(tableVersions.etag(Park.class)).thenReturn("\"Park-x-3\"");
+    request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"Park-x-3\"");
+
+    assertNull(aspect.checkNotModified(joinPoint, versioned));
+
+    assertEquals(304, response.getStatus());
+    assertEquals("\"Park-x-3\"", response.getHeader(HttpHeaders.ETAG));
+    verify(joinPoint, never()).proceed();
+  }
+
+  @Test
+  void stale_etag_runs_the_handler() throws Throwable {
+    when(tableVersions.etag(Park.class)).thenReturn("\"Park-x-4\"");
+    when(joinPoint.proceed()).thenReturn("parks");
+    request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"Park-x-3\"");
+
+    assertEquals("parks", aspect.checkNotModified(joinPoint, versioned));
+
+    assertEquals(200, response.getStatus());
+    assertEquals("\"Park-x-4\"", response.getHeader(HttpHeaders.ETAG));
+  }
+
+  @Test
+  void outside_a_request_the_handler_just_runs() throws Throwable {
+    RequestContextHolder.resetRequestAttributes();
+    when(joinPoint.proceed()).thenReturn("parks");
+
+    assertEquals("parks", aspect.checkNotModified(joinPoint, versioned));
+    verify(tableVersions, never()).etag(Park.class);
+  }
+}
@@ -0,0 +1,121 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.example.aop.LoggingAspect.RequestLogEvent;
+import edu.ucsb.cs156.example.controllers.FrontendProxyController;
+import edu.ucsb.cs156.example.controllers.ParksController;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LoggingAspectTests {
+
+  @Mock
+  JoinPoint joinPoint;
+
+  @Mock
+  Signature signature;
+
+  MockEnvironment environment = new MockEnvironment();
+
+  LoggingAspect loggingAspect = new LoggingAspect();
+
+  @BeforeEach
+  void setup() {
+    loggingAspect.environment = environment;
+    loggingAspect.buffer = new RequestLogBuffer<>(16);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest("GET", "/api/parks/all")));
+  }
+
+  @AfterEach
+  void teardown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  private void controllerMethod(Class<?> type, String name) {
+    when(signature.getDeclaringTypeName()).thenReturn(type.getName());
+    when(signature.getDeclaringType()).thenReturn(type);
+    when(signature.getName()).thenReturn(name);
+  }
+
+  @Test
+  void calls_are_queued_for_the_writer() {
+    controllerMethod(ParksController.class, "allParks");
+
+    loggingAspect.logControllers(joinPoint);
+
+    RequestLogEvent event = loggingAspect.buffer.poll();
+    assertEquals("GET", event.method());
+    assertEquals("/api/parks/all", event.uri());
+    assertEquals("ParksController", event.controller());
+    assertEquals("allParks", event.handler());
+    assertNull(loggingAspect.buffer.poll());
+  }
+
+  @Test
+  void stoplisted_controllers_are_not_logged() {
+    controllerMethod(FrontendProxyController.class, "proxy");
+
+    loggingAspect.logControllers(joinPoint);
+
+    assertNull(loggingAspect.buffer.poll());
+  }
+
+  @Test
+  void calls_outside_a_request_are_not_logged() {
+    RequestContextHolder.resetRequestAttributes();
+    controllerMethod(ParksController.class, "allParks");
+
+    loggingAspect.logControllers(joinPoint);
+
+    assertNull(loggingAspect.buffer.poll());
+  }
+
+  @Test
+  void endpoints_can_be_sampled_or_switched_off() {
+    environment.setProperty("app.request-log.sample-rates.ParksController.allParks", "0");
+    environment.setProperty("app.request-log.sample-rates.ParksController.getById", "0.5");
+    controllerMethod(ParksController.class, "allParks");
+
+    for (int i = 0; i < 100; i++) {
+      loggingAspect.logControllers(joinPoint);
+    }
+
+    assertNull(loggingAspect.buffer.poll());
+    assertEquals(0.5, loggingAspect.sampleRate("ParksController", "getById"));
+    assertEquals(1.0, loggingAspect.sampleRate("ParksController", "postPark"));
+  }
+
+  @Test
+  void drain_writes_everything_queued() {
+    controllerMethod(ParksController.class, "allParks");
+    for (int i = 0; i < 20; i++) {
+      loggingAspect.logControllers(joinPoint);
+    }
+
+    // 16 fit in the ring, the other 4 are dropped
+    assertEquals(16, loggingAspect.drain());
+    assertEquals(0, loggingAspect.drain());
+    assertTrue(loggingAspect.buffer.offer(new RequestLogEvent(0L, "GET", "/", "X", "y")));
+  }
+}
@@ -0,0 +1,102 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+class RequestLogBufferTests {
+
+  @Test
+  void capacity_is_rounded_up_to_a_power_of_two() {
+    assertEquals(8, new RequestLogBuffer<String>(5).capacity());
+    assertEquals(8, new RequestLogBuffer<String>(8).capacity());
+    assertEquals(2, new RequestLogBuffer<String>(1).capacity());
+  }
+
+  @Test
+  void items_come_out_in_order_and_the_ring_wraps() {
+    RequestLogBuffer<Integer> buffer = new RequestLogBuffer<>(4);
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 3; i++) {
+        assertTrue(buffer.offer(round * 10 + i));
+      }
+      for (int i = 0; i < 3; i++) {
+        assertEquals(round * 10 + i, buffer.poll());
+      }
+      assertNull(buffer.poll());
+    }
+  }
+
+  @Test
+  void a_full_ring_drops_and_counts() {
+    RequestLogBuffer<Integer> buffer = new RequestLogBuffer<>(2);
+    assertTrue(buffer.offer(1));
+    assertTrue(buffer.offer(2));
+    assertFalse(buffer.offer(3));
+    assertFalse(buffer.offer(4));
+    assertEquals(2, buffer.takeDropped());
+    assertEquals(0, buffer.takeDropped());
+
+    assertEquals(1, buffer.poll());
+    assertTrue(buffer.offer(5));
+    assertEquals(2, buffer.poll());
+    assertEquals(5, buffer.poll());
+  }
+
+  @Test
+  void concurrent_producers_lose_nothing_that_was_accepted() throws Exception {
+    RequestLogBuffer<Integer> buffer = new RequestLogBuffer<>(1024);
+    int producers = 4;
+    int perProducer = 20_000;
+    CountDownLatch go = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      int base = p * perProducer;
+      Thread thread = new Thread(() -> {
+        try {
+          go.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < perProducer; i++) {
+          while (!buffer.offer(base + i)) {
+            Thread.onSpinWait();
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+
+    go.countDown();
+    Set<Integer> seen = new HashSet<>();
+    int[] last = new int[producers];
+    Arrays.fill(last, -1);
+    while (seen.size() < producers * perProducer) {
+      Integer item = buffer.poll();
+      if (item == null) {
+        Thread.onSpinWait();
+        continue;
+      }
+      assertTrue(seen.add(item), "duplicate " + item);
+      // each producer's items arrive in the order it offered them
+      int producer = item / perProducer;
+      assertTrue(item > last[producer]);
+      last[producer] = item;
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(buffer.poll());
+  }
+}
@@ -0,0 +1,88 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import edu.ucsb.cs156.example.controllers.FrontendProxyController;
+import edu.ucsb.cs156.example.controllers.RestaurantController;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class TimingAspectTests {
+
+  @Mock
+  ProceedingJoinPoint joinPoint;
+
+  @Mock
+  Signature signature;
+
+  SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  TimingAspect timingAspect = new TimingAspect();
+
+  @BeforeEach
+  void setup() {
+    timingAspect.meterRegistry = meterRegistry;
+    when(joinPoint.getSignature()).thenReturn(signature);
+  }
+
+  private void controllerMethod(Class<?> type, String name) {
+    when(signature.getDeclaringTypeName()).thenReturn(type.getName());
+    when(signature.getDeclaringType()).thenReturn(type);
+    when(signature.getName()).thenReturn(name);
+  }
+
+  @Test
+  void successful_calls_are_timed_and_counted() throws Throwable {
+    controllerMethod(RestaurantController.class, "getById");
+    when(joinPoint.proceed()).thenReturn("ok");
+
+    assertEquals("ok", timingAspect.timeControllers(joinPoint));
+    assertEquals("ok", timingAspect.timeControllers(joinPoint));
+
+    Timer timer = meterRegistry.get(TimingAspect.REQUESTS)
+        .tags("controller", "RestaurantController", "method", "getById", "outcome", "success")
+        .timer();
+    assertEquals(2, timer.count());
+    assertNull(meterRegistry.find(TimingAspect.ERRORS).counter());
+  }
+
+  @Test
+  void exceptions_are_counted_and_rethrown() throws Throwable {
+    controllerMethod(RestaurantController.class, "getById");
+    EntityNotFoundException notFound = new EntityNotFoundException(Restaurant.class, 7L);
+    when(joinPoint.proceed()).thenThrow(notFound);
+
+    assertThrows(EntityNotFoundException.class, () -> timingAspect.timeControllers(joinPoint));
+
+    assertEquals(1, meterRegistry.get(TimingAspect.REQUESTS)
+        .tags("controller", "RestaurantController", "method", "getById", "outcome", "error")
+        .timer().count());
+    assertEquals(1.0, meterRegistry.get(TimingAspect.ERRORS)
+        .tags("controller", "RestaurantController", "method", "getById", "exception", "EntityNotFoundException")
+        .counter().count());
+  }
+
+  @Test
+  void frontend_proxy_is_not_timed() throws Throwable {
+    when(signature.getDeclaringTypeName()).thenReturn(FrontendProxyController.class.getName());
+    when(joinPoint.proceed()).thenReturn("page");
+
+    assertEquals("page", timingAspect.timeControllers(joinPoint));
+
+    assertNull(meterRegistry.find(TimingAspect.REQUESTS).timer());
+  }
+}
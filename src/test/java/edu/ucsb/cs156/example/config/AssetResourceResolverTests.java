@@ -0,0 +1,70 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+@ExtendWith(MockitoExtension.class)
+class AssetResourceResolverTests {
+
+  @Mock
+  ResourceResolverChain chain;
+
+  AssetResourceResolver resolver = new AssetResourceResolver();
+  MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+  List<Resource> locations = List.of();
+
+  private HttpHeaders resolve(String path, byte[] content) {
+    when(chain.resolveResource(any(), eq(path), any())).thenReturn(new ByteArrayResource(content));
+    Resource resource = resolver.resolveResource(request, path, locations, chain);
+    return ((HttpResource) resource).getResponseHeaders();
+  }
+
+  @Test
+  void fingerprinted_assets_are_immutable() {
+    for (String path : List.of("static/js/main.3f2a1b9c.js", "static/js/787.0a1b2c3d.chunk.js",
+        "static/media/logo.6ce24c58023cc2f8fd88fe9d219db6c6.svg")) {
+      assertEquals("max-age=31536000, public, immutable",
+          resolve(path, "x".getBytes()).getCacheControl(), path);
+    }
+  }
+
+  @Test
+  void other_files_must_be_revalidated() {
+    for (String path : List.of("index.html", "manifest.json", "static/js/main.js")) {
+      assertEquals("no-cache", resolve(path, "x".getBytes()).getCacheControl(), path);
+    }
+  }
+
+  @Test
+  void etag_is_a_strong_hash_of_the_content() {
+    HttpHeaders one = resolve("index.html", "<html>one</html>".getBytes());
+    HttpHeaders two = resolve("index.html", "<html>two</html>".getBytes());
+    assertEquals("\"" + DigestUtils.md5DigestAsHex("<html>one</html>".getBytes()) + "\"", one.getETag());
+    assertNotEquals(one.getETag(), two.getETag());
+    assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), one.getVary());
+  }
+
+  @Test
+  void missing_files_stay_missing() {
+    when(chain.resolveResource(any(), eq("nope.js"), any())).thenReturn(null);
+    assertNull(resolver.resolveResource(request, "nope.js", locations, chain));
+  }
+}
@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+class BinaryFormatsConfigTests {
+
+  @Test
+  void test_binary_types_are_preferred_when_asked_for() {
+    assertEquals(MediaType.APPLICATION_CBOR, BinaryFormatsConfig.preferredBinaryType("application/cbor"));
+    assertEquals(BinaryFormatsConfig.SMILE, BinaryFormatsConfig.preferredBinaryType("application/x-jackson-smile"));
+    assertEquals(JacksonProtobufHttpMessageConverter.PROTOBUF,
+        BinaryFormatsConfig.preferredBinaryType("application/x-protobuf, application/json;q=0.5"));
+  }
+
+  @Test
+  void test_json_wins_when_it_comes_first() {
+    assertNull(BinaryFormatsConfig.preferredBinaryType("application/json, application/cbor"));
+    assertNull(BinaryFormatsConfig.preferredBinaryType("application/cbor;q=0.5, application/json"));
+  }
+
+  @Test
+  void test_wildcards_get_json() {
+    assertNull(BinaryFormatsConfig.preferredBinaryType("*/*"));
+    assertNull(BinaryFormatsConfig.preferredBinaryType("application/*"));
+    assertEquals(MediaType.APPLICATION_CBOR, BinaryFormatsConfig.preferredBinaryType("application/cbor, */*;q=0.8"));
+  }
+
+  @Test
+  void test_missing_or_invalid_headers_get_json() {
+    assertNull(BinaryFormatsConfig.preferredBinaryType(null));
+    assertNull(BinaryFormatsConfig.preferredBinaryType(" "));
+    assertNull(BinaryFormatsConfig.preferredBinaryType("not a media type"));
+    assertNull(BinaryFormatsConfig.preferredBinaryType("text/html"));
+  }
+}
@@ -0,0 +1,118 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+
+import edu.ucsb.cs156.example.entities.Book;
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.User;
+
+class JacksonProtobufHttpMessageConverterTests {
+
+  ObjectMapper mapper = BinaryFormatsConfig.protobufMapper(Jackson2ObjectMapperBuilder.json());
+  NativeProtobufSchema schema = BinaryFormatsConfig.protoSchema();
+  JacksonProtobufHttpMessageConverter converter = new JacksonProtobufHttpMessageConverter(mapper, schema);
+
+  Park park = Park.builder().id(7L).name("Anisq'Oyo'").address("Isla Vista").rating(4.5)
+      .revision(12L).updatedAt(Instant.parse("2022-01-03T00:00:00Z")).version(2L).build();
+
+  private byte[] write(Object body) throws Exception {
+    MockHttpOutputMessage output = new MockHttpOutputMessage();
+    converter.write(body, JacksonProtobufHttpMessageConverter.PROTOBUF, output);
+    assertEquals(JacksonProtobufHttpMessageConverter.PROTOBUF, output.getHeaders().getContentType());
+    return output.getBodyAsBytes();
+  }
+
+  @Test
+  void test_every_entity_has_a_message_and_a_list_message() {
+    for (Class<?> entity : List.of(Park.class, Book.class, Restaurant.class, UCSBDate.class,
+        UCSBDiningCommons.class, User.class)) {
+      assertTrue(schema.hasMessageType(entity.getSimpleName()), entity.getSimpleName());
+      assertTrue(schema.hasMessageType(entity.getSimpleName() + JacksonProtobufHttpMessageConverter.LIST_SUFFIX),
+          entity.getSimpleName());
+      assertTrue(converter.canWrite(entity, JacksonProtobufHttpMessageConverter.PROTOBUF));
+      assertTrue(converter.canRead(entity, JacksonProtobufHttpMessageConverter.PROTOBUF));
+    }
+  }
+
+  @Test
+  void test_lists_can_be_written_but_not_read() {
+    assertTrue(converter.canWrite(List.class, JacksonProtobufHttpMessageConverter.PROTOBUF));
+    assertFalse(converter.canRead(List.class, JacksonProtobufHttpMessageConverter.PROTOBUF));
+    assertFalse(converter.canWrite(String.class, JacksonProtobufHttpMessageConverter.PROTOBUF));
+  }
+
+  @Test
+  void test_the_declared_element_type_decides_whether_a_list_is_writable() {
+    Type parks = ResolvableType.forClassWithGenerics(List.class, Park.class).getType();
+    Type strings = ResolvableType.forClassWithGenerics(List.class, String.class).getType();
+    // what a ResponseEntity<?> handler declares
+    Type anything = Object.class;
+
+    assertTrue(converter.canWrite(parks, ArrayList.class, JacksonProtobufHttpMessageConverter.PROTOBUF));
+    assertFalse(converter.canWrite(strings, ArrayList.class, JacksonProtobufHttpMessageConverter.PROTOBUF));
+    assertTrue(converter.canWrite(anything, ArrayList.class, JacksonProtobufHttpMessageConverter.PROTOBUF));
+    assertFalse(converter.canRead(parks, null, JacksonProtobufHttpMessageConverter.PROTOBUF));
+  }
+
+  @Test
+  void test_an_entity_round_trips() throws Exception {
+    byte[] bytes = write(park);
+
+    Object read = converter.read(Park.class, new MockHttpInputMessage(bytes));
+
+    assertEquals(park, read);
+  }
+
+  @Test
+  void test_a_list_is_written_as_the_list_message() throws Exception {
+    Park other = Park.builder().id(8L).name("Girsh Park").build();
+
+    byte[] bytes = write(List.of(park, other));
+
+    JsonNode rows = mapper.readerFor(JsonNode.class).with(schema.forType("ParkList")).readTree(bytes).get("rows");
+    assertEquals(2, rows.size());
+    assertEquals("Anisq'Oyo'", rows.get(0).get("name").asText());
+    assertEquals("2022-01-03T00:00:00Z", rows.get(0).get("updatedAt").asText());
+    assertEquals(8L, rows.get(1).get("id").asLong());
+  }
+
+  @Test
+  void test_an_empty_list_is_an_empty_message() throws Exception {
+    assertEquals(0, write(List.of()).length);
+  }
+
+  @Test
+  void test_a_list_of_something_else_is_not_writable() {
+    assertThrows(HttpMessageNotWritableException.class,
+        () -> write(List.of("not an entity")));
+  }
+
+  @Test
+  void test_garbage_is_not_readable() {
+    assertThrows(HttpMessageNotReadableException.class,
+        () -> converter.read(Park.class, new MockHttpInputMessage(new byte[] { (byte) 0xff, 0x01 })));
+  }
+}
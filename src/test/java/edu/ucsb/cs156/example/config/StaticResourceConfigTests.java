@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class StaticResourceConfigTests {
+
+  static final String ETAG = "\"5d41402abc4b2a76b9719d911017c592\"";
+
+  StaticResourceConfig.AssetEtagFilter filter = new StaticResourceConfig.AssetEtagFilter();
+
+  // Stands in for the resource handler: a file with the ETag AssetResourceResolver sets
+  HttpServlet asset = new HttpServlet() {
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+      response.setHeader(HttpHeaders.ETAG, ETAG);
+      response.getWriter().write("<html></html>");
+    }
+  };
+
+  private MockHttpServletResponse get(String path, String ifNoneMatch) throws Exception {
+    return get(path, ifNoneMatch, DispatcherType.REQUEST);
+  }
+
+  private MockHttpServletResponse get(String path, String ifNoneMatch, DispatcherType dispatcherType) throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+    request.setDispatcherType(dispatcherType);
+    if (ifNoneMatch != null) {
+      request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+    }
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request, response, new MockFilterChain(asset));
+    return response;
+  }
+
+  @Test
+  void index_html_is_sent_with_its_etag() throws Exception {
+    MockHttpServletResponse response = get("/index.html", null);
+
+    assertEquals(200, response.getStatus());
+    assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+    assertEquals("<html></html>", response.getContentAsString());
+  }
+
+  @Test
+  void matching_if_none_match_is_not_modified() throws Exception {
+    MockHttpServletResponse response = get("/index.html", ETAG);
+
+    assertEquals(304, response.getStatus());
+    assertEquals("", response.getContentAsString());
+  }
+
+  @Test
+  void root_is_revalidated_too() throws Exception {
+    assertEquals(304, get("/", ETAG).getStatus());
+  }
+
+  @Test
+  void client_side_routes_are_revalidated_on_the_forward_to_index_html() throws Exception {
+    assertEquals(200, get("/parks/list", ETAG).getStatus());
+    assertEquals(304, get("/index.html", ETAG, DispatcherType.FORWARD).getStatus());
+  }
+
+  @Test
+  void stale_if_none_match_gets_the_file() throws Exception {
+    MockHttpServletResponse response = get("/manifest.json", "\"0000\"");
+
+    assertEquals(200, response.getStatus());
+    assertEquals("<html></html>", response.getContentAsString());
+  }
+
+  @Test
+  void api_and_fingerprinted_files_are_passed_through() throws Exception {
+    assertEquals(200, get("/api/parks/all", ETAG).getStatus());
+    assertEquals(200, get("/actuator/metrics", ETAG).getStatus());
+    assertEquals(200, get("/static/js/main.3f2a9c1b.js", ETAG).getStatus());
+  }
+
+  @Test
+  void login_and_swagger_are_passed_through() throws Exception {
+    assertEquals(200, get("/login", ETAG).getStatus());
+    assertEquals(200, get("/logout", ETAG).getStatus());
+    assertEquals(200, get("/oauth2/authorization/google", ETAG).getStatus());
+    assertEquals(200, get("/swagger-ui/index.html", ETAG).getStatus());
+  }
+}
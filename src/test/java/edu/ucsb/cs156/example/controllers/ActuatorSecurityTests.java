@@ -0,0 +1,74 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Only admins get past security to the actuator endpoints. The endpoints
+ * themselves are not part of this slice, so an admin gets a 404 here.
+ */
+@WebMvcTest(controllers = CSRFController.class)
+@Import(TestConfig.class)
+public class ActuatorSecurityTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Test
+  public void logged_out_users_cannot_read_metrics() throws Exception {
+    mockMvc.perform(get("/actuator/metrics"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void regular_users_cannot_read_metrics() throws Exception {
+    mockMvc.perform(get("/actuator/metrics/cache.gets"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void regular_users_cannot_clear_the_caches() throws Exception {
+    mockMvc.perform(delete("/actuator/caches").with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @Test
+  public void logged_out_users_cannot_scrape_prometheus() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void regular_users_cannot_scrape_prometheus() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admins_can_get_through_to_prometheus() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().isNotFound());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admins_get_through_to_the_actuator() throws Exception {
+    mockMvc.perform(get("/actuator/caches"))
+        .andExpect(status().isNotFound());
+  }
+}
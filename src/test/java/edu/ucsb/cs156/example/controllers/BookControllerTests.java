@@ -4,12 +4,23 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Book;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.models.ImportReport;
+import edu.ucsb.cs156.example.models.SearchResults;
 import edu.ucsb.cs156.example.repositories.BookRepository;
+import edu.ucsb.cs156.example.services.BookSearchIndex;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -24,11 +35,23 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.util.List;
+import java.util.function.Function;
 
 @WebMvcTest(controllers = BookController.class)
 @Import(TestConfig.class)
@@ -40,6 +63,27 @@ public class BookControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityExportService entityExportService;
+
+        @MockBean
+        BulkWriteService bulkWriteService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        BookSearchIndex bookSearchIndex;
+
+        @MockBean
+        ChangeFeed changeFeed;
+
+        @MockBean
+        DeltaSyncService deltaSyncService;
+
+        @MockBean
+        JsonResponseCache jsonResponseCache;
+
         // Authorization tests for /api/books/admin/all
 
         @Test
@@ -148,6 +192,7 @@ public class BookControllerTests extends ControllerTestCase {
                 expectedDates.addAll(Arrays.asList(Book1, Book2));
 
                 when(BookRepository.findAll()).thenReturn(expectedDates);
+                when(jsonResponseCache.render(eq(Book.class), any())).thenAnswer(rendersRows());
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/books/all"))
@@ -192,15 +237,7 @@ public class BookControllerTests extends ControllerTestCase {
         @Test
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
-
-
-                Book Book1 = Book.builder()
-                                .title("IT")
-                                .author("Stephen King")
-                                .genre("Horror")
-                                .build();
-
-                when(BookRepository.findById(eq(15L))).thenReturn(Optional.of(Book1));
+                when(bulkWriteService.deleteAll(eq(Book.class), eq(List.of(15L)), any())).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -209,8 +246,7 @@ public class BookControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(BookRepository, times(1)).findById(15L);
-                verify(BookRepository, times(1)).delete(any());
+                verify(bulkWriteService, times(1)).deleteAll(eq(Book.class), eq(List.of(15L)), any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Book with id 15 deleted", json.get("message"));
@@ -222,7 +258,7 @@ public class BookControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(BookRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(bulkWriteService.deleteAll(eq(Book.class), eq(List.of(15L)), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -231,11 +267,45 @@ public class BookControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(BookRepository, times(1)).findById(15L);
+                verify(bulkWriteService, times(1)).deleteAll(eq(Book.class), eq(List.of(15L)), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Book with id 15 not found", json.get("message"));
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_many_books_at_once() throws Exception {
+                // arrange
+                when(bulkWriteService.deleteAll(eq(Book.class), eq(List.of(15L, 16L, 17L)), any())).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/books/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[15, 16, 17]")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Function<Long, Book>> stub = ArgumentCaptor.forClass(Function.class);
+                verify(bulkWriteService, times(1)).deleteAll(eq(Book.class), eq(List.of(15L, 16L, 17L)), stub.capture());
+                assertEquals(15L, stub.getValue().apply(15L).getId());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 of 3 Books deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_delete_many_books() throws Exception {
+                mockMvc.perform(
+                                delete("/api/books/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[15, 16, 17]")
+                                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_can_edit_an_existing_Book() throws Exception {
@@ -257,6 +327,7 @@ public class BookControllerTests extends ControllerTestCase {
                 String requestBody = mapper.writeValueAsString(BookEdited);
 
                 when(BookRepository.findById(eq(67L))).thenReturn(Optional.of(BookOrig));
+                when(BookRepository.save(eq(BookEdited))).thenReturn(BookEdited);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -274,6 +345,189 @@ public class BookControllerTests extends ControllerTestCase {
                 assertEquals(requestBody, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_book_when_if_match_is_current() throws Exception {
+                // arrange
+                Book orig = Book.builder()
+                                .title("IT")
+                                .version(3)
+                                .build();
+                Book edited = Book.builder()
+                                .title("IT2")
+                                .build();
+                Book saved = Book.builder()
+                                .title("IT2")
+                                .version(4)
+                                .build();
+
+                when(BookRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+                when(BookRepository.save(any(Book.class))).thenReturn(saved);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/books?id=67")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(BookRepository, times(1)).save(any(Book.class));
+                assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+                assertEquals(mapper.writeValueAsString(saved), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_book_with_a_stale_if_match() throws Exception {
+                // arrange
+                Book orig = Book.builder()
+                                .title("IT")
+                                .version(5)
+                                .build();
+                Book edited = Book.builder()
+                                .title("IT2")
+                                .build();
+
+                when(BookRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+
+                // act
+                mockMvc.perform(
+                                put("/api/books?id=67")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+
+                // assert
+                verify(BookRepository, never()).save(any(Book.class));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void concurrent_edit_of_a_book_returns_precondition_failed() throws Exception {
+                // arrange
+                Book orig = Book.builder()
+                                .title("IT")
+                                .version(3)
+                                .build();
+                Book edited = Book.builder()
+                                .title("IT2")
+                                .build();
+
+                when(BookRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+                when(BookRepository.save(any(Book.class)))
+                                .thenThrow(new ObjectOptimisticLockingFailureException(Book.class, 67L));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/books?id=67")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("ObjectOptimisticLockingFailureException", json.get("type"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_some_fields_of_a_book() throws Exception {
+                // arrange
+                Book orig = Book.builder()
+                                .id(67L)
+                                .title("IT")
+                                .author("Stephen King")
+                                .genre("Horror")
+                                .version(2)
+                                .build();
+
+                when(BookRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+                when(BookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/books?id=67")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"id\": 99, \"title\": \"IT2\", \"author\": null}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert: named fields replaced or cleared, the key and everything else kept
+                ArgumentCaptor<Book> captor = ArgumentCaptor.forClass(Book.class);
+                verify(BookRepository, times(1)).save(captor.capture());
+                Book saved = captor.getValue();
+                assertEquals(67L, saved.getId());
+                assertEquals("IT2", saved.getTitle());
+                assertNull(saved.getAuthor());
+                assertEquals("Horror", saved.getGenre());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_that_changes_nothing_does_not_write_the_book() throws Exception {
+                // arrange
+                Book orig = Book.builder()
+                                .id(67L)
+                                .title("IT")
+                                .author("Stephen King")
+                                .genre("Horror")
+                                .version(2)
+                                .build();
+
+                when(BookRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/books?id=67")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"title\": \"IT\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(BookRepository, never()).save(any(Book.class));
+                assertEquals("\"2\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+                assertEquals(mapper.writeValueAsString(orig), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_with_an_unknown_field_is_rejected_for_a_book() throws Exception {
+                // arrange
+                Book orig = Book.builder()
+                                .id(67L)
+                                .title("IT")
+                                .author("Stephen King")
+                                .genre("Horror")
+                                .build();
+
+                when(BookRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/books?id=67")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"noSuchField\": 1}")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                verify(BookRepository, never()).save(any(Book.class));
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_cannot_edit_Book_that_does_not_exist() throws Exception {
@@ -305,4 +559,247 @@ public class BookControllerTests extends ControllerTestCase {
                 assertEquals("Book with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination of /api/books/all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_page_through_all_with_a_cursor() throws Exception {
+
+                // arrange
+
+                List<Book> page = List.of(Book.builder().id(4L).title("Dune").build());
+
+                when(BookRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.of(0, 1))))
+                                .thenReturn(new SliceImpl<>(page, PageRequest.of(0, 1), true));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/books/all?after=3&limit=1"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(BookRepository, times(0)).findAll();
+                assertEquals("<http://localhost/api/books/all?after=4&limit=1>; rel=\"next\"",
+                                response.getResponse().getHeader("Link"));
+                assertEquals(mapper.writeValueAsString(page), response.getResponse().getContentAsString());
+        }
+
+        // Tests for streaming export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/books/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_as_csv() throws Exception {
+
+                // arrange
+
+                StreamingResponseBody body = out -> out.write("1,Dune\n".getBytes());
+                when(entityExportService.export(eq(Book.class), any(), eq("text/csv")))
+                                .thenReturn(ResponseEntity.ok().contentType(EntityExportService.CSV).body(body));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/books/export").accept("text/csv"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(entityExportService, times(1)).export(eq(Book.class), any(), eq("text/csv"));
+                assertEquals("1,Dune\n", response.getResponse().getContentAsString());
+        }
+
+        // Tests for bulk insert
+
+        @Test
+        public void logged_out_users_cannot_bulk_post() throws Exception {
+                mockMvc.perform(post("/api/books/bulk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+                mockMvc.perform(post("/api/books/bulk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_bulk_post_and_ids_are_assigned_by_the_server() throws Exception {
+
+                // arrange
+
+                List<Book> incoming = List.of(
+                                Book.builder().id(17L).title("IT").author("Stephen King").genre("Horror").build(),
+                                Book.builder().id(18L).title("Dune").author("Frank Herbert").genre("Science Fiction").build());
+                List<Book> expectedBooks = List.of(
+                                Book.builder().title("IT").author("Stephen King").genre("Horror").build(),
+                                Book.builder().title("Dune").author("Frank Herbert").genre("Science Fiction").build());
+
+                when(bulkWriteService.insertAll(eq(expectedBooks))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/books/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(incoming))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(bulkWriteService, times(1)).insertAll(eq(expectedBooks));
+                assertEquals(mapper.writeValueAsString(expectedBooks), response.getResponse().getContentAsString());
+        }
+
+        // Tests for CSV import
+
+        @Test
+        public void logged_out_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/books/import"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/books/import"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_import_a_csv_file() throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile("file", "books.csv", "text/csv",
+                                "title,author\nIT,Stephen King\n".getBytes());
+                ImportReport report = ImportReport.builder().rowsRead(1).rowsImported(1).build();
+                when(csvImportService.importCsv(any(), eq(Book.class), any())).thenReturn(report);
+
+                // act
+                MvcResult response = mockMvc.perform(multipart("/api/books/import").file(file).with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Function<Book, String>> check = ArgumentCaptor.forClass(Function.class);
+                verify(csvImportService, times(1)).importCsv(any(), eq(Book.class), check.capture());
+                assertEquals(mapper.writeValueAsString(report), response.getResponse().getContentAsString());
+
+                Book it = Book.builder().id(7L).title("IT").build();
+                assertNull(check.getValue().apply(it));
+                assertEquals(0L, it.getId());
+                assertEquals("title is required", check.getValue().apply(Book.builder().author("Stephen King").build()));
+        }
+
+        // Tests for full-text search
+
+        @Test
+        public void logged_out_users_cannot_search() throws Exception {
+                mockMvc.perform(get("/api/books/search?q=dune"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_search_books() throws Exception {
+
+                // arrange
+
+                Book dune = Book.builder().id(4L).title("Dune").author("Frank Herbert").genre("Science Fiction").build();
+                SearchResults<Book> results = SearchResults.<Book>builder()
+                                .total(6).page(1).size(5).results(List.of(dune)).build();
+                when(bookSearchIndex.search(eq("frank herbert"), eq(PageRequest.of(1, 5)))).thenReturn(results);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/books/search")
+                                .param("q", "frank herbert").param("page", "1").param("limit", "5"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(bookSearchIndex, times(1)).search(eq("frank herbert"), eq(PageRequest.of(1, 5)));
+                assertEquals(mapper.writeValueAsString(results), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void search_defaults_to_first_page_and_caps_the_limit() throws Exception {
+
+                // arrange
+
+                SearchResults<Book> results = SearchResults.<Book>builder()
+                                .total(0).page(0).size(1000).results(List.of()).build();
+                when(bookSearchIndex.search(eq("dune"), eq(PageRequest.of(0, 1000)))).thenReturn(results);
+
+                // act
+                mockMvc.perform(get("/api/books/search?q=dune&page=-3&limit=5000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(bookSearchIndex, times(1)).search(eq("dune"), eq(PageRequest.of(0, 1000)));
+        }
+
+        @Test
+        public void logged_out_users_cannot_subscribe_to_changes() throws Exception {
+                mockMvc.perform(get("/api/books/changes"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_subscribe_to_changes_and_resume_from_an_event_id() throws Exception {
+
+                // arrange
+
+                when(changeFeed.subscribe(eq(Book.class), any())).thenAnswer(invocation -> new SseEmitter());
+
+                // act
+
+                mockMvc.perform(get("/api/books/changes"))
+                                .andExpect(request().asyncStarted());
+                mockMvc.perform(get("/api/books/changes").header("Last-Event-ID", "42"))
+                                .andExpect(request().asyncStarted());
+                mockMvc.perform(get("/api/books/changes?lastEventId=41"))
+                                .andExpect(request().asyncStarted());
+
+                // assert
+
+                verify(changeFeed, times(1)).subscribe(Book.class, null);
+                verify(changeFeed, times(1)).subscribe(Book.class, 42L);
+                verify(changeFeed, times(1)).subscribe(Book.class, 41L);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_sync_changes_since_a_version() throws Exception {
+
+                // arrange
+
+                Book changed = Book.builder().id(7L).title("Dune").revision(12L).build();
+                DeltaSync<Book> delta = DeltaSync.<Book>builder().version(12L).reset(false)
+                                .rows(List.of(changed)).deleted(List.of("3")).build();
+                when(deltaSyncService.since(eq(Book.class), eq(10L), any(), any(), any())).thenReturn(delta);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/books/all?since=10"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(deltaSyncService, times(1)).since(eq(Book.class), eq(10L), any(), any(), any());
+                assertEquals(mapper.writeValueAsString(delta), response.getResponse().getContentAsString());
+        }
 }
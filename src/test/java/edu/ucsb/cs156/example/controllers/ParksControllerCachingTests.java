@@ -0,0 +1,171 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.config.CachingConfig;
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.repositories.ParkRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
+import edu.ucsb.cs156.example.services.ParkRatingStats;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * The getById cache and its eviction, with the real CachingConfig in place
+ * of the no-op cache manager that @WebMvcTest otherwise sets up.
+ */
+@WebMvcTest(controllers = ParksController.class)
+@Import({ TestConfig.class, CachingConfig.class })
+public class ParksControllerCachingTests extends ControllerTestCase {
+
+        @MockBean
+        ParkRepository parkRepository;
+
+        @MockBean
+        UserRepository userRepository;
+
+        @MockBean
+        EntityExportService entityExportService;
+
+        @MockBean
+        BulkWriteService bulkWriteService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        ParkRatingStats parkRatingStats;
+
+        @MockBean
+        ChangeFeed changeFeed;
+
+        @MockBean
+        DeltaSyncService deltaSyncService;
+
+        @MockBean
+        JsonResponseCache jsonResponseCache;
+
+        @Autowired
+        CacheManager cacheManager;
+
+        Park park = Park.builder().id(7L).name("Test Park").address("123 Fake Ave").rating(3.9).build();
+
+        @BeforeEach
+        public void setup() {
+                cacheManager.getCache(CachingConfig.PARKS).clear();
+                when(parkRepository.findById(eq(7L))).thenReturn(Optional.of(park));
+        }
+
+        private void getPark() throws Exception {
+                mockMvc.perform(get("/api/parks?id=7")).andExpect(status().isOk());
+        }
+
+        // Reads the park once (so that it is cached), runs the write, and checks
+        // that the next read goes back to the repository
+        private void assertReadAgainAfter(Runnable write) throws Exception {
+                getPark();
+                write.run();
+                clearInvocations(parkRepository);
+
+                getPark();
+
+                verify(parkRepository, times(1)).findById(7L);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void second_get_by_id_is_served_from_the_cache() throws Exception {
+                getPark();
+                getPark();
+
+                verify(parkRepository, times(1)).findById(7L);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void missing_park_is_not_cached() throws Exception {
+                when(parkRepository.findById(eq(8L))).thenReturn(Optional.empty());
+
+                mockMvc.perform(get("/api/parks?id=8")).andExpect(status().isNotFound());
+                mockMvc.perform(get("/api/parks?id=8")).andExpect(status().isNotFound());
+
+                verify(parkRepository, times(2)).findById(8L);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void put_evicts_the_park() throws Exception {
+                when(parkRepository.save(any(Park.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+                assertReadAgainAfter(() -> perform(put("/api/parks?id=7")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"name\": \"Changed Park\", \"address\": \"123 Fake Ave\", \"rating\": 4.0}")
+                                .with(csrf())));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_evicts_the_park() throws Exception {
+                when(parkRepository.save(any(Park.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+                assertReadAgainAfter(() -> perform(patch("/api/parks?id=7")
+                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                .content("{\"name\": \"Changed Park\"}")
+                                .with(csrf())));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void delete_evicts_the_park() throws Exception {
+                when(bulkWriteService.deleteAll(eq(Park.class), eq(List.of(7L)), any())).thenReturn(1);
+
+                assertReadAgainAfter(() -> perform(delete("/api/parks?id=7").with(csrf())));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void bulk_delete_evicts_every_park() throws Exception {
+                when(bulkWriteService.deleteAll(eq(Park.class), eq(List.of(15L, 16L)), any())).thenReturn(2);
+
+                assertReadAgainAfter(() -> perform(delete("/api/parks/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[15, 16]")
+                                .with(csrf())));
+        }
+
+        private void perform(RequestBuilder request) {
+                try {
+                        mockMvc.perform(request).andExpect(status().isOk());
+                } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                }
+        }
+}
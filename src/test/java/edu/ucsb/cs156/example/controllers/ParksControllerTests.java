@@ -4,12 +4,27 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.models.ImportReport;
+import edu.ucsb.cs156.example.models.RatingStats;
 import edu.ucsb.cs156.example.repositories.ParkRepository;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
+import edu.ucsb.cs156.example.services.ParkRatingStats;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -26,11 +41,27 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 @WebMvcTest(controllers = ParksController.class)
 @Import(TestConfig.class)
@@ -42,6 +73,27 @@ public class ParksControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityExportService entityExportService;
+
+        @MockBean
+        BulkWriteService bulkWriteService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        ParkRatingStats parkRatingStats;
+
+        @MockBean
+        ChangeFeed changeFeed;
+
+        @MockBean
+        DeltaSyncService deltaSyncService;
+
+        @MockBean
+        JsonResponseCache jsonResponseCache;
+
         // Authorization tests for /api/ucsbdates/admin/all
 
         @Test
@@ -88,7 +140,7 @@ public class ParksControllerTests extends ControllerTestCase {
                 Park park = Park.builder()
                                 .name("Test Park")
                                 .address("123 Fake Ave")
-                                .rating("3.9")
+                                .rating(3.9)
                                 .build();
                 when(parkRepository.findById(eq(7L))).thenReturn(Optional.of(park));
 
@@ -131,19 +183,20 @@ public class ParksControllerTests extends ControllerTestCase {
                 Park park1 = Park.builder()
                                 .name("Test Park")
                                 .address("123 Fake Ave")
-                                .rating("3.9")
+                                .rating(3.9)
                                 .build();
 
                 Park park2 = Park.builder()
                                 .name("Test Park")
                                 .address("123 Fake Ave")
-                                .rating("3.9")
+                                .rating(3.9)
                                 .build();
 
                 ArrayList<Park> expectedParks = new ArrayList<>();
                 expectedParks.addAll(Arrays.asList(park1, park2));
 
                 when(parkRepository.findAll()).thenReturn(expectedParks);
+                when(jsonResponseCache.render(eq(Park.class), any())).thenAnswer(rendersRows());
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/parks/all"))
@@ -157,6 +210,65 @@ public class ParksControllerTests extends ControllerTestCase {
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_all_parks_as_cbor() throws Exception {
+
+                Park park1 = Park.builder().id(1L).name("Test Park").address("123 Fake Ave").rating(3.9).build();
+                Park park2 = Park.builder().id(2L).name("Other Park").address("9 Real St").rating(4.1).build();
+                List<Park> expectedParks = List.of(park1, park2);
+
+                when(parkRepository.findAll()).thenReturn(expectedParks);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks/all").accept(MediaType.APPLICATION_CBOR))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(jsonResponseCache, never()).render(any(), any());
+                assertEquals(MediaType.APPLICATION_CBOR_VALUE, response.getResponse().getContentType());
+                ObjectMapper cbor = new ObjectMapper(new CBORFactory()).findAndRegisterModules();
+                List<Park> parks = cbor.readValue(response.getResponse().getContentAsByteArray(),
+                                new TypeReference<List<Park>>() {});
+                assertEquals(expectedParks, parks);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_all_parks_as_protobuf() throws Exception {
+
+                Park park1 = Park.builder().id(1L).name("Test Park").address("123 Fake Ave").rating(3.9).build();
+
+                when(parkRepository.findAll()).thenReturn(List.of(park1));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks/all").accept("application/x-protobuf"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals("application/x-protobuf", response.getResponse().getContentType());
+                assertTrue(response.getResponse().getContentAsByteArray().length > 0);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void json_is_still_the_default_for_any_type() throws Exception {
+
+                when(parkRepository.findAll()).thenReturn(List.of());
+                when(jsonResponseCache.render(eq(Park.class), any())).thenAnswer(rendersRows());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks/all").accept(MediaType.ALL))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals(MediaType.APPLICATION_JSON_VALUE, response.getResponse().getContentType());
+                assertEquals("[]", response.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_ucsbdate() throws Exception {
@@ -165,7 +277,7 @@ public class ParksControllerTests extends ControllerTestCase {
                 Park park1 = Park.builder()
                                 .name("Test Park")
                                 .address("123 Fake Ave")
-                                .rating("3.9")
+                                .rating(3.9)
                                 .build();
 
                 when(parkRepository.save(eq(park1))).thenReturn(park1);
@@ -187,13 +299,7 @@ public class ParksControllerTests extends ControllerTestCase {
         @Test
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
-                Park park1 = Park.builder()
-                                .name("Test Park")
-                                .address("123 Fake Ave")
-                                .rating("3.9")
-                                .build();
-
-                when(parkRepository.findById(eq(15L))).thenReturn(Optional.of(park1));
+                when(bulkWriteService.deleteAll(eq(Park.class), eq(List.of(15L)), any())).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -202,8 +308,7 @@ public class ParksControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(parkRepository, times(1)).findById(15L);
-                verify(parkRepository, times(1)).delete(any());
+                verify(bulkWriteService, times(1)).deleteAll(eq(Park.class), eq(List.of(15L)), any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Park with id 15 deleted", json.get("message"));
@@ -215,7 +320,7 @@ public class ParksControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(parkRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(bulkWriteService.deleteAll(eq(Park.class), eq(List.of(15L)), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -224,11 +329,45 @@ public class ParksControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(parkRepository, times(1)).findById(15L);
+                verify(bulkWriteService, times(1)).deleteAll(eq(Park.class), eq(List.of(15L)), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Park with id 15 not found", json.get("message"));
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_many_parks_at_once() throws Exception {
+                // arrange
+                when(bulkWriteService.deleteAll(eq(Park.class), eq(List.of(15L, 16L, 17L)), any())).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/parks/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[15, 16, 17]")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Function<Long, Park>> stub = ArgumentCaptor.forClass(Function.class);
+                verify(bulkWriteService, times(1)).deleteAll(eq(Park.class), eq(List.of(15L, 16L, 17L)), stub.capture());
+                assertEquals(15L, stub.getValue().apply(15L).getId());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 of 3 Parks deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_delete_many_parks() throws Exception {
+                mockMvc.perform(
+                                delete("/api/parks/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[15, 16, 17]")
+                                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_can_edit_an_existing_ucsbdate() throws Exception {
@@ -237,17 +376,18 @@ public class ParksControllerTests extends ControllerTestCase {
                 Park parkOrig = Park.builder()
                                 .name("Test Park")
                                 .address("123 Fake Ave")
-                                .rating("3.9")
+                                .rating(3.9)
                                 .build();
 
                 Park parkEdited = Park.builder()
                                 .name("Changed Park")
                                 .address("1234 Fake Ave")
-                                .rating("4.0")
+                                .rating(4.0)
                                 .build();
                 String requestBody = mapper.writeValueAsString(parkEdited);
 
                 when(parkRepository.findById(eq(67L))).thenReturn(Optional.of(parkOrig));
+                when(parkRepository.save(eq(parkEdited))).thenReturn(parkEdited);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -265,6 +405,189 @@ public class ParksControllerTests extends ControllerTestCase {
                 assertEquals(requestBody, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_park_when_if_match_is_current() throws Exception {
+                // arrange
+                Park orig = Park.builder()
+                                .name("Test Park")
+                                .version(3)
+                                .build();
+                Park edited = Park.builder()
+                                .name("Changed Park")
+                                .build();
+                Park saved = Park.builder()
+                                .name("Changed Park")
+                                .version(4)
+                                .build();
+
+                when(parkRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+                when(parkRepository.save(any(Park.class))).thenReturn(saved);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/parks?id=67")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(parkRepository, times(1)).save(any(Park.class));
+                assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+                assertEquals(mapper.writeValueAsString(saved), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_park_with_a_stale_if_match() throws Exception {
+                // arrange
+                Park orig = Park.builder()
+                                .name("Test Park")
+                                .version(5)
+                                .build();
+                Park edited = Park.builder()
+                                .name("Changed Park")
+                                .build();
+
+                when(parkRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+
+                // act
+                mockMvc.perform(
+                                put("/api/parks?id=67")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+
+                // assert
+                verify(parkRepository, never()).save(any(Park.class));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void concurrent_edit_of_a_park_returns_precondition_failed() throws Exception {
+                // arrange
+                Park orig = Park.builder()
+                                .name("Test Park")
+                                .version(3)
+                                .build();
+                Park edited = Park.builder()
+                                .name("Changed Park")
+                                .build();
+
+                when(parkRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+                when(parkRepository.save(any(Park.class)))
+                                .thenThrow(new ObjectOptimisticLockingFailureException(Park.class, 67L));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/parks?id=67")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("ObjectOptimisticLockingFailureException", json.get("type"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_some_fields_of_a_park() throws Exception {
+                // arrange
+                Park orig = Park.builder()
+                                .id(67L)
+                                .name("Test Park")
+                                .address("123 Fake Ave")
+                                .rating(3.9)
+                                .version(2)
+                                .build();
+
+                when(parkRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+                when(parkRepository.save(any(Park.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/parks?id=67")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"id\": 99, \"name\": \"Changed Park\", \"address\": null}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert: named fields replaced or cleared, the key and everything else kept
+                ArgumentCaptor<Park> captor = ArgumentCaptor.forClass(Park.class);
+                verify(parkRepository, times(1)).save(captor.capture());
+                Park saved = captor.getValue();
+                assertEquals(67L, saved.getId());
+                assertEquals("Changed Park", saved.getName());
+                assertNull(saved.getAddress());
+                assertEquals(3.9, saved.getRating());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_that_changes_nothing_does_not_write_the_park() throws Exception {
+                // arrange
+                Park orig = Park.builder()
+                                .id(67L)
+                                .name("Test Park")
+                                .address("123 Fake Ave")
+                                .rating(3.9)
+                                .version(2)
+                                .build();
+
+                when(parkRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/parks?id=67")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"name\": \"Test Park\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(parkRepository, never()).save(any(Park.class));
+                assertEquals("\"2\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+                assertEquals(mapper.writeValueAsString(orig), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_with_an_unknown_field_is_rejected_for_a_park() throws Exception {
+                // arrange
+                Park orig = Park.builder()
+                                .id(67L)
+                                .name("Test Park")
+                                .address("123 Fake Ave")
+                                .rating(3.9)
+                                .build();
+
+                when(parkRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/parks?id=67")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"noSuchField\": 1}")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                verify(parkRepository, never()).save(any(Park.class));
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_cannot_edit_ucsbdate_that_does_not_exist() throws Exception {
@@ -272,7 +595,7 @@ public class ParksControllerTests extends ControllerTestCase {
                 Park parkEdited = Park.builder()
                                 .name("Test Park")
                                 .address("123 Fake Ave")
-                                .rating("3.9")
+                                .rating(3.9)
                                 .build();
 
                 String requestBody = mapper.writeValueAsString(parkEdited);
@@ -294,4 +617,294 @@ public class ParksControllerTests extends ControllerTestCase {
                 assertEquals("Park with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination of /api/parks/all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_page_through_all_with_a_cursor() throws Exception {
+
+                // arrange
+
+                List<Park> page = List.of(Park.builder().id(4L).name("Goleta Beach").build());
+
+                when(parkRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.of(0, 1))))
+                                .thenReturn(new SliceImpl<>(page, PageRequest.of(0, 1), true));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks/all?after=3&limit=1"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(parkRepository, times(0)).findAll();
+                assertEquals("<http://localhost/api/parks/all?after=4&limit=1>; rel=\"next\"",
+                                response.getResponse().getHeader("Link"));
+                assertEquals(mapper.writeValueAsString(page), response.getResponse().getContentAsString());
+        }
+
+        // Tests for streaming export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/parks/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_as_csv() throws Exception {
+
+                // arrange
+
+                StreamingResponseBody body = out -> out.write("1,Goleta Beach\n".getBytes());
+                when(entityExportService.export(eq(Park.class), any(), eq("text/csv")))
+                                .thenReturn(ResponseEntity.ok().contentType(EntityExportService.CSV).body(body));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/parks/export").accept("text/csv"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(entityExportService, times(1)).export(eq(Park.class), any(), eq("text/csv"));
+                assertEquals("1,Goleta Beach\n", response.getResponse().getContentAsString());
+        }
+
+        // Tests for bulk insert
+
+        @Test
+        public void logged_out_users_cannot_bulk_post() throws Exception {
+                mockMvc.perform(post("/api/parks/bulk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+                mockMvc.perform(post("/api/parks/bulk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_bulk_post_and_ids_are_assigned_by_the_server() throws Exception {
+
+                // arrange
+
+                List<Park> incoming = List.of(
+                                Park.builder().id(17L).name("Goleta Beach").address("5986 Sandspit Rd").rating(4.5).build(),
+                                Park.builder().id(18L).name("Stow Grove").address("580 N La Patera Ln").rating(4.3).build());
+                List<Park> expectedParks = List.of(
+                                Park.builder().name("Goleta Beach").address("5986 Sandspit Rd").rating(4.5).build(),
+                                Park.builder().name("Stow Grove").address("580 N La Patera Ln").rating(4.3).build());
+
+                when(bulkWriteService.insertAll(eq(expectedParks))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/parks/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(incoming))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(bulkWriteService, times(1)).insertAll(eq(expectedParks));
+                assertEquals(mapper.writeValueAsString(expectedParks), response.getResponse().getContentAsString());
+        }
+
+        // Tests for CSV import
+
+        @Test
+        public void logged_out_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/parks/import"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/parks/import"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_import_a_csv_file() throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile("file", "parks.csv", "text/csv",
+                                "name,rating\nGoleta Beach,4.5\n".getBytes());
+                ImportReport report = ImportReport.builder().rowsRead(1).rowsImported(1).build();
+                when(csvImportService.importCsv(any(), eq(Park.class), any())).thenReturn(report);
+
+                // act
+                MvcResult response = mockMvc.perform(multipart("/api/parks/import").file(file).with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Function<Park, String>> check = ArgumentCaptor.forClass(Function.class);
+                verify(csvImportService, times(1)).importCsv(any(), eq(Park.class), check.capture());
+                assertEquals(mapper.writeValueAsString(report), response.getResponse().getContentAsString());
+
+                Park goletaBeach = Park.builder().id(7L).name("Goleta Beach").build();
+                assertNull(check.getValue().apply(goletaBeach));
+                assertEquals(0L, goletaBeach.getId());
+                assertEquals("name is required", check.getValue().apply(Park.builder().rating(4.5).build()));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_list_parks_in_a_rating_range_best_first() throws Exception {
+
+                // arrange
+
+                Park goletaBeach = Park.builder().id(17L).name("Goleta Beach").address("5986 Sandspit Rd").rating(4.5).build();
+                Park stowGrove = Park.builder().id(18L).name("Stow Grove").address("580 N La Patera Ln").rating(4.3).build();
+                PageRequest page = PageRequest.of(0, 10, Sort.by(Sort.Order.desc("rating"), Sort.Order.asc("id")));
+                when(parkRepository.findByRatingBetween(4.0, 5.0, page)).thenReturn(List.of(goletaBeach, stowGrove));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks?minRating=4&maxRating=5&sort=rating&limit=10"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(parkRepository, times(1)).findByRatingBetween(4.0, 5.0, page);
+                String expectedJson = mapper.writeValueAsString(List.of(goletaBeach, stowGrove));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void one_sided_rating_range_is_open_at_the_other_end() throws Exception {
+
+                // arrange
+
+                when(parkRepository.findByRatingBetween(eq(2.5), eq(Double.MAX_VALUE), any()))
+                                .thenReturn(List.of());
+
+                // act
+                mockMvc.perform(get("/api/parks?minRating=2.5"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(parkRepository, times(1)).findByRatingBetween(2.5, Double.MAX_VALUE,
+                                PageRequest.of(0, 100, Sort.by("id")));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void no_rating_range_lists_unrated_parks_too() throws Exception {
+
+                // arrange
+
+                Park goletaBeach = Park.builder().id(17L).name("Goleta Beach").address("5986 Sandspit Rd").rating(4.5).build();
+                Park stowGrove = Park.builder().id(18L).name("Stow Grove").address("580 N La Patera Ln").build();
+                PageRequest page = PageRequest.of(0, 100, Sort.by("name", "id"));
+                when(parkRepository.findAllBy(page)).thenReturn(List.of(goletaBeach, stowGrove));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks?sort=name"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(parkRepository, never()).findByRatingBetween(anyDouble(), anyDouble(), any());
+                String expectedJson = mapper.writeValueAsString(List.of(goletaBeach, stowGrove));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void unknown_sort_is_a_bad_request() throws Exception {
+                mockMvc.perform(get("/api/parks?sort=address"))
+                                .andExpect(status().isBadRequest());
+                verify(parkRepository, times(0)).findByRatingBetween(anyDouble(), anyDouble(), any());
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_rating_stats() throws Exception {
+                mockMvc.perform(get("/api/parks/stats"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_rating_stats() throws Exception {
+
+                // arrange
+
+                RatingStats stats = RatingStats.builder().count(2).unrated(1).mean(4.4)
+                                .histogram(new TreeMap<>(Map.of(4, 2L))).build();
+                when(parkRatingStats.getStats()).thenReturn(stats);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks/stats"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals(mapper.writeValueAsString(stats), response.getResponse().getContentAsString());
+        }
+
+        @Test
+        public void logged_out_users_cannot_subscribe_to_changes() throws Exception {
+                mockMvc.perform(get("/api/parks/changes"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_subscribe_to_changes_and_resume_from_an_event_id() throws Exception {
+
+                // arrange
+
+                when(changeFeed.subscribe(eq(Park.class), any())).thenAnswer(invocation -> new SseEmitter());
+
+                // act
+
+                mockMvc.perform(get("/api/parks/changes"))
+                                .andExpect(request().asyncStarted());
+                mockMvc.perform(get("/api/parks/changes").header("Last-Event-ID", "42"))
+                                .andExpect(request().asyncStarted());
+                mockMvc.perform(get("/api/parks/changes?lastEventId=41"))
+                                .andExpect(request().asyncStarted());
+
+                // assert
+
+                verify(changeFeed, times(1)).subscribe(Park.class, null);
+                verify(changeFeed, times(1)).subscribe(Park.class, 42L);
+                verify(changeFeed, times(1)).subscribe(Park.class, 41L);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_sync_changes_since_a_version() throws Exception {
+
+                // arrange
+
+                Park changed = Park.builder().id(7L).name("Goleta Beach").revision(12L).build();
+                DeltaSync<Park> delta = DeltaSync.<Park>builder().version(12L).reset(false)
+                                .rows(List.of(changed)).deleted(List.of("3")).build();
+                when(deltaSyncService.since(eq(Park.class), eq(10L), any(), any(), any())).thenReturn(delta);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/parks/all?since=10"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(deltaSyncService, times(1)).since(eq(Park.class), eq(10L), any(), any(), any());
+                assertEquals(mapper.writeValueAsString(delta), response.getResponse().getContentAsString());
+        }
 }
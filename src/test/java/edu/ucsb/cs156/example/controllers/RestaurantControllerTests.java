@@ -5,12 +5,22 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.controllers.RestaurantController;
 import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.models.ImportReport;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
+import edu.ucsb.cs156.example.services.RestaurantAutocomplete;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -30,6 +40,19 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.util.List;
+import java.util.function.Function;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = RestaurantController.class)
 @Import(TestConfig.class)
@@ -41,6 +64,27 @@ public class RestaurantControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityExportService entityExportService;
+
+        @MockBean
+        BulkWriteService bulkWriteService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        RestaurantAutocomplete restaurantAutocomplete;
+
+        @MockBean
+        ChangeFeed changeFeed;
+
+        @MockBean
+        DeltaSyncService deltaSyncService;
+
+        @MockBean
+        JsonResponseCache jsonResponseCache;
+
         // Authorization tests for /api/restaurant/admin/all
 
         @Test
@@ -180,6 +224,7 @@ public class RestaurantControllerTests extends ControllerTestCase {
                 expectedRestaurants.addAll(Arrays.asList(habit, cristinos));
 
                 when(restaurantRepository.findAll()).thenReturn(expectedRestaurants);
+                when(jsonResponseCache.render(eq(Restaurant.class), any())).thenAnswer(rendersRows());
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/restaurant/all"))
@@ -232,17 +277,7 @@ public class RestaurantControllerTests extends ControllerTestCase {
         @Test
         public void admin_can_delete_a_restaurant() throws Exception {
                 // arrange
-
-                Restaurant freebirds = Restaurant.builder()
-                                .name("Freebirds")
-                                .address("879 Embarcadero del Norte")
-                                .city("Isla Vista")
-                                .state("CA")
-                                .zip("93117")
-                                .description("Burrito joint, and iconic Isla Vista location")
-                                .build();
-
-                when(restaurantRepository.findById(eq(6L))).thenReturn(Optional.of(freebirds));
+                when(bulkWriteService.deleteAll(eq(Restaurant.class), eq(List.of(6L)), any())).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -251,8 +286,7 @@ public class RestaurantControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(6L);
-                verify(restaurantRepository, times(1)).delete(any());
+                verify(bulkWriteService, times(1)).deleteAll(eq(Restaurant.class), eq(List.of(6L)), any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 6 deleted", json.get("message"));
@@ -264,7 +298,7 @@ public class RestaurantControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(restaurantRepository.findById(eq(10L))).thenReturn(Optional.empty());
+                when(bulkWriteService.deleteAll(eq(Restaurant.class), eq(List.of(10L)), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -273,11 +307,45 @@ public class RestaurantControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(10L);
+                verify(bulkWriteService, times(1)).deleteAll(eq(Restaurant.class), eq(List.of(10L)), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 10 not found", json.get("message"));
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_many_restaurants_at_once() throws Exception {
+                // arrange
+                when(bulkWriteService.deleteAll(eq(Restaurant.class), eq(List.of(15L, 16L, 17L)), any())).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/restaurant/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[15, 16, 17]")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Function<Long, Restaurant>> stub = ArgumentCaptor.forClass(Function.class);
+                verify(bulkWriteService, times(1)).deleteAll(eq(Restaurant.class), eq(List.of(15L, 16L, 17L)), stub.capture());
+                assertEquals(15L, stub.getValue().apply(15L).getId());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 of 3 Restaurants deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_delete_many_restaurants() throws Exception {
+                mockMvc.perform(
+                                delete("/api/restaurant/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[15, 16, 17]")
+                                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_can_edit_an_existing_restaurant() throws Exception {
@@ -304,6 +372,7 @@ public class RestaurantControllerTests extends ControllerTestCase {
                 String requestBody = mapper.writeValueAsString(habitEdited);
 
                 when(restaurantRepository.findById(eq(4L))).thenReturn(Optional.of(habitOrig));
+                when(restaurantRepository.save(eq(habitEdited))).thenReturn(habitEdited);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -321,6 +390,189 @@ public class RestaurantControllerTests extends ControllerTestCase {
                 assertEquals(requestBody, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_restaurant_when_if_match_is_current() throws Exception {
+                // arrange
+                Restaurant orig = Restaurant.builder()
+                                .name("The Habit")
+                                .version(3)
+                                .build();
+                Restaurant edited = Restaurant.builder()
+                                .name("The Habit Burger Grill")
+                                .build();
+                Restaurant saved = Restaurant.builder()
+                                .name("The Habit Burger Grill")
+                                .version(4)
+                                .build();
+
+                when(restaurantRepository.findById(eq(4L))).thenReturn(Optional.of(orig));
+                when(restaurantRepository.save(any(Restaurant.class))).thenReturn(saved);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurant?id=4")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).save(any(Restaurant.class));
+                assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+                assertEquals(mapper.writeValueAsString(saved), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_restaurant_with_a_stale_if_match() throws Exception {
+                // arrange
+                Restaurant orig = Restaurant.builder()
+                                .name("The Habit")
+                                .version(5)
+                                .build();
+                Restaurant edited = Restaurant.builder()
+                                .name("The Habit Burger Grill")
+                                .build();
+
+                when(restaurantRepository.findById(eq(4L))).thenReturn(Optional.of(orig));
+
+                // act
+                mockMvc.perform(
+                                put("/api/restaurant?id=4")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+
+                // assert
+                verify(restaurantRepository, never()).save(any(Restaurant.class));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void concurrent_edit_of_a_restaurant_returns_precondition_failed() throws Exception {
+                // arrange
+                Restaurant orig = Restaurant.builder()
+                                .name("The Habit")
+                                .version(3)
+                                .build();
+                Restaurant edited = Restaurant.builder()
+                                .name("The Habit Burger Grill")
+                                .build();
+
+                when(restaurantRepository.findById(eq(4L))).thenReturn(Optional.of(orig));
+                when(restaurantRepository.save(any(Restaurant.class)))
+                                .thenThrow(new ObjectOptimisticLockingFailureException(Restaurant.class, 4L));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurant?id=4")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("ObjectOptimisticLockingFailureException", json.get("type"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_some_fields_of_a_restaurant() throws Exception {
+                // arrange
+                Restaurant orig = Restaurant.builder()
+                                .id(4L)
+                                .name("The Habit")
+                                .city("Isla Vista")
+                                .description("Burgers and Fries")
+                                .version(2)
+                                .build();
+
+                when(restaurantRepository.findById(eq(4L))).thenReturn(Optional.of(orig));
+                when(restaurantRepository.save(any(Restaurant.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/restaurant?id=4")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"id\": 99, \"name\": \"The Habit Burger Grill\", \"description\": null}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert: named fields replaced or cleared, the key and everything else kept
+                ArgumentCaptor<Restaurant> captor = ArgumentCaptor.forClass(Restaurant.class);
+                verify(restaurantRepository, times(1)).save(captor.capture());
+                Restaurant saved = captor.getValue();
+                assertEquals(4L, saved.getId());
+                assertEquals("The Habit Burger Grill", saved.getName());
+                assertNull(saved.getDescription());
+                assertEquals("Isla Vista", saved.getCity());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_that_changes_nothing_does_not_write_the_restaurant() throws Exception {
+                // arrange
+                Restaurant orig = Restaurant.builder()
+                                .id(4L)
+                                .name("The Habit")
+                                .city("Isla Vista")
+                                .description("Burgers and Fries")
+                                .version(2)
+                                .build();
+
+                when(restaurantRepository.findById(eq(4L))).thenReturn(Optional.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/restaurant?id=4")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"name\": \"The Habit\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).save(any(Restaurant.class));
+                assertEquals("\"2\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+                assertEquals(mapper.writeValueAsString(orig), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_with_an_unknown_field_is_rejected_for_a_restaurant() throws Exception {
+                // arrange
+                Restaurant orig = Restaurant.builder()
+                                .id(4L)
+                                .name("The Habit")
+                                .city("Isla Vista")
+                                .description("Burgers and Fries")
+                                .build();
+
+                when(restaurantRepository.findById(eq(4L))).thenReturn(Optional.of(orig));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/restaurant?id=4")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"noSuchField\": 1}")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                verify(restaurantRepository, never()).save(any(Restaurant.class));
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_cannot_edit_restaurant_that_does_not_exist() throws Exception {
@@ -354,4 +606,297 @@ public class RestaurantControllerTests extends ControllerTestCase {
                 assertEquals("Restaurant with id 5 not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination of /api/restaurant/all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_with_link_to_next_page() throws Exception {
+
+                // arrange
+
+                Restaurant habit = Restaurant.builder().id(1L).name("The Habit").build();
+                Restaurant freebirds = Restaurant.builder().id(2L).name("Freebirds").build();
+                List<Restaurant> page = List.of(habit, freebirds);
+
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 2))))
+                                .thenReturn(new SliceImpl<>(page, PageRequest.of(0, 2), true));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurant/all?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(0)).findAll();
+                assertEquals("<http://localhost/api/restaurant/all?after=2&limit=2>; rel=\"next\"",
+                                response.getResponse().getHeader("Link"));
+                assertEquals(mapper.writeValueAsString(page), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void last_page_has_no_link_and_limit_is_capped() throws Exception {
+
+                // arrange
+
+                Restaurant cristinos = Restaurant.builder().id(3L).name("Cristino's Bakery").build();
+                List<Restaurant> page = List.of(cristinos);
+
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(PageRequest.of(0, 1000))))
+                                .thenReturn(new SliceImpl<>(page, PageRequest.of(0, 1000), false));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurant/all?after=2&limit=1000000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(2L), eq(PageRequest.of(0, 1000)));
+                assertNull(response.getResponse().getHeader("Link"));
+                assertEquals(mapper.writeValueAsString(page), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void after_without_limit_uses_default_page_size() throws Exception {
+
+                // arrange
+
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(eq(5L), eq(PageRequest.of(0, 100))))
+                                .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 100), false));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurant/all?after=5"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(restaurantRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(5L), eq(PageRequest.of(0, 100)));
+                assertEquals("[]", response.getResponse().getContentAsString());
+        }
+
+        // Tests for streaming export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/restaurant/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_as_csv() throws Exception {
+
+                // arrange
+
+                StreamingResponseBody body = out -> out.write("1,The Habit\n".getBytes());
+                when(entityExportService.export(eq(Restaurant.class), any(), eq("text/csv")))
+                                .thenReturn(ResponseEntity.ok().contentType(EntityExportService.CSV).body(body));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/restaurant/export").accept("text/csv"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(entityExportService, times(1)).export(eq(Restaurant.class), any(), eq("text/csv"));
+                assertEquals("1,The Habit\n", response.getResponse().getContentAsString());
+        }
+
+        // Tests for bulk insert
+
+        @Test
+        public void logged_out_users_cannot_bulk_post() throws Exception {
+                mockMvc.perform(post("/api/restaurant/bulk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+                mockMvc.perform(post("/api/restaurant/bulk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_bulk_post_and_ids_are_assigned_by_the_server() throws Exception {
+
+                // arrange
+
+                List<Restaurant> incoming = List.of(
+                                Restaurant.builder().id(17L).name("The Habit").city("Goleta").build(),
+                                Restaurant.builder().id(18L).name("Freebirds").city("Isla Vista").build());
+                List<Restaurant> expectedRestaurants = List.of(
+                                Restaurant.builder().name("The Habit").city("Goleta").build(),
+                                Restaurant.builder().name("Freebirds").city("Isla Vista").build());
+
+                when(bulkWriteService.insertAll(eq(expectedRestaurants))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/restaurant/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(incoming))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(bulkWriteService, times(1)).insertAll(eq(expectedRestaurants));
+                assertEquals(mapper.writeValueAsString(expectedRestaurants), response.getResponse().getContentAsString());
+        }
+
+        // Tests for CSV import
+
+        @Test
+        public void logged_out_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/restaurant/import"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/restaurant/import"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_import_a_csv_file() throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile("file", "restaurants.csv", "text/csv",
+                                "name,city\nThe Habit,Goleta\n".getBytes());
+                ImportReport report = ImportReport.builder().rowsRead(1).rowsImported(1).build();
+                when(csvImportService.importCsv(any(), eq(Restaurant.class), any())).thenReturn(report);
+
+                // act
+                MvcResult response = mockMvc.perform(multipart("/api/restaurant/import").file(file).with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Function<Restaurant, String>> check = ArgumentCaptor.forClass(Function.class);
+                verify(csvImportService, times(1)).importCsv(any(), eq(Restaurant.class), check.capture());
+                assertEquals(mapper.writeValueAsString(report), response.getResponse().getContentAsString());
+
+                Restaurant habit = Restaurant.builder().id(7L).name("The Habit").build();
+                assertNull(check.getValue().apply(habit));
+                assertEquals(0L, habit.getId());
+                assertEquals("name is required", check.getValue().apply(Restaurant.builder().name(" ").build()));
+        }
+
+        // Tests for autocomplete
+
+        @Test
+        public void logged_out_users_cannot_autocomplete() throws Exception {
+                mockMvc.perform(get("/api/restaurant/autocomplete?prefix=fr"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_autocomplete_names_by_default() throws Exception {
+
+                // arrange
+
+                when(restaurantAutocomplete.complete(eq(RestaurantAutocomplete.Field.NAME), eq("fr"), eq(10)))
+                                .thenReturn(List.of("Freebirds", "Freshens"));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurant/autocomplete?prefix=fr"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(restaurantAutocomplete, times(1)).complete(eq(RestaurantAutocomplete.Field.NAME), eq("fr"), eq(10));
+                assertEquals("[\"Freebirds\",\"Freshens\"]", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_autocomplete_another_field() throws Exception {
+
+                // arrange
+
+                when(restaurantAutocomplete.complete(eq(RestaurantAutocomplete.Field.CITY), eq("go"), eq(3)))
+                                .thenReturn(List.of("Goleta"));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurant/autocomplete?prefix=go&field=city&limit=3"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(restaurantAutocomplete, times(1)).complete(eq(RestaurantAutocomplete.Field.CITY), eq("go"), eq(3));
+                assertEquals("[\"Goleta\"]", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void autocomplete_rejects_unknown_fields() throws Exception {
+                mockMvc.perform(get("/api/restaurant/autocomplete?prefix=fr&field=description"))
+                                .andExpect(status().isBadRequest());
+
+                verify(restaurantAutocomplete, times(0)).complete(any(), any(), anyInt());
+        }
+
+        @Test
+        public void logged_out_users_cannot_subscribe_to_changes() throws Exception {
+                mockMvc.perform(get("/api/restaurant/changes"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_subscribe_to_changes_and_resume_from_an_event_id() throws Exception {
+
+                // arrange
+
+                when(changeFeed.subscribe(eq(Restaurant.class), any())).thenAnswer(invocation -> new SseEmitter());
+
+                // act
+
+                mockMvc.perform(get("/api/restaurant/changes"))
+                                .andExpect(request().asyncStarted());
+                mockMvc.perform(get("/api/restaurant/changes").header("Last-Event-ID", "42"))
+                                .andExpect(request().asyncStarted());
+                mockMvc.perform(get("/api/restaurant/changes?lastEventId=41"))
+                                .andExpect(request().asyncStarted());
+
+                // assert
+
+                verify(changeFeed, times(1)).subscribe(Restaurant.class, null);
+                verify(changeFeed, times(1)).subscribe(Restaurant.class, 42L);
+                verify(changeFeed, times(1)).subscribe(Restaurant.class, 41L);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_sync_changes_since_a_version() throws Exception {
+
+                // arrange
+
+                Restaurant changed = Restaurant.builder().id(7L).name("Freebirds").revision(12L).build();
+                DeltaSync<Restaurant> delta = DeltaSync.<Restaurant>builder().version(12L).reset(false)
+                                .rows(List.of(changed)).deleted(List.of("3")).build();
+                when(deltaSyncService.since(eq(Restaurant.class), eq(10L), any(), any(), any())).thenReturn(delta);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurant/all?since=10"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(deltaSyncService, times(1)).since(eq(Restaurant.class), eq(10L), any(), any(), any());
+                assertEquals(mapper.writeValueAsString(delta), response.getResponse().getContentAsString());
+        }
 }
@@ -4,12 +4,22 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.models.ImportReport;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
+import edu.ucsb.cs156.example.services.UCSBDateCalendar;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -26,11 +36,24 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.util.List;
+import java.util.function.Function;
 
 @WebMvcTest(controllers = UCSBDatesController.class)
 @Import(TestConfig.class)
@@ -42,6 +65,27 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityExportService entityExportService;
+
+        @MockBean
+        BulkWriteService bulkWriteService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        UCSBDateCalendar ucsbDateCalendar;
+
+        @MockBean
+        ChangeFeed changeFeed;
+
+        @MockBean
+        DeltaSyncService deltaSyncService;
+
+        @MockBean
+        JsonResponseCache jsonResponseCache;
+
         // Authorization tests for /api/ucsbdates/admin/all
 
         @Test
@@ -153,6 +197,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 expectedDates.addAll(Arrays.asList(ucsbDate1, ucsbDate2));
 
                 when(ucsbDateRepository.findAll()).thenReturn(expectedDates);
+                when(jsonResponseCache.render(eq(UCSBDate.class), any())).thenAnswer(rendersRows());
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/ucsbdates/all"))
@@ -198,16 +243,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @Test
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
-
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-                UCSBDate ucsbDate1 = UCSBDate.builder()
-                                .name("firstDayOfClasses")
-                                .quarterYYYYQ("20222")
-                                .localDateTime(ldt1)
-                                .build();
-
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+                when(bulkWriteService.deleteAll(eq(UCSBDate.class), eq(List.of(15L)), any())).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -216,8 +252,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
-                verify(ucsbDateRepository, times(1)).delete(any());
+                verify(bulkWriteService, times(1)).deleteAll(eq(UCSBDate.class), eq(List.of(15L)), any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -229,7 +264,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(bulkWriteService.deleteAll(eq(UCSBDate.class), eq(List.of(15L)), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -238,11 +273,45 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
+                verify(bulkWriteService, times(1)).deleteAll(eq(UCSBDate.class), eq(List.of(15L)), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 not found", json.get("message"));
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_many_ucsbdates_at_once() throws Exception {
+                // arrange
+                when(bulkWriteService.deleteAll(eq(UCSBDate.class), eq(List.of(15L, 16L, 17L)), any())).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdates/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[15, 16, 17]")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Function<Long, UCSBDate>> stub = ArgumentCaptor.forClass(Function.class);
+                verify(bulkWriteService, times(1)).deleteAll(eq(UCSBDate.class), eq(List.of(15L, 16L, 17L)), stub.capture());
+                assertEquals(15L, stub.getValue().apply(15L).getId());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 of 3 UCSBDates deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_delete_many_ucsbdates() throws Exception {
+                mockMvc.perform(
+                                delete("/api/ucsbdates/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[15, 16, 17]")
+                                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_can_edit_an_existing_ucsbdate() throws Exception {
@@ -266,6 +335,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 String requestBody = mapper.writeValueAsString(ucsbDateEdited);
 
                 when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDateOrig));
+                when(ucsbDateRepository.save(eq(ucsbDateEdited))).thenReturn(ucsbDateEdited);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -283,6 +353,189 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals(requestBody, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_ucsbdate_when_if_match_is_current() throws Exception {
+                // arrange
+                UCSBDate orig = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .version(3)
+                                .build();
+                UCSBDate edited = UCSBDate.builder()
+                                .name("firstDayOfFestivus")
+                                .build();
+                UCSBDate saved = UCSBDate.builder()
+                                .name("firstDayOfFestivus")
+                                .version(4)
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+                when(ucsbDateRepository.save(any(UCSBDate.class))).thenReturn(saved);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).save(any(UCSBDate.class));
+                assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+                assertEquals(mapper.writeValueAsString(saved), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_ucsbdate_with_a_stale_if_match() throws Exception {
+                // arrange
+                UCSBDate orig = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .version(5)
+                                .build();
+                UCSBDate edited = UCSBDate.builder()
+                                .name("firstDayOfFestivus")
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+
+                // act
+                mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+
+                // assert
+                verify(ucsbDateRepository, never()).save(any(UCSBDate.class));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void concurrent_edit_of_a_ucsbdate_returns_precondition_failed() throws Exception {
+                // arrange
+                UCSBDate orig = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .version(3)
+                                .build();
+                UCSBDate edited = UCSBDate.builder()
+                                .name("firstDayOfFestivus")
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+                when(ucsbDateRepository.save(any(UCSBDate.class)))
+                                .thenThrow(new ObjectOptimisticLockingFailureException(UCSBDate.class, 67L));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("ObjectOptimisticLockingFailureException", json.get("type"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_some_fields_of_a_ucsbdate() throws Exception {
+                // arrange
+                UCSBDate orig = UCSBDate.builder()
+                                .id(67L)
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .version(2)
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+                when(ucsbDateRepository.save(any(UCSBDate.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/ucsbdates?id=67")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"id\": 99, \"name\": \"firstDayOfFestivus\", \"localDateTime\": null}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert: named fields replaced or cleared, the key and everything else kept
+                ArgumentCaptor<UCSBDate> captor = ArgumentCaptor.forClass(UCSBDate.class);
+                verify(ucsbDateRepository, times(1)).save(captor.capture());
+                UCSBDate saved = captor.getValue();
+                assertEquals(67L, saved.getId());
+                assertEquals("firstDayOfFestivus", saved.getName());
+                assertNull(saved.getLocalDateTime());
+                assertEquals("20222", saved.getQuarterYYYYQ());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_that_changes_nothing_does_not_write_the_ucsbdate() throws Exception {
+                // arrange
+                UCSBDate orig = UCSBDate.builder()
+                                .id(67L)
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .version(2)
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdates?id=67")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"name\": \"firstDayOfClasses\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).save(any(UCSBDate.class));
+                assertEquals("\"2\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+                assertEquals(mapper.writeValueAsString(orig), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_with_an_unknown_field_is_rejected_for_a_ucsbdate() throws Exception {
+                // arrange
+                UCSBDate orig = UCSBDate.builder()
+                                .id(67L)
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/ucsbdates?id=67")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"noSuchField\": 1}")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                verify(ucsbDateRepository, never()).save(any(UCSBDate.class));
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_cannot_edit_ucsbdate_that_does_not_exist() throws Exception {
@@ -315,4 +568,289 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination of /api/ucsbdates/all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_page_through_all_with_a_cursor() throws Exception {
+
+                // arrange
+
+                List<UCSBDate> page = List.of(UCSBDate.builder().id(4L).name("firstDayOfClasses").build());
+
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.of(0, 1))))
+                                .thenReturn(new SliceImpl<>(page, PageRequest.of(0, 1), true));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?after=3&limit=1"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(0)).findAll();
+                assertEquals("<http://localhost/api/ucsbdates/all?after=4&limit=1>; rel=\"next\"",
+                                response.getResponse().getHeader("Link"));
+                assertEquals(mapper.writeValueAsString(page), response.getResponse().getContentAsString());
+        }
+
+        // Tests for streaming export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_as_csv() throws Exception {
+
+                // arrange
+
+                StreamingResponseBody body = out -> out.write("1,firstDayOfClasses\n".getBytes());
+                when(entityExportService.export(eq(UCSBDate.class), any(), eq("text/csv")))
+                                .thenReturn(ResponseEntity.ok().contentType(EntityExportService.CSV).body(body));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdates/export").accept("text/csv"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(entityExportService, times(1)).export(eq(UCSBDate.class), any(), eq("text/csv"));
+                assertEquals("1,firstDayOfClasses\n", response.getResponse().getContentAsString());
+        }
+
+        // Tests for bulk insert
+
+        @Test
+        public void logged_out_users_cannot_bulk_post() throws Exception {
+                mockMvc.perform(post("/api/ucsbdates/bulk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+                mockMvc.perform(post("/api/ucsbdates/bulk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_bulk_post_and_ids_are_assigned_by_the_server() throws Exception {
+
+                // arrange
+
+                List<UCSBDate> incoming = List.of(
+                                UCSBDate.builder().id(17L).name("firstDayOfClasses").quarterYYYYQ("20222").localDateTime(LocalDateTime.parse("2022-03-28T00:00:00")).build(),
+                                UCSBDate.builder().id(18L).name("lastDayOfClasses").quarterYYYYQ("20222").localDateTime(LocalDateTime.parse("2022-06-03T00:00:00")).build());
+                List<UCSBDate> expectedUCSBDates = List.of(
+                                UCSBDate.builder().name("firstDayOfClasses").quarterYYYYQ("20222").localDateTime(LocalDateTime.parse("2022-03-28T00:00:00")).build(),
+                                UCSBDate.builder().name("lastDayOfClasses").quarterYYYYQ("20222").localDateTime(LocalDateTime.parse("2022-06-03T00:00:00")).build());
+
+                when(bulkWriteService.insertAll(eq(expectedUCSBDates))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdates/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(incoming))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(bulkWriteService, times(1)).insertAll(eq(expectedUCSBDates));
+                assertEquals(mapper.writeValueAsString(expectedUCSBDates), response.getResponse().getContentAsString());
+        }
+
+        // Tests for CSV import
+
+        @Test
+        public void logged_out_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/ucsbdates/import"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/ucsbdates/import"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_import_a_csv_file() throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile("file", "ucsbdates.csv", "text/csv",
+                                "quarterYYYYQ,name,localDateTime\n20222,firstDayOfClasses,2022-03-28T00:00:00\n".getBytes());
+                ImportReport report = ImportReport.builder().rowsRead(1).rowsImported(1).build();
+                when(csvImportService.importCsv(any(), eq(UCSBDate.class), any())).thenReturn(report);
+
+                // act
+                MvcResult response = mockMvc.perform(multipart("/api/ucsbdates/import").file(file).with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Function<UCSBDate, String>> check = ArgumentCaptor.forClass(Function.class);
+                verify(csvImportService, times(1)).importCsv(any(), eq(UCSBDate.class), check.capture());
+                assertEquals(mapper.writeValueAsString(report), response.getResponse().getContentAsString());
+
+                LocalDateTime ldt = LocalDateTime.parse("2022-03-28T00:00:00");
+                UCSBDate firstDay = UCSBDate.builder().id(7L).quarterYYYYQ("20222").name("firstDayOfClasses").localDateTime(ldt).build();
+                assertNull(check.getValue().apply(firstDay));
+                assertEquals(0L, firstDay.getId());
+                assertEquals("name is required",
+                                check.getValue().apply(UCSBDate.builder().quarterYYYYQ("20222").localDateTime(ldt).build()));
+                assertEquals("quarterYYYYQ must look like 20222",
+                                check.getValue().apply(UCSBDate.builder().name("firstDayOfClasses").localDateTime(ldt).build()));
+                assertEquals("quarterYYYYQ must look like 20222",
+                                check.getValue().apply(UCSBDate.builder().quarterYYYYQ("2022S").name("firstDayOfClasses").localDateTime(ldt).build()));
+                assertEquals("localDateTime is required",
+                                check.getValue().apply(UCSBDate.builder().quarterYYYYQ("20222").name("firstDayOfClasses").build()));
+        }
+
+        // Tests for quarter, range and upcoming queries
+
+        @Test
+        public void logged_out_users_cannot_get_upcoming() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/upcoming"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_dates_in_a_quarter() throws Exception {
+
+                // arrange
+
+                UCSBDate firstDay = UCSBDate.builder().id(1L).name("firstDayOfClasses").quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00")).build();
+                when(ucsbDateRepository.findAllByQuarterYYYYQ(eq("20222"))).thenReturn(List.of(firstDay));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/quarter?quarterYYYYQ=20222"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findAllByQuarterYYYYQ(eq("20222"));
+                assertEquals(mapper.writeValueAsString(List.of(firstDay)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_dates_in_a_range() throws Exception {
+
+                // arrange
+
+                LocalDateTime from = LocalDateTime.parse("2022-03-01T00:00:00");
+                LocalDateTime to = LocalDateTime.parse("2022-04-01T00:00:00");
+                UCSBDate firstDay = UCSBDate.builder().id(1L).name("firstDayOfClasses").quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00")).build();
+                when(ucsbDateCalendar.between(eq(from), eq(to), eq(100))).thenReturn(List.of(firstDay));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/range?from=2022-03-01T00:00:00&to=2022-04-01T00:00:00"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateCalendar, times(1)).between(eq(from), eq(to), eq(100));
+                assertEquals(mapper.writeValueAsString(List.of(firstDay)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_upcoming_dates() throws Exception {
+
+                // arrange
+
+                UCSBDate finals = UCSBDate.builder().id(9L).name("finals").quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2099-06-06T08:00:00")).build();
+                when(ucsbDateCalendar.upcoming(any(), eq(3))).thenReturn(List.of(finals));
+                LocalDateTime before = LocalDateTime.now();
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/upcoming?n=3"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                ArgumentCaptor<LocalDateTime> after = ArgumentCaptor.forClass(LocalDateTime.class);
+                verify(ucsbDateCalendar, times(1)).upcoming(after.capture(), eq(3));
+                assertFalse(after.getValue().isBefore(before));
+                assertFalse(after.getValue().isAfter(LocalDateTime.now()));
+                assertEquals(mapper.writeValueAsString(List.of(finals)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void upcoming_defaults_to_five() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/upcoming"))
+                                .andExpect(status().isOk());
+
+                verify(ucsbDateCalendar, times(1)).upcoming(any(), eq(5));
+        }
+
+        @Test
+        public void logged_out_users_cannot_subscribe_to_changes() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/changes"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_subscribe_to_changes_and_resume_from_an_event_id() throws Exception {
+
+                // arrange
+
+                when(changeFeed.subscribe(eq(UCSBDate.class), any())).thenAnswer(invocation -> new SseEmitter());
+
+                // act
+
+                mockMvc.perform(get("/api/ucsbdates/changes"))
+                                .andExpect(request().asyncStarted());
+                mockMvc.perform(get("/api/ucsbdates/changes").header("Last-Event-ID", "42"))
+                                .andExpect(request().asyncStarted());
+                mockMvc.perform(get("/api/ucsbdates/changes?lastEventId=41"))
+                                .andExpect(request().asyncStarted());
+
+                // assert
+
+                verify(changeFeed, times(1)).subscribe(UCSBDate.class, null);
+                verify(changeFeed, times(1)).subscribe(UCSBDate.class, 42L);
+                verify(changeFeed, times(1)).subscribe(UCSBDate.class, 41L);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_sync_changes_since_a_version() throws Exception {
+
+                // arrange
+
+                UCSBDate changed = UCSBDate.builder().id(7L).name("firstDayOfClasses").revision(12L).build();
+                DeltaSync<UCSBDate> delta = DeltaSync.<UCSBDate>builder().version(12L).reset(false)
+                                .rows(List.of(changed)).deleted(List.of("3")).build();
+                when(deltaSyncService.since(eq(UCSBDate.class), eq(10L), any(), any(), any())).thenReturn(delta);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?since=10"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(deltaSyncService, times(1)).since(eq(UCSBDate.class), eq(10L), any(), any(), any());
+                assertEquals(mapper.writeValueAsString(delta), response.getResponse().getContentAsString());
+        }
 }
@@ -4,12 +4,23 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.CommonsDistance;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.models.ImportReport;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeed;
+import edu.ucsb.cs156.example.services.CsvImportService;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+import edu.ucsb.cs156.example.services.DiningCommonsSpatialIndex;
+import edu.ucsb.cs156.example.services.EntityExportService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -24,11 +35,25 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.util.List;
+import java.util.function.Function;
 
 @WebMvcTest(controllers = UCSBDiningCommonsController.class)
 @Import(TestConfig.class)
@@ -40,6 +65,27 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityExportService entityExportService;
+
+        @MockBean
+        BulkWriteService bulkWriteService;
+
+        @MockBean
+        CsvImportService csvImportService;
+
+        @MockBean
+        DiningCommonsSpatialIndex diningCommonsSpatialIndex;
+
+        @MockBean
+        ChangeFeed changeFeed;
+
+        @MockBean
+        DeltaSyncService deltaSyncService;
+
+        @MockBean
+        JsonResponseCache jsonResponseCache;
+
         // Authorization tests for /api/ucsbdiningcommons/admin/all
 
         @Test
@@ -159,6 +205,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 expectedCommons.addAll(Arrays.asList(carrillo, dlg));
 
                 when(ucsbDiningCommonsRepository.findAll()).thenReturn(expectedCommons);
+                when(jsonResponseCache.render(eq(UCSBDiningCommons.class), any())).thenAnswer(rendersRows());
 
                 // act
                 MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all"))
@@ -206,18 +253,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         @Test
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
-
-                UCSBDiningCommons portola = UCSBDiningCommons.builder()
-                                .name("Portola")
-                                .code("portola")
-                                .hasSackMeal(true)
-                                .hasTakeOutMeal(true)
-                                .hasDiningCam(true)
-                                .latitude(34.417723)
-                                .longitude(-119.867427)
-                                .build();
-
-                when(ucsbDiningCommonsRepository.findById(eq("portola"))).thenReturn(Optional.of(portola));
+                when(bulkWriteService.deleteAll(eq(UCSBDiningCommons.class), eq(List.of("portola")), any())).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +262,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
-                verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+                verify(bulkWriteService, times(1)).deleteAll(eq(UCSBDiningCommons.class), eq(List.of("portola")), any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -239,7 +274,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(bulkWriteService.deleteAll(eq(UCSBDiningCommons.class), eq(List.of("munger-hall")), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,11 +283,45 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(bulkWriteService, times(1)).deleteAll(eq(UCSBDiningCommons.class), eq(List.of("munger-hall")), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_many_commons_at_once() throws Exception {
+                // arrange
+                when(bulkWriteService.deleteAll(eq(UCSBDiningCommons.class), eq(List.of("portola", "ortega", "munger-hall")), any())).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdiningcommons/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[\"portola\", \"ortega\", \"munger-hall\"]")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Function<String, UCSBDiningCommons>> stub = ArgumentCaptor.forClass(Function.class);
+                verify(bulkWriteService, times(1)).deleteAll(eq(UCSBDiningCommons.class), eq(List.of("portola", "ortega", "munger-hall")), stub.capture());
+                assertEquals("portola", stub.getValue().apply("portola").getCode());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("2 of 3 UCSBDiningCommons deleted", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_delete_many_commons() throws Exception {
+                mockMvc.perform(
+                                delete("/api/ucsbdiningcommons/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content("[\"portola\", \"ortega\", \"munger-hall\"]")
+                                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_can_edit_an_existing_commons() throws Exception {
@@ -281,6 +350,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 String requestBody = mapper.writeValueAsString(carrilloEdited);
 
                 when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(carrilloOrig));
+                when(ucsbDiningCommonsRepository.save(eq(carrilloEdited))).thenReturn(carrilloEdited);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -298,6 +368,196 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 assertEquals(requestBody, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_commons_when_if_match_is_current() throws Exception {
+                // arrange
+                UCSBDiningCommons orig = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .version(3)
+                                .build();
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining Hall")
+                                .build();
+                UCSBDiningCommons saved = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining Hall")
+                                .version(4)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(orig));
+                when(ucsbDiningCommonsRepository.save(any(UCSBDiningCommons.class))).thenReturn(saved);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons?code=carrillo")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).save(any(UCSBDiningCommons.class));
+                assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+                assertEquals(mapper.writeValueAsString(saved), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_commons_with_a_stale_if_match() throws Exception {
+                // arrange
+                UCSBDiningCommons orig = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .version(5)
+                                .build();
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining Hall")
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(orig));
+
+                // act
+                mockMvc.perform(
+                                put("/api/ucsbdiningcommons?code=carrillo")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).save(any(UCSBDiningCommons.class));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void concurrent_edit_of_a_commons_returns_precondition_failed() throws Exception {
+                // arrange
+                UCSBDiningCommons orig = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .version(3)
+                                .build();
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo Dining Hall")
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(orig));
+                when(ucsbDiningCommonsRepository.save(any(UCSBDiningCommons.class)))
+                                .thenThrow(new ObjectOptimisticLockingFailureException(UCSBDiningCommons.class, "carrillo"));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons?code=carrillo")
+                                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("ObjectOptimisticLockingFailureException", json.get("type"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_some_fields_of_a_commons() throws Exception {
+                // arrange
+                UCSBDiningCommons orig = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .version(2)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(orig));
+                when(ucsbDiningCommonsRepository.save(any(UCSBDiningCommons.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/ucsbdiningcommons?code=carrillo")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"code\": \"other\", \"name\": \"Carrillo Dining Hall\", \"latitude\": null}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert: named fields replaced or cleared, the key and everything else kept
+                ArgumentCaptor<UCSBDiningCommons> captor = ArgumentCaptor.forClass(UCSBDiningCommons.class);
+                verify(ucsbDiningCommonsRepository, times(1)).save(captor.capture());
+                UCSBDiningCommons saved = captor.getValue();
+                assertEquals("carrillo", saved.getCode());
+                assertEquals("Carrillo Dining Hall", saved.getName());
+                assertNull(saved.getLatitude());
+                assertEquals(true, saved.getHasDiningCam());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_that_changes_nothing_does_not_write_the_commons() throws Exception {
+                // arrange
+                UCSBDiningCommons orig = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .version(2)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdiningcommons?code=carrillo")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"name\": \"Carrillo\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).save(any(UCSBDiningCommons.class));
+                assertEquals("\"2\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+                assertEquals(mapper.writeValueAsString(orig), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patch_with_an_unknown_field_is_rejected_for_a_commons() throws Exception {
+                // arrange
+                UCSBDiningCommons orig = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(orig));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/ucsbdiningcommons?code=carrillo")
+                                                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                                                .characterEncoding("utf-8")
+                                                .content("{\"noSuchField\": 1}")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).save(any(UCSBDiningCommons.class));
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_cannot_edit_commons_that_does_not_exist() throws Exception {
@@ -332,4 +592,351 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination of /api/ucsbdiningcommons/all
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_page_through_all_with_a_cursor() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommons> page = List.of(UCSBDiningCommons.builder().code("ortega").name("Ortega").build());
+
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq("de-la-guerra"), eq(PageRequest.of(0, 1))))
+                                .thenReturn(new SliceImpl<>(page, PageRequest.of(0, 1), true));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?after=de-la-guerra&limit=1"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(0)).findAll();
+                assertEquals("<http://localhost/api/ucsbdiningcommons/all?after=ortega&limit=1>; rel=\"next\"",
+                                response.getResponse().getHeader("Link"));
+                assertEquals(mapper.writeValueAsString(page), response.getResponse().getContentAsString());
+        }
+
+        // Tests for streaming export
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_export_as_csv() throws Exception {
+
+                // arrange
+
+                StreamingResponseBody body = out -> out.write("carrillo,Carrillo\n".getBytes());
+                when(entityExportService.export(eq(UCSBDiningCommons.class), any(), eq("text/csv")))
+                                .thenReturn(ResponseEntity.ok().contentType(EntityExportService.CSV).body(body));
+
+                // act
+                MvcResult started = mockMvc.perform(get("/api/ucsbdiningcommons/export").accept("text/csv"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(started))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(entityExportService, times(1)).export(eq(UCSBDiningCommons.class), any(), eq("text/csv"));
+                assertEquals("carrillo,Carrillo\n", response.getResponse().getContentAsString());
+        }
+
+        // Tests for bulk insert
+
+        @Test
+        public void logged_out_users_cannot_bulk_post() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommons/bulk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommons/bulk"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_bulk_post_commons() throws Exception {
+
+                // arrange
+
+                List<UCSBDiningCommons> incoming = List.of(
+                                UCSBDiningCommons.builder().code("ortega").name("Ortega").latitude(34.410987).longitude(-119.84709).build(),
+                                UCSBDiningCommons.builder().code("carrillo").name("Carrillo").latitude(34.409953).longitude(-119.85277).build());
+
+                when(ucsbDiningCommonsRepository.findAllById(any())).thenReturn(List.of());
+                when(bulkWriteService.insertAll(eq(incoming))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdiningcommons/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(incoming))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(bulkWriteService, times(1)).insertAll(eq(incoming));
+                assertEquals(mapper.writeValueAsString(incoming), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void bulk_post_with_a_repeated_code_saves_nothing() throws Exception {
+
+                List<UCSBDiningCommons> incoming = List.of(
+                                UCSBDiningCommons.builder().code("ortega").name("Ortega").build(),
+                                UCSBDiningCommons.builder().code("carrillo").name("Carrillo").build(),
+                                UCSBDiningCommons.builder().code("ortega").name("Ortega again").build());
+
+                mockMvc.perform(
+                                post("/api/ucsbdiningcommons/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(incoming))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(status().reason("codes appear more than once: ortega"));
+
+                verify(bulkWriteService, never()).insertAll(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void bulk_post_without_a_code_saves_nothing() throws Exception {
+
+                List<UCSBDiningCommons> incoming = List.of(
+                                UCSBDiningCommons.builder().code("ortega").name("Ortega").build(),
+                                UCSBDiningCommons.builder().name("No code").build());
+
+                mockMvc.perform(
+                                post("/api/ucsbdiningcommons/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(incoming))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest());
+
+                verify(bulkWriteService, never()).insertAll(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void bulk_post_of_existing_codes_is_a_conflict_listing_them() throws Exception {
+
+                UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega").build();
+                UCSBDiningCommons carrillo = UCSBDiningCommons.builder().code("carrillo").name("Carrillo").build();
+                UCSBDiningCommons portola = UCSBDiningCommons.builder().code("portola").name("Portola").build();
+
+                when(ucsbDiningCommonsRepository.findAllById(any())).thenReturn(List.of(portola, carrillo));
+
+                mockMvc.perform(
+                                post("/api/ucsbdiningcommons/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(List.of(ortega, carrillo, portola)))
+                                                .with(csrf()))
+                                .andExpect(status().isConflict())
+                                .andExpect(status().reason("codes already exist: carrillo, portola"));
+
+                verify(bulkWriteService, never()).insertAll(any());
+        }
+
+        // Tests for CSV import
+
+        @Test
+        public void logged_out_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/ucsbdiningcommons/import"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/ucsbdiningcommons/import"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_import_a_csv_file() throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile("file", "commons.csv", "text/csv",
+                                "code,name\nortega,Ortega\n".getBytes());
+                ImportReport report = ImportReport.builder().rowsRead(1).rowsImported(1).build();
+                when(csvImportService.importCsv(any(), eq(UCSBDiningCommons.class), any())).thenReturn(report);
+
+                // act
+                MvcResult response = mockMvc.perform(multipart("/api/ucsbdiningcommons/import").file(file).with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                @SuppressWarnings("unchecked")
+                ArgumentCaptor<Function<UCSBDiningCommons, String>> check = ArgumentCaptor.forClass(Function.class);
+                verify(csvImportService, times(1)).importCsv(any(), eq(UCSBDiningCommons.class), check.capture());
+                assertEquals(mapper.writeValueAsString(report), response.getResponse().getContentAsString());
+
+                assertNull(check.getValue().apply(UCSBDiningCommons.builder().code("ortega").name("Ortega").build()));
+                assertEquals("code is required", check.getValue().apply(UCSBDiningCommons.builder().name("Ortega").build()));
+                assertEquals("name is required", check.getValue().apply(UCSBDiningCommons.builder().code("ortega").build()));
+                assertEquals("code ortega appears more than once in the file",
+                                check.getValue().apply(UCSBDiningCommons.builder().code("ortega").name("Ortega").build()));
+
+                when(ucsbDiningCommonsRepository.existsById("carrillo")).thenReturn(true);
+                assertEquals("code carrillo already exists",
+                                check.getValue().apply(UCSBDiningCommons.builder().code("carrillo").name("Carrillo").build()));
+        }
+
+        // Tests for location queries
+
+        @Test
+        public void logged_out_users_cannot_get_nearest() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.4126&lon=-119.8485"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_nearest_commons() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega")
+                                .latitude(34.410987).longitude(-119.84709).build();
+                List<CommonsDistance> nearest = List.of(new CommonsDistance(ortega, 220.5));
+                when(diningCommonsSpatialIndex.nearest(eq(34.4126), eq(-119.8485), eq(1))).thenReturn(nearest);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.4126&lon=-119.8485&k=1"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(diningCommonsSpatialIndex, times(1)).nearest(eq(34.4126), eq(-119.8485), eq(1));
+                assertEquals(mapper.writeValueAsString(nearest), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_defaults_to_five_and_caps_k() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.4126&lon=-119.8485"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.4126&lon=-119.8485&k=100000"))
+                                .andExpect(status().isOk());
+
+                verify(diningCommonsSpatialIndex, times(1)).nearest(eq(34.4126), eq(-119.8485), eq(5));
+                verify(diningCommonsSpatialIndex, times(1)).nearest(eq(34.4126), eq(-119.8485), eq(1000));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_rejects_coordinates_off_the_globe() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=91&lon=-119.8485"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.4126&lon=-181"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=NaN&lon=-119.8485"))
+                                .andExpect(status().isBadRequest());
+
+                verify(diningCommonsSpatialIndex, times(0)).nearest(anyDouble(), anyDouble(), anyInt());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_commons_within_a_box() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega")
+                                .latitude(34.410987).longitude(-119.84709).build();
+                when(diningCommonsSpatialIndex.within(eq(34.40), eq(34.42), eq(-119.86), eq(-119.84)))
+                                .thenReturn(List.of(ortega));
+
+                // act
+                MvcResult response = mockMvc.perform(get(
+                                "/api/ucsbdiningcommons/within?minLat=34.40&maxLat=34.42&minLon=-119.86&maxLon=-119.84"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(diningCommonsSpatialIndex, times(1)).within(eq(34.40), eq(34.42), eq(-119.86), eq(-119.84));
+                assertEquals(mapper.writeValueAsString(List.of(ortega)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void within_rejects_bad_boxes() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/within?minLat=34.42&maxLat=34.40&minLon=-119.86&maxLon=-119.84"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/ucsbdiningcommons/within?minLat=34.40&maxLat=34.42&minLon=-119.84&maxLon=-119.86"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/ucsbdiningcommons/within?minLat=-95&maxLat=34.42&minLon=-119.86&maxLon=-119.84"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/ucsbdiningcommons/within?minLat=34.40&maxLat=34.42&minLon=-119.86&maxLon=200"))
+                                .andExpect(status().isBadRequest());
+
+                verify(diningCommonsSpatialIndex, times(0)).within(anyDouble(), anyDouble(), anyDouble(), anyDouble());
+        }
+
+        @Test
+        public void logged_out_users_cannot_subscribe_to_changes() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/changes"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_subscribe_to_changes_and_resume_from_an_event_id() throws Exception {
+
+                // arrange
+
+                when(changeFeed.subscribe(eq(UCSBDiningCommons.class), any())).thenAnswer(invocation -> new SseEmitter());
+
+                // act
+
+                mockMvc.perform(get("/api/ucsbdiningcommons/changes"))
+                                .andExpect(request().asyncStarted());
+                mockMvc.perform(get("/api/ucsbdiningcommons/changes").header("Last-Event-ID", "42"))
+                                .andExpect(request().asyncStarted());
+                mockMvc.perform(get("/api/ucsbdiningcommons/changes?lastEventId=41"))
+                                .andExpect(request().asyncStarted());
+
+                // assert
+
+                verify(changeFeed, times(1)).subscribe(UCSBDiningCommons.class, null);
+                verify(changeFeed, times(1)).subscribe(UCSBDiningCommons.class, 42L);
+                verify(changeFeed, times(1)).subscribe(UCSBDiningCommons.class, 41L);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_sync_changes_since_a_version() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons changed = UCSBDiningCommons.builder().code("ortega").name("Ortega").revision(12L).build();
+                DeltaSync<UCSBDiningCommons> delta = DeltaSync.<UCSBDiningCommons>builder().version(12L).reset(false)
+                                .rows(List.of(changed)).deleted(List.of("sandbox")).build();
+                when(deltaSyncService.since(eq(UCSBDiningCommons.class), eq(10L), any(), any(), any())).thenReturn(delta);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?since=10"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(deltaSyncService, times(1)).since(eq(UCSBDiningCommons.class), eq(10L), any(), any(), any());
+                assertEquals(mapper.writeValueAsString(delta), response.getResponse().getContentAsString());
+        }
 }
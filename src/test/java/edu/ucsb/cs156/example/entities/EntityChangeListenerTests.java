@@ -0,0 +1,68 @@
+package edu.ucsb.cs156.example.entities;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+import edu.ucsb.cs156.example.services.DeltaSyncService;
+
+@ExtendWith(MockitoExtension.class)
+class EntityChangeListenerTests {
+
+  @Mock
+  ApplicationEventPublisher publisher;
+
+  @Mock
+  ObjectProvider<DeltaSyncService> deltaSyncServiceProvider;
+
+  @Mock
+  DeltaSyncService deltaSyncService;
+
+  @InjectMocks
+  EntityChangeListener entityChangeListener;
+
+  Book dune = Book.builder().id(1L).title("Dune").build();
+
+  @Test
+  void test_each_callback_publishes_its_change() {
+    entityChangeListener.created(dune);
+    verify(publisher).publishEvent(new EntityChangedEvent(dune, ChangeType.CREATED));
+
+    entityChangeListener.updated(dune);
+    verify(publisher).publishEvent(new EntityChangedEvent(dune, ChangeType.UPDATED));
+
+    entityChangeListener.deleted(dune);
+    verify(publisher).publishEvent(new EntityChangedEvent(dune, ChangeType.DELETED));
+  }
+
+  @Test
+  void test_writes_are_stamped_and_deletes_leave_tombstones() {
+    when(deltaSyncServiceProvider.getIfAvailable()).thenReturn(deltaSyncService);
+
+    entityChangeListener.stamp(dune);
+    verify(deltaSyncService).stamp(dune);
+
+    entityChangeListener.deleting(dune);
+    verify(deltaSyncService).recordDeletion(dune);
+  }
+
+  @Test
+  void test_writes_go_through_without_delta_sync() {
+    entityChangeListener.stamp(dune);
+    entityChangeListener.deleting(dune);
+
+    verify(deltaSyncServiceProvider, times(2)).getIfAvailable();
+    verifyNoInteractions(deltaSyncService);
+  }
+}
@@ -0,0 +1,96 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import edu.ucsb.cs156.example.entities.Book;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+import edu.ucsb.cs156.example.models.SearchResults;
+import edu.ucsb.cs156.example.repositories.BookRepository;
+
+@ExtendWith(MockitoExtension.class)
+class BookSearchIndexTests {
+
+  @Mock
+  BookRepository bookRepository;
+
+  @InjectMocks
+  BookSearchIndex bookSearchIndex;
+
+  Book dune = Book.builder().id(1L).title("Dune").author("Frank Herbert").genre("Science Fiction").build();
+  Book children = Book.builder().id(2L).title("Children of Dune").author("Frank Herbert").genre("Science Fiction").build();
+  Book frankenstein = Book.builder().id(3L).title("Frankenstein").author("Mary Shelley").genre("Horror").build();
+  Book it = Book.builder().id(4L).title("IT").author("Stephen King").genre("Horror").build();
+
+  @BeforeEach
+  void setup() {
+    when(bookRepository.findAll()).thenReturn(List.of(dune, children, frankenstein, it));
+    bookSearchIndex.load();
+  }
+
+  private List<Book> search(String q) {
+    return bookSearchIndex.search(q, PageRequest.of(0, 10)).getResults();
+  }
+
+  @Test
+  void test_tokenize_lowercases_and_splits_on_punctuation() {
+    assertEquals(Set.of("children", "of", "dune"), BookSearchIndex.tokenize("Children  of DUNE!"));
+    assertEquals(Set.of(), BookSearchIndex.tokenize(null));
+    assertEquals(Set.of("señor", "x"), BookSearchIndex.tokenize("--Señor, x"));
+  }
+
+  @Test
+  void test_title_matches_rank_above_other_fields() {
+    assertEquals(List.of(dune, children), search("dune"));
+    assertEquals(List.of(), search("tolkien"));
+  }
+
+  @Test
+  void test_more_matching_words_rank_higher() {
+    assertEquals(List.of(children, dune), search("children dune"));
+    assertEquals(List.of(frankenstein, it), search("horror frankenstein"));
+  }
+
+  @Test
+  void test_results_are_paged() {
+    SearchResults<Book> page = bookSearchIndex.search("frank herbert horror", PageRequest.of(1, 2));
+
+    assertEquals(4, page.getTotal());
+    assertEquals(1, page.getPage());
+    assertEquals(2, page.getSize());
+    assertEquals(2, page.getResults().size());
+
+    assertEquals(List.of(), bookSearchIndex.search("dune", PageRequest.of(5, 2)).getResults());
+  }
+
+  @Test
+  void test_changes_update_the_index() {
+    Book renamed = Book.builder().id(4L).title("The Shining").author("Stephen King").genre("Horror").build();
+    bookSearchIndex.onEntityChanged(new EntityChangedEvent(renamed, ChangeType.UPDATED));
+    assertEquals(List.of(), search("it"));
+    assertEquals(List.of(renamed), search("shining"));
+
+    bookSearchIndex.onEntityChanged(new EntityChangedEvent(dune, ChangeType.DELETED));
+    assertEquals(List.of(children), search("dune"));
+
+    Book messiah = Book.builder().id(5L).title("Dune Messiah").author("Frank Herbert").genre("Science Fiction").build();
+    bookSearchIndex.onEntityChanged(new EntityChangedEvent(messiah, ChangeType.CREATED));
+    assertEquals(2, search("dune").size());
+
+    bookSearchIndex.onEntityChanged(new EntityChangedEvent("not a book", ChangeType.CREATED));
+    bookSearchIndex.remove(42L);
+    assertEquals(2, search("dune").size());
+  }
+}
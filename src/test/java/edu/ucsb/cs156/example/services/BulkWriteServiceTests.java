@@ -0,0 +1,210 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import edu.ucsb.cs156.example.entities.Book;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+
+@ExtendWith(MockitoExtension.class)
+class BulkWriteServiceTests {
+
+  @Mock
+  EntityManager entityManager;
+
+  @Mock
+  ApplicationEventPublisher publisher;
+
+  @Mock
+  DeltaSyncService deltaSyncService;
+
+  @Mock
+  Metamodel metamodel;
+
+  @Mock
+  EntityType<Book> bookType;
+
+  @Mock
+  SingularAttribute<Book, Long> idAttribute;
+
+  @Mock
+  Query query;
+
+  @InjectMocks
+  BulkWriteService bulkWriteService;
+
+  @BeforeEach
+  void setup() {
+    bulkWriteService.batchSize = 2;
+    bulkWriteService.dialect = "";
+  }
+
+  private List<Book> books(int n) {
+    List<Book> books = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      books.add(Book.builder().title("Book " + i).build());
+    }
+    return books;
+  }
+
+  @Test
+  void test_insertAll_flushes_and_clears_every_batch() {
+    List<Book> books = books(5);
+
+    int count = bulkWriteService.insertAll(books);
+
+    assertEquals(5, count);
+    InOrder inOrder = inOrder(entityManager);
+    inOrder.verify(entityManager).persist(books.get(0));
+    inOrder.verify(entityManager).persist(books.get(1));
+    inOrder.verify(entityManager).flush();
+    inOrder.verify(entityManager).clear();
+    inOrder.verify(entityManager).persist(books.get(2));
+    inOrder.verify(entityManager).persist(books.get(3));
+    inOrder.verify(entityManager).flush();
+    inOrder.verify(entityManager).clear();
+    inOrder.verify(entityManager).persist(books.get(4));
+    inOrder.verify(entityManager).flush();
+    inOrder.verify(entityManager).clear();
+    verify(entityManager, times(3)).flush();
+  }
+
+  @Test
+  void test_insertAll_of_nothing_inserts_nothing() {
+    int count = bulkWriteService.insertAll(List.of());
+
+    assertEquals(0, count);
+    verify(entityManager, times(0)).persist(any());
+  }
+
+  private void stubMetamodel() {
+    when(entityManager.getMetamodel()).thenReturn(metamodel);
+    when(metamodel.entity(Book.class)).thenReturn(bookType);
+    when(bookType.getName()).thenReturn("books");
+    when(bookType.getSingularAttributes()).thenReturn(Set.<SingularAttribute<? super Book, ?>>of(idAttribute));
+    when(idAttribute.isId()).thenReturn(true);
+    when(idAttribute.getName()).thenReturn("id");
+  }
+
+  // rowCount: what the DELETE ... WHERE id = :id reports
+  private void stubDeleteOne(int rowCount) {
+    stubMetamodel();
+    when(entityManager.createQuery("delete from books e where e.id = :id")).thenReturn(query);
+    when(query.setParameter(eq("id"), any())).thenReturn(query);
+    when(query.executeUpdate()).thenReturn(rowCount);
+  }
+
+  // deleted: the ids the statement returns as removed
+  private void stubDeleteMany(String statement, List<?> deleted) {
+    stubMetamodel();
+    when(idAttribute.getJavaType()).thenReturn(Long.class);
+    when(entityManager.createNativeQuery(statement)).thenReturn(query);
+    when(query.setParameter(eq("ids"), any())).thenReturn(query);
+    when(query.getResultList()).thenReturn(deleted);
+  }
+
+  @Test
+  void test_deleteAll_of_one_id_is_a_single_delete() {
+    stubDeleteOne(1);
+
+    int count = bulkWriteService.deleteAll(Book.class, List.of(1L), id -> Book.builder().id(id).build());
+
+    assertEquals(1, count);
+    verify(query).setParameter("id", 1L);
+    verify(query, times(1)).executeUpdate();
+    verify(entityManager, never()).createNativeQuery(anyString());
+    verify(deltaSyncService).recordDeletion(Book.class, 1L);
+    ArgumentCaptor<EntityChangedEvent> events = ArgumentCaptor.forClass(EntityChangedEvent.class);
+    verify(publisher).publishEvent(events.capture());
+    assertTrue(events.getValue().isDeleted());
+    assertEquals(1L, ((Book) events.getValue().getEntity()).getId());
+  }
+
+  @Test
+  void test_deleteAll_of_one_missing_id_records_nothing() {
+    stubDeleteOne(0);
+
+    int count = bulkWriteService.deleteAll(Book.class, List.of(7L, 7L), id -> Book.builder().id(id).build());
+
+    assertEquals(0, count);
+    verify(deltaSyncService, never()).recordDeletion(any(), any());
+    verify(publisher, never()).publishEvent(any(Object.class));
+  }
+
+  @Test
+  void test_deleteAll_records_only_the_ids_the_delete_returned() {
+    stubDeleteMany("select id from old table (delete from books where id in (:ids))", List.of(1L));
+
+    int count = bulkWriteService.deleteAll(Book.class, List.of(1L, 999999L, 1L), id -> Book.builder().id(id).build());
+
+    assertEquals(1, count);
+    verify(query).setParameter("ids", List.of(1L, 999999L));
+    verify(query, times(1)).getResultList();
+    verify(deltaSyncService).recordDeletion(Book.class, 1L);
+    verify(deltaSyncService, never()).recordDeletion(Book.class, 999999L);
+    ArgumentCaptor<EntityChangedEvent> events = ArgumentCaptor.forClass(EntityChangedEvent.class);
+    verify(publisher, times(1)).publishEvent(events.capture());
+    assertEquals(1L, ((Book) events.getValue().getEntity()).getId());
+  }
+
+  @Test
+  void test_deleteAll_uses_delete_returning_on_postgres() {
+    bulkWriteService.dialect = "org.hibernate.dialect.PostgreSQL9Dialect";
+    stubDeleteMany("delete from books where id in (:ids) returning id", List.of(1, 2L));
+
+    int count = bulkWriteService.deleteAll(Book.class, List.of(1L, 2L), id -> Book.builder().id(id).build());
+
+    assertEquals(2, count);
+    verify(deltaSyncService).recordDeletion(Book.class, 1L);
+    verify(deltaSyncService).recordDeletion(Book.class, 2L);
+    verify(publisher, times(2)).publishEvent(any(EntityChangedEvent.class));
+  }
+
+  @Test
+  void test_deleteAll_that_matches_nothing_records_nothing() {
+    stubDeleteMany("select id from old table (delete from books where id in (:ids))", List.of());
+
+    int count = bulkWriteService.deleteAll(Book.class, List.of(7L, 8L), id -> Book.builder().id(id).build());
+
+    assertEquals(0, count);
+    verify(deltaSyncService, never()).recordDeletion(any(), any());
+    verify(publisher, never()).publishEvent(any(Object.class));
+  }
+
+  @Test
+  void test_deleteAll_of_nothing_runs_no_statement() {
+    int count = bulkWriteService.deleteAll(Book.class, List.<Long>of(), id -> Book.builder().id(id).build());
+
+    assertEquals(0, count);
+    verify(entityManager, never()).createQuery(anyString());
+    verify(entityManager, never()).createNativeQuery(anyString());
+  }
+}
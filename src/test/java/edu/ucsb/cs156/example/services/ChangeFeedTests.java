@@ -0,0 +1,240 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Book;
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+
+class ChangeFeedTests {
+
+  // records what would have been written to the client
+  static class RecordingEmitter extends SseEmitter {
+    final List<String> frames = new CopyOnWriteArrayList<>();
+    volatile boolean broken;
+    // when set, sends block until it is counted down, like a client that stopped reading
+    volatile CountDownLatch stall;
+    final CountDownLatch stalled = new CountDownLatch(1);
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      if (broken) {
+        throw new IOException("connection reset");
+      }
+      CountDownLatch stall = this.stall;
+      if (stall != null) {
+        stalled.countDown();
+        try {
+          stall.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      frames.add(builder.build().stream().map(part -> part.getData().toString()).collect(Collectors.joining()));
+    }
+
+    List<String> events() {
+      return frames.stream().filter(frame -> !frame.startsWith(":")).collect(Collectors.toList());
+    }
+  }
+
+  List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+
+  ChangeFeed changeFeed = new ChangeFeed() {
+    @Override
+    SseEmitter newEmitter() {
+      RecordingEmitter emitter = new RecordingEmitter();
+      emitters.add(emitter);
+      return emitter;
+    }
+  };
+
+  @BeforeEach
+  void setup() {
+    changeFeed.mapper = new ObjectMapper();
+    changeFeed.senders = Runnable::run;
+    changeFeed.replaySize = 3;
+    changeFeed.subscriberBuffer = 4;
+  }
+
+  private void change(long id, ChangeType type) {
+    changeFeed.onEntityChanged(new EntityChangedEvent(Park.builder().id(id).name("park " + id).build(), type));
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.getAsBoolean(), "timed out");
+  }
+
+  private static long idOf(String frame) {
+    return Long.parseLong(frame.substring(3, frame.indexOf('\n')));
+  }
+
+  @Test
+  void subscribers_get_changes_to_their_entity_only() {
+    changeFeed.subscribe(Park.class, null);
+    changeFeed.subscribe(Book.class, null);
+
+    change(1L, ChangeType.CREATED);
+    change(1L, ChangeType.DELETED);
+
+    List<String> parks = emitters.get(0).events();
+    assertEquals(2, parks.size());
+    assertTrue(parks.get(0).contains("event:created\ndata:{\"id\":1,\"name\":\"park 1\""), parks.get(0));
+    assertTrue(parks.get(1).contains("event:deleted\n"), parks.get(1));
+    assertTrue(idOf(parks.get(0)) < idOf(parks.get(1)));
+    assertEquals(List.of(), emitters.get(1).events());
+    // the stream opens with a comment, so the client sees the connection at once
+    assertTrue(emitters.get(1).frames.get(0).startsWith(":heartbeat"));
+  }
+
+  @Test
+  void reconnecting_replays_what_was_missed() {
+    changeFeed.subscribe(Park.class, null);
+    change(1L, ChangeType.CREATED);
+    long seen = idOf(emitters.get(0).events().get(0));
+    change(2L, ChangeType.CREATED);
+    change(3L, ChangeType.CREATED);
+
+    changeFeed.subscribe(Park.class, seen);
+
+    List<String> replayed = emitters.get(1).events();
+    assertEquals(2, replayed.size());
+    assertTrue(replayed.get(0).contains("\"id\":2"));
+    assertTrue(replayed.get(1).contains("\"id\":3"));
+  }
+
+  @Test
+  void reconnecting_from_too_far_back_or_a_previous_run_resets() {
+    changeFeed.subscribe(Park.class, null);
+    change(1L, ChangeType.CREATED);
+    long first = idOf(emitters.get(0).events().get(0));
+    for (long id = 2; id <= 5; id++) {
+      change(id, ChangeType.CREATED);
+    }
+
+    changeFeed.subscribe(Park.class, first);
+    changeFeed.subscribe(Park.class, 12345L);
+
+    for (RecordingEmitter emitter : emitters.subList(1, 3)) {
+      assertEquals(1, emitter.events().size());
+      assertTrue(emitter.events().get(0).contains("event:reset\n"));
+    }
+  }
+
+  @Test
+  void a_subscriber_that_falls_behind_is_reset_instead_of_buffering() {
+    List<Runnable> pending = new ArrayList<>();
+    changeFeed.senders = pending::add;
+    changeFeed.subscribe(Park.class, null);
+
+    for (long id = 1; id <= 10; id++) {
+      change(id, ChangeType.UPDATED);
+    }
+    pending.forEach(Runnable::run);
+
+    List<String> events = emitters.get(0).events();
+    assertTrue(events.get(0).contains("event:reset\n"), events.get(0));
+    assertTrue(events.size() <= 1 + changeFeed.subscriberBuffer);
+  }
+
+  @Test
+  void heartbeats_go_to_idle_subscribers() {
+    changeFeed.subscribe(Park.class, null);
+    emitters.get(0).frames.clear();
+
+    changeFeed.heartbeat();
+
+    assertEquals(List.of(":heartbeat\n\n"), emitters.get(0).frames);
+  }
+
+  @Test
+  void broken_connections_are_unsubscribed() {
+    changeFeed.subscribe(Park.class, null);
+    emitters.get(0).broken = true;
+
+    change(1L, ChangeType.CREATED);
+
+    assertEquals(0, changeFeed.subscriberCount(Park.class));
+  }
+
+  @Test
+  void a_stalled_client_does_not_hold_up_the_others() throws Exception {
+    changeFeed.senderThreads = 1;
+    changeFeed.start();
+    CountDownLatch stall = new CountDownLatch(1);
+    try {
+      changeFeed.subscribe(Park.class, null);
+      changeFeed.subscribe(Park.class, null);
+      await(() -> !emitters.get(0).frames.isEmpty() && !emitters.get(1).frames.isEmpty());
+      emitters.get(0).stall = stall;
+
+      change(1L, ChangeType.CREATED);
+      assertTrue(emitters.get(0).stalled.await(5, TimeUnit.SECONDS));
+      change(2L, ChangeType.CREATED);
+
+      await(() -> emitters.get(1).events().size() == 2);
+    } finally {
+      stall.countDown();
+      changeFeed.shutdown();
+    }
+  }
+
+  @Test
+  void a_client_stalled_past_the_send_timeout_is_unsubscribed() throws Exception {
+    changeFeed.senders = runnable -> new Thread(runnable).start();
+    changeFeed.sendTimeoutMillis = 0;
+    CountDownLatch stall = new CountDownLatch(1);
+    try {
+      changeFeed.subscribe(Park.class, null);
+      await(() -> !emitters.get(0).frames.isEmpty());
+      emitters.get(0).stall = stall;
+
+      change(1L, ChangeType.CREATED);
+      assertTrue(emitters.get(0).stalled.await(5, TimeUnit.SECONDS));
+      Thread.sleep(10);
+      changeFeed.heartbeat();
+
+      assertEquals(0, changeFeed.subscriberCount(Park.class));
+    } finally {
+      stall.countDown();
+    }
+  }
+
+  @Test
+  void a_drain_the_sender_pool_turns_away_is_retried_on_the_next_heartbeat() {
+    changeFeed.senders = runnable -> {
+      throw new RejectedExecutionException("all sender threads busy");
+    };
+    changeFeed.subscribe(Park.class, null);
+    change(1L, ChangeType.CREATED);
+    assertEquals(List.of(), emitters.get(0).frames);
+
+    changeFeed.senders = Runnable::run;
+    changeFeed.heartbeat();
+
+    assertEquals(1, emitters.get(0).events().size());
+    assertEquals(1, changeFeed.subscriberCount(Park.class));
+  }
+}
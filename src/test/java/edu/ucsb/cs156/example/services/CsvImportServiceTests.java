@@ -0,0 +1,112 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.ImportReport;
+import edu.ucsb.cs156.example.models.ImportRowError;
+
+@ExtendWith(MockitoExtension.class)
+class CsvImportServiceTests {
+
+  @Mock
+  BulkWriteService bulkWriteService;
+
+  @InjectMocks
+  CsvImportService csvImportService;
+
+  List<Object> inserted = new ArrayList<>();
+
+  @BeforeEach
+  void setup() {
+    csvImportService.maxErrors = 1000;
+    when(bulkWriteService.insertAll(any())).thenAnswer(invocation -> {
+      Iterable<?> rows = invocation.getArgument(0);
+      rows.forEach(inserted::add);
+      return inserted.size();
+    });
+  }
+
+  private ImportReport importDates(String csv) throws Exception {
+    return csvImportService.importCsv(new ByteArrayInputStream(csv.getBytes()), UCSBDate.class,
+        date -> date.getName() == null ? "name is required" : null);
+  }
+
+  @Test
+  void test_good_rows_are_inserted() throws Exception {
+    ImportReport report = importDates("""
+        quarterYYYYQ,name,localDateTime
+        20222,firstDayOfClasses,2022-03-28T00:00:00
+        20222, lastDayOfClasses ,2022-06-03T00:00:00
+        """);
+
+    assertEquals(2, report.getRowsRead());
+    assertEquals(2, report.getRowsImported());
+    assertEquals(0, report.getRowsRejected());
+    assertEquals(List.of(), report.getErrors());
+    assertEquals(List.of(
+        UCSBDate.builder().quarterYYYYQ("20222").name("firstDayOfClasses")
+            .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00")).build(),
+        UCSBDate.builder().quarterYYYYQ("20222").name("lastDayOfClasses")
+            .localDateTime(LocalDateTime.parse("2022-06-03T00:00:00")).build()),
+        inserted);
+  }
+
+  @Test
+  void test_bad_rows_are_reported_by_line_and_skipped() throws Exception {
+    ImportReport report = importDates("""
+        quarterYYYYQ,name,localDateTime,notes
+        20222,,2022-03-28T00:00:00,missing name
+        20222,firstDayOfClasses,not a date,
+        20222,lastDayOfClasses,2022-06-03T00:00:00,ok
+        """);
+
+    assertEquals(3, report.getRowsRead());
+    assertEquals(1, report.getRowsImported());
+    assertEquals(2, report.getRowsRejected());
+    assertEquals(new ImportRowError(2, "name is required"), report.getErrors().get(0));
+    assertEquals(3, report.getErrors().get(1).getLine());
+    assertEquals(1, inserted.size());
+  }
+
+  @Test
+  void test_lines_count_the_line_breaks_inside_quoted_values() throws Exception {
+    ImportReport report = importDates("""
+        quarterYYYYQ,name,localDateTime,notes
+        20222,firstDayOfClasses,2022-03-28T00:00:00,"spans
+        two lines"
+        20222,,2022-06-03T00:00:00,missing name
+        """);
+
+    assertEquals(2, report.getRowsRead());
+    assertEquals(List.of(new ImportRowError(4, "name is required")), report.getErrors());
+  }
+
+  @Test
+  void test_only_the_first_max_errors_are_listed() throws Exception {
+    csvImportService.maxErrors = 1;
+
+    ImportReport report = importDates("""
+        quarterYYYYQ,name,localDateTime
+        20222,,2022-03-28T00:00:00
+        20222,,2022-06-03T00:00:00
+        """);
+
+    assertEquals(2, report.getRowsRejected());
+    assertEquals(List.of(new ImportRowError(2, "name is required")), report.getErrors());
+  }
+}
@@ -0,0 +1,173 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.example.entities.User;
+
+@ExtendWith(MockitoExtension.class)
+class CurrentUserServiceImplTests {
+
+  @Mock
+  UserProvisioningService userProvisioningService;
+
+  @InjectMocks
+  CurrentUserServiceImpl currentUserService;
+
+  List<String> adminEmails = new ArrayList<>();
+
+  AtomicLong adminGeneration = new AtomicLong();
+
+  MockHttpSession session = new MockHttpSession();
+
+  User cgaucho = User.builder().id(7L).email("cgaucho@ucsb.edu").fullName("Chris Gaucho").build();
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(currentUserService, "adminEmails", adminEmails);
+    when(userProvisioningService.getAdminGeneration()).thenAnswer(invocation -> adminGeneration.get());
+    newRequest();
+  }
+
+  @AfterEach
+  void cleanup() {
+    RequestContextHolder.resetRequestAttributes();
+    SecurityContextHolder.clearContext();
+  }
+
+  private void newRequest() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setSession(session);
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+
+  private void logIn(String email) {
+    OAuth2User principal = new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("ROLE_USER")),
+        Map.of("email", email, "sub", "12345"), "email");
+    SecurityContextHolder.getContext().setAuthentication(
+        new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+  }
+
+  private void provisions(User user) {
+    when(userProvisioningService.provision(any())).thenReturn(CompletableFuture.completedFuture(user));
+  }
+
+  @Test
+  void user_is_resolved_once_per_request() {
+    logIn("cgaucho@ucsb.edu");
+    provisions(cgaucho);
+
+    assertSame(cgaucho, currentUserService.getUser());
+    assertSame(cgaucho, currentUserService.getUser());
+
+    verify(userProvisioningService, times(1)).provision(any());
+  }
+
+  @Test
+  void later_requests_in_the_session_reuse_the_user() {
+    logIn("cgaucho@ucsb.edu");
+    provisions(cgaucho);
+
+    currentUserService.getUser();
+    newRequest();
+    assertSame(cgaucho, currentUserService.getUser());
+
+    verify(userProvisioningService, times(1)).provision(any());
+  }
+
+  @Test
+  void session_of_another_login_is_resolved_again() {
+    logIn("cgaucho@ucsb.edu");
+    provisions(cgaucho);
+    currentUserService.getUser();
+
+    User ldelplaya = User.builder().id(8L).email("ldelplaya@ucsb.edu").build();
+    logIn("ldelplaya@ucsb.edu");
+    provisions(ldelplaya);
+    newRequest();
+
+    assertSame(ldelplaya, currentUserService.getUser());
+    verify(userProvisioningService, times(2)).provision(any());
+  }
+
+  @Test
+  void users_are_resolved_again_after_an_admin_flag_changed() {
+    logIn("cgaucho@ucsb.edu");
+    provisions(cgaucho);
+    currentUserService.getUser();
+
+    adminGeneration.incrementAndGet();
+    newRequest();
+    currentUserService.getUser();
+
+    verify(userProvisioningService, times(2)).provision(any());
+  }
+
+  @Test
+  void user_is_resolved_again_once_listed_as_an_admin() {
+    logIn("cgaucho@ucsb.edu");
+    provisions(cgaucho);
+    currentUserService.getUser();
+
+    adminEmails.add("cgaucho@ucsb.edu");
+    newRequest();
+    currentUserService.getUser();
+
+    verify(userProvisioningService, times(2)).provision(any());
+  }
+
+  @Test
+  void session_entry_survives_serialization() throws Exception {
+    logIn("cgaucho@ucsb.edu");
+    provisions(cgaucho);
+    currentUserService.getUser();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(session.getAttribute(CurrentUserServiceImpl.CACHED_USER));
+    }
+    Object restored;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      restored = in.readObject();
+    }
+
+    session = new MockHttpSession();
+    session.setAttribute(CurrentUserServiceImpl.CACHED_USER, restored);
+    newRequest();
+
+    assertEquals(cgaucho, currentUserService.getUser());
+    verify(userProvisioningService, times(1)).provision(any());
+  }
+}
@@ -0,0 +1,199 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.DeltaSync;
+import edu.ucsb.cs156.example.repositories.TombstoneRepository;
+
+@ExtendWith(MockitoExtension.class)
+class DeltaSyncServiceTests {
+
+  @Mock
+  TombstoneRepository tombstoneRepository;
+
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  EntityManager entityManager;
+
+  @InjectMocks
+  DeltaSyncService deltaSyncService;
+
+  Instant now = Instant.parse("2023-05-01T12:00:00Z");
+
+  @BeforeEach
+  void setup() {
+    deltaSyncService.clock = Clock.fixed(now, ZoneOffset.UTC);
+    deltaSyncService.tombstoneRetention = Duration.ofDays(7);
+  }
+
+  @AfterEach
+  void teardown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  private static Park park(long id, long revision) {
+    return Park.builder().id(id).name("park " + id).revision(revision).build();
+  }
+
+  @Test
+  void test_writes_are_stamped_with_increasing_revisions() {
+    Park first = Park.builder().id(1L).build();
+    Park second = Park.builder().id(2L).build();
+
+    deltaSyncService.stamp(first);
+    deltaSyncService.stamp(second);
+    deltaSyncService.stamp("not revisioned");
+
+    assertEquals(1L, first.getRevision());
+    assertEquals(2L, second.getRevision());
+    assertEquals(now, second.getUpdatedAt());
+    assertEquals(2L, deltaSyncService.currentVersion());
+  }
+
+  @Test
+  void test_version_stays_below_transactions_still_in_flight() {
+    TransactionSynchronizationManager.initSynchronization();
+    long low = deltaSyncService.nextRevision();
+    long high = deltaSyncService.nextRevision();
+    assertEquals(low - 1, deltaSyncService.currentVersion());
+
+    // the later transaction commits first: still nothing can land behind the version
+    deltaSyncService.completed(high);
+    assertEquals(low - 1, deltaSyncService.currentVersion());
+
+    for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+      synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+    }
+    assertEquals(high, deltaSyncService.currentVersion());
+  }
+
+  @Test
+  void test_deletes_leave_a_tombstone_written_before_commit() {
+    Park park = park(7L, 3L);
+    when(entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(park)).thenReturn(7L);
+    TransactionSynchronizationManager.initSynchronization();
+
+    deltaSyncService.recordDeletion(park);
+    verify(tombstoneRepository, never()).save(any());
+    TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.beforeCommit(false));
+
+    ArgumentCaptor<Tombstone> tombstone = ArgumentCaptor.forClass(Tombstone.class);
+    verify(tombstoneRepository).save(tombstone.capture());
+    assertEquals("Park", tombstone.getValue().getEntityType());
+    assertEquals("7", tombstone.getValue().getEntityId());
+    assertEquals(1L, tombstone.getValue().getRevision());
+    assertEquals(now, tombstone.getValue().getDeletedAt());
+  }
+
+  @Test
+  void test_deletes_by_id_leave_a_tombstone_too() {
+    deltaSyncService.recordDeletion(UCSBDiningCommons.class, "portola");
+
+    ArgumentCaptor<Tombstone> tombstone = ArgumentCaptor.forClass(Tombstone.class);
+    verify(tombstoneRepository).save(tombstone.capture());
+    assertEquals("UCSBDiningCommons", tombstone.getValue().getEntityType());
+    assertEquals("portola", tombstone.getValue().getEntityId());
+  }
+
+  @Test
+  void test_deletes_of_rows_without_revisions_leave_no_tombstone() {
+    deltaSyncService.recordDeletion(Tombstone.class, 7L);
+
+    verify(tombstoneRepository, never()).save(any());
+  }
+
+  @Test
+  void test_since_returns_changed_rows_and_deleted_ids() {
+    for (int i = 0; i < 6; i++) {
+      deltaSyncService.nextRevision();
+    }
+    Park updated = park(1L, 4L);
+    Park recreated = park(3L, 6L);
+    when(tombstoneRepository.findByEntityTypeAndRevisionGreaterThanOrderByRevisionAsc("Park", 2L)).thenReturn(List.of(
+        Tombstone.builder().entityType("Park").entityId("2").revision(3L).build(),
+        Tombstone.builder().entityType("Park").entityId("3").revision(5L).build()));
+
+    DeltaSync<Park> delta = deltaSyncService.since(Park.class, 2L, since -> List.of(updated, recreated),
+        () -> List.of(), Park::getId);
+
+    assertEquals(6L, delta.getVersion());
+    assertFalse(delta.isReset());
+    assertEquals(List.of(updated, recreated), delta.getRows());
+    assertEquals(List.of("2"), delta.getDeleted());
+  }
+
+  @Test
+  void test_fresh_stale_or_foreign_versions_get_the_whole_table() {
+    deltaSyncService.nextRevision();
+    Park park = park(1L, 1L);
+
+    for (long since : new long[] { 0L, 99L }) {
+      DeltaSync<Park> delta = deltaSyncService.since(Park.class, since, s -> List.of(), () -> List.of(park), Park::getId);
+      assertTrue(delta.isReset());
+      assertEquals(List.of(park), delta.getRows());
+      assertEquals(List.of(), delta.getDeleted());
+    }
+  }
+
+  @Test
+  void test_purge_deletes_old_tombstones_and_remembers_how_far_it_went() {
+    for (int i = 0; i < 20; i++) {
+      deltaSyncService.nextRevision();
+    }
+    Instant cutoff = now.minus(Duration.ofDays(7));
+    when(tombstoneRepository.maxRevisionDeletedBefore(cutoff, DeltaSyncService.PURGED)).thenReturn(12L);
+    when(tombstoneRepository.deleteDeletedBefore(cutoff, DeltaSyncService.PURGED)).thenReturn(4);
+    when(tombstoneRepository.findByEntityTypeAndEntityId(DeltaSyncService.PURGED, DeltaSyncService.PURGED))
+        .thenReturn(Optional.empty());
+
+    assertEquals(4, deltaSyncService.purgeTombstones());
+
+    ArgumentCaptor<Tombstone> marker = ArgumentCaptor.forClass(Tombstone.class);
+    verify(tombstoneRepository).save(marker.capture());
+    assertEquals(12L, marker.getValue().getRevision());
+    // a client whose last sync predates the purge has to start over
+    assertTrue(deltaSyncService.since(Park.class, 11L, s -> List.of(), () -> List.of(), Park::getId).isReset());
+    assertFalse(deltaSyncService.since(Park.class, 12L, s -> List.of(), () -> List.of(), Park::getId).isReset());
+  }
+
+  @Test
+  void test_purge_with_nothing_old_enough_does_nothing() {
+    when(tombstoneRepository.maxRevisionDeletedBefore(any(), eq(DeltaSyncService.PURGED))).thenReturn(null);
+
+    assertEquals(0, deltaSyncService.purgeTombstones());
+
+    verify(tombstoneRepository, never()).deleteDeletedBefore(any(), any());
+  }
+}
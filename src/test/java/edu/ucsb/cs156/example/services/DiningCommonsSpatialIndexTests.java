@@ -0,0 +1,143 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.CommonsDistance;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+@ExtendWith(MockitoExtension.class)
+class DiningCommonsSpatialIndexTests {
+
+  @Mock
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @InjectMocks
+  DiningCommonsSpatialIndex index;
+
+  // Storke Tower
+  static final double LAT = 34.4126;
+  static final double LON = -119.8485;
+
+  UCSBDiningCommons ortega = commons("ortega", 34.410987, -119.84709);
+  UCSBDiningCommons carrillo = commons("carrillo", 34.409953, -119.85277);
+  UCSBDiningCommons dlg = commons("de-la-guerra", 34.409811, -119.845026);
+  UCSBDiningCommons portola = commons("portola", 34.417723, -119.867427);
+  UCSBDiningCommons nowhere = UCSBDiningCommons.builder().code("nowhere").name("nowhere").build();
+
+  private static UCSBDiningCommons commons(String code, double lat, double lon) {
+    return UCSBDiningCommons.builder().code(code).name(code).latitude(lat).longitude(lon).build();
+  }
+
+  private void loadCampus() {
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(ortega, carrillo, dlg, portola, nowhere));
+    index.load();
+  }
+
+  private static List<String> codes(List<CommonsDistance> distances) {
+    return distances.stream().map(d -> d.getCommons().getCode()).toList();
+  }
+
+  @Test
+  void test_haversine() {
+    assertEquals(111_195.08, DiningCommonsSpatialIndex.haversineMeters(0, 0, 1, 0), 0.01);
+    assertEquals(0.0, DiningCommonsSpatialIndex.haversineMeters(LAT, LON, LAT, LON), 1e-9);
+    assertEquals(20_015_086.8, DiningCommonsSpatialIndex.haversineMeters(0, 0, 0, 180), 0.1);
+  }
+
+  @Test
+  void test_nearest_on_campus() {
+    loadCampus();
+
+    List<CommonsDistance> nearest = index.nearest(LAT, LON, 2);
+
+    assertEquals(List.of("ortega", "de-la-guerra"), codes(nearest));
+    assertEquals(DiningCommonsSpatialIndex.haversineMeters(LAT, LON, ortega.getLatitude(), ortega.getLongitude()),
+        nearest.get(0).getDistanceMeters(), 1e-9);
+    assertEquals(List.of("ortega", "de-la-guerra", "carrillo", "portola"), codes(index.nearest(LAT, LON, 10)));
+    assertEquals(List.of(), index.nearest(LAT, LON, 0));
+  }
+
+  @Test
+  void test_nearest_from_far_away() {
+    loadCampus();
+
+    // Los Angeles
+    assertEquals(List.of("de-la-guerra"), codes(index.nearest(34.05, -118.25, 1)));
+  }
+
+  @Test
+  void test_nearest_matches_a_full_scan_on_a_fine_grid() {
+    index.cellDegrees = 0.001;
+    Random random = new Random(156);
+    List<UCSBDiningCommons> points = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      points.add(commons("p" + i, 34.40 + random.nextDouble() * 0.05, -119.88 + random.nextDouble() * 0.05));
+    }
+    points.forEach(index::put);
+
+    for (int q = 0; q < 50; q++) {
+      double lat = 34.39 + random.nextDouble() * 0.07;
+      double lon = -119.89 + random.nextDouble() * 0.07;
+      List<String> expected = points.stream()
+          .sorted(Comparator.comparingDouble(
+              (UCSBDiningCommons p) -> DiningCommonsSpatialIndex.haversineMeters(lat, lon, p.getLatitude(), p.getLongitude()))
+              .thenComparing(UCSBDiningCommons::getCode))
+          .limit(7)
+          .map(UCSBDiningCommons::getCode)
+          .toList();
+      assertEquals(expected, codes(index.nearest(lat, lon, 7)));
+    }
+  }
+
+  @Test
+  void test_within_box() {
+    loadCampus();
+
+    assertEquals(List.of(dlg, ortega), index.within(34.409, 34.411, -119.848, -119.845));
+    assertEquals(List.of(carrillo, dlg, ortega, portola), index.within(34.0, 35.0, -120.0, -119.0));
+    assertEquals(List.of(), index.within(34.0, 34.1, -120.0, -119.0));
+  }
+
+  @Test
+  void test_within_box_on_a_fine_grid() {
+    index.cellDegrees = 0.0001;
+    loadCampus();
+
+    assertEquals(List.of(dlg, ortega), index.within(34.409, 34.411, -119.848, -119.845));
+  }
+
+  @Test
+  void test_changes_update_the_index() {
+    loadCampus();
+
+    UCSBDiningCommons moved = commons("portola", LAT, LON);
+    index.onEntityChanged(new EntityChangedEvent(moved, ChangeType.UPDATED));
+    assertEquals(List.of("portola"), codes(index.nearest(LAT, LON, 1)));
+
+    index.onEntityChanged(new EntityChangedEvent(moved, ChangeType.DELETED));
+    assertEquals(List.of("ortega"), codes(index.nearest(LAT, LON, 1)));
+
+    UCSBDiningCommons unlocated = UCSBDiningCommons.builder().code("ortega").name("Ortega").build();
+    index.onEntityChanged(new EntityChangedEvent(unlocated, ChangeType.UPDATED));
+    assertEquals(List.of("de-la-guerra"), codes(index.nearest(LAT, LON, 1)));
+
+    index.onEntityChanged(new EntityChangedEvent("not a commons", ChangeType.CREATED));
+    index.remove("nowhere");
+    assertEquals(2, index.nearest(LAT, LON, 5).size());
+  }
+}
@@ -0,0 +1,88 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Book;
+
+@ExtendWith(MockitoExtension.class)
+class EntityExportServiceTests {
+
+  @Mock
+  EntityManager entityManager;
+
+  @Mock
+  PlatformTransactionManager transactionManager;
+
+  @Spy
+  ObjectMapper mapper = new ObjectMapper();
+
+  @InjectMocks
+  EntityExportService entityExportService;
+
+  Book dune = Book.builder().id(1L).title("Dune").author("Frank Herbert").genre("Science Fiction").build();
+  Book emma = Book.builder().id(2L).title("Emma").author("Jane Austen").genre("Romance").build();
+
+  private String export(String accept, Book... books) throws Exception {
+    ResponseEntity<StreamingResponseBody> response = entityExportService.export(Book.class, () -> Stream.of(books), accept);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
+    return out.toString();
+  }
+
+  @Test
+  void test_formatFor_defaults_to_ndjson() {
+    assertEquals(EntityExportService.NDJSON, entityExportService.formatFor(null));
+    assertEquals(EntityExportService.NDJSON, entityExportService.formatFor(""));
+    assertEquals(EntityExportService.NDJSON, entityExportService.formatFor("*/*"));
+    assertEquals(EntityExportService.NDJSON, entityExportService.formatFor("application/json"));
+  }
+
+  @Test
+  void test_formatFor_picks_csv_when_asked() {
+    assertEquals(EntityExportService.CSV, entityExportService.formatFor("text/csv"));
+    assertEquals(EntityExportService.CSV, entityExportService.formatFor("application/x-ndjson;q=0.5, text/csv"));
+  }
+
+  @Test
+  void test_export_ndjson_writes_one_line_per_row_and_detaches_each_row() throws Exception {
+    String body = export("application/x-ndjson", dune, emma);
+
+    assertEquals(mapper.writeValueAsString(dune) + "\n" + mapper.writeValueAsString(emma) + "\n", body);
+    verify(entityManager, times(1)).detach(dune);
+    verify(entityManager, times(1)).detach(emma);
+  }
+
+  @Test
+  void test_export_ndjson_of_empty_table_is_empty() throws Exception {
+    assertEquals("", export(null));
+  }
+
+  @Test
+  void test_export_csv_writes_header_then_rows() throws Exception {
+    String[] lines = export("text/csv", dune, emma).split("\n");
+
+    assertEquals(3, lines.length);
+    assertEquals("id,title,author,genre", lines[0]);
+    assertEquals("1,Dune,\"Frank Herbert\",\"Science Fiction\"", lines[1]);
+    assertEquals("2,Emma,\"Jane Austen\",Romance", lines[2]);
+  }
+}
@@ -0,0 +1,83 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+
+@ExtendWith(MockitoExtension.class)
+class JsonResponseCacheTests {
+
+  @Mock
+  TableVersions tableVersions;
+
+  @InjectMocks
+  JsonResponseCache jsonResponseCache;
+
+  AtomicInteger reads = new AtomicInteger();
+
+  Park park = Park.builder().id(1L).name("Anisq'Oyo'").build();
+
+  Supplier<Iterable<Park>> rows = () -> {
+    reads.incrementAndGet();
+    return List.of(park);
+  };
+
+  @BeforeEach
+  void setup() {
+    jsonResponseCache.mapper = new ObjectMapper().findAndRegisterModules();
+  }
+
+  @Test
+  void test_render_serializes_the_rows_once_per_table_version() throws Exception {
+    when(tableVersions.version(Park.class)).thenReturn(3L);
+
+    byte[] first = jsonResponseCache.render(Park.class, rows);
+    byte[] second = jsonResponseCache.render(Park.class, rows);
+
+    assertEquals(jsonResponseCache.mapper.writeValueAsString(List.of(park)), new String(first, StandardCharsets.UTF_8));
+    assertSame(first, second);
+    assertEquals(1, reads.get());
+  }
+
+  @Test
+  void test_render_renders_again_when_the_table_changes() {
+    when(tableVersions.version(Park.class)).thenReturn(3L, 4L);
+
+    jsonResponseCache.render(Park.class, rows);
+    park.setName("Girsh Park");
+    byte[] json = jsonResponseCache.render(Park.class, rows);
+
+    assertEquals(2, reads.get());
+    assertTrue(new String(json, StandardCharsets.UTF_8).contains("Girsh Park"));
+  }
+
+  @Test
+  void test_committed_changes_drop_the_payload() {
+    when(tableVersions.version(Park.class)).thenReturn(3L);
+
+    jsonResponseCache.render(Park.class, rows);
+    jsonResponseCache.onEntityChanged(new EntityChangedEvent(park, ChangeType.UPDATED));
+    jsonResponseCache.render(Park.class, rows);
+
+    assertEquals(2, reads.get());
+  }
+}
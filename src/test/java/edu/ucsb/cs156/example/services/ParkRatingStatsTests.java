@@ -0,0 +1,82 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+import edu.ucsb.cs156.example.models.RatingStats;
+import edu.ucsb.cs156.example.repositories.ParkRepository;
+
+@ExtendWith(MockitoExtension.class)
+class ParkRatingStatsTests {
+
+  @Mock
+  ParkRepository parkRepository;
+
+  @InjectMocks
+  ParkRatingStats stats;
+
+  private static Park park(long id, Double rating) {
+    return Park.builder().id(id).name("park " + id).rating(rating).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    when(parkRepository.findAll()).thenReturn(List.of(park(1L, 4.5), park(2L, 3.0), park(3L, 4.0), park(4L, null)));
+    stats.load();
+  }
+
+  @Test
+  void test_load_counts_means_and_buckets_the_ratings() {
+    RatingStats expected = RatingStats.builder().count(3).unrated(1).mean(11.5 / 3)
+        .histogram(new TreeMap<>(Map.of(3, 1L, 4, 2L))).build();
+    assertEquals(expected, stats.getStats());
+  }
+
+  @Test
+  void test_changes_adjust_the_totals() {
+    stats.onEntityChanged(new EntityChangedEvent(park(5L, 5.0), ChangeType.CREATED));
+    stats.onEntityChanged(new EntityChangedEvent(park(2L, 4.25), ChangeType.UPDATED));
+    stats.onEntityChanged(new EntityChangedEvent(park(4L, 2.0), ChangeType.UPDATED));
+    stats.onEntityChanged(new EntityChangedEvent(park(1L, 4.5), ChangeType.DELETED));
+
+    RatingStats expected = RatingStats.builder().count(4).unrated(0).mean(15.25 / 4)
+        .histogram(new TreeMap<>(Map.of(2, 1L, 4, 2L, 5, 1L))).build();
+    assertEquals(expected, stats.getStats());
+  }
+
+  @Test
+  void test_removing_everything_leaves_empty_stats() {
+    for (long id = 1; id <= 4; id++) {
+      stats.onEntityChanged(new EntityChangedEvent(park(id, null), ChangeType.DELETED));
+    }
+    stats.remove(99L);
+
+    RatingStats empty = stats.getStats();
+    assertEquals(0, empty.getCount());
+    assertEquals(0, empty.getUnrated());
+    assertNull(empty.getMean());
+    assertEquals(Map.of(), empty.getHistogram());
+  }
+
+  @Test
+  void test_other_entities_are_ignored() {
+    RatingStats before = stats.getStats();
+    stats.onEntityChanged(new EntityChangedEvent("not a park", ChangeType.CREATED));
+    assertEquals(before, stats.getStats());
+  }
+}
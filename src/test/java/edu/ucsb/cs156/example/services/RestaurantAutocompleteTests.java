@@ -0,0 +1,90 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.services.RestaurantAutocomplete.Field;
+
+@ExtendWith(MockitoExtension.class)
+class RestaurantAutocompleteTests {
+
+  @Mock
+  RestaurantRepository restaurantRepository;
+
+  @InjectMocks
+  RestaurantAutocomplete autocomplete;
+
+  Restaurant freebirdsIV = restaurant(1L, "Freebirds", "Isla Vista", "93117");
+  Restaurant freebirdsSB = restaurant(2L, "Freebirds", "Santa Barbara", "93101");
+  Restaurant habit = restaurant(3L, "The Habit", "Goleta", "93117");
+  Restaurant freshens = restaurant(4L, "Freshens", "Goleta", "93106");
+  Restaurant fresco = restaurant(5L, "Fresco Cafe", "Santa Barbara", null);
+
+  private static Restaurant restaurant(long id, String name, String city, String zip) {
+    return Restaurant.builder().id(id).name(name).city(city).state("CA").zip(zip).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    when(restaurantRepository.findAll()).thenReturn(List.of(freebirdsIV, freebirdsSB, habit, freshens, fresco));
+    autocomplete.load();
+  }
+
+  @Test
+  void test_field_parse() {
+    assertEquals(Field.NAME, Field.parse("name"));
+    assertEquals(Field.ZIP, Field.parse(" Zip "));
+    assertThrows(IllegalArgumentException.class, () -> Field.parse("address"));
+  }
+
+  @Test
+  void test_prefix_matches_are_distinct_sorted_and_case_insensitive() {
+    assertEquals(List.of("Freebirds", "Fresco Cafe", "Freshens"), autocomplete.complete(Field.NAME, "fre", 10));
+    assertEquals(List.of("Fresco Cafe", "Freshens"), autocomplete.complete(Field.NAME, "FRES", 10));
+    assertEquals(List.of("Freebirds"), autocomplete.complete(Field.NAME, "f", 1));
+    assertEquals(List.of(), autocomplete.complete(Field.NAME, "z", 10));
+    assertEquals(List.of("Goleta"), autocomplete.complete(Field.CITY, " g", 10));
+    assertEquals(List.of("CA"), autocomplete.complete(Field.STATE, "", 10));
+    assertEquals(List.of("93101", "93106", "93117"), autocomplete.complete(Field.ZIP, "931", 10));
+  }
+
+  @Test
+  void test_values_are_counted_across_restaurants() {
+    autocomplete.onEntityChanged(new EntityChangedEvent(freebirdsSB, ChangeType.DELETED));
+    assertEquals(List.of("Freebirds"), autocomplete.complete(Field.NAME, "free", 10));
+    assertEquals(List.of("Santa Barbara"), autocomplete.complete(Field.CITY, "santa", 10));
+
+    autocomplete.onEntityChanged(new EntityChangedEvent(freebirdsIV, ChangeType.DELETED));
+    assertEquals(List.of(), autocomplete.complete(Field.NAME, "free", 10));
+  }
+
+  @Test
+  void test_updates_replace_the_old_values() {
+    Restaurant renamed = restaurant(3L, "Habit Burger Grill", "Goleta", "93117");
+    autocomplete.onEntityChanged(new EntityChangedEvent(renamed, ChangeType.UPDATED));
+    assertEquals(List.of(), autocomplete.complete(Field.NAME, "the", 10));
+    assertEquals(List.of("Habit Burger Grill"), autocomplete.complete(Field.NAME, "hab", 10));
+
+    Restaurant added = restaurant(6L, "Naan Stop", "Isla Vista", "93117");
+    autocomplete.onEntityChanged(new EntityChangedEvent(added, ChangeType.CREATED));
+    assertEquals(List.of("Naan Stop"), autocomplete.complete(Field.NAME, "n", 10));
+
+    autocomplete.onEntityChanged(new EntityChangedEvent("not a restaurant", ChangeType.CREATED));
+    autocomplete.remove(42L);
+    assertEquals(List.of("Isla Vista"), autocomplete.complete(Field.CITY, "i", 10));
+  }
+}
@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import edu.ucsb.cs156.example.models.CacheRegionStats;
+import edu.ucsb.cs156.example.models.SystemInfo;
+
+@ExtendWith(MockitoExtension.class)
+class SystemInfoServiceImplCacheStatsTests {
+
+  @Mock
+  private ObjectProvider<EntityManagerFactory> entityManagerFactoryProvider;
+
+  @Mock
+  private EntityManagerFactory entityManagerFactory;
+
+  @Mock
+  private SessionFactory sessionFactory;
+
+  @Mock
+  private Statistics statistics;
+
+  @Mock
+  private CacheRegionStatistics regionStatistics;
+
+  private SystemInfoServiceImpl systemInfoService;
+
+  @BeforeEach
+  void setup() {
+    systemInfoService = new SystemInfoServiceImpl();
+    ReflectionTestUtils.setField(systemInfoService, "entityManagerFactory", entityManagerFactoryProvider);
+  }
+
+  @Test
+  void no_entity_manager_factory_reports_no_regions() {
+    when(entityManagerFactoryProvider.getIfAvailable()).thenReturn(null);
+
+    SystemInfo si = systemInfoService.getSystemInfo();
+
+    assertEquals(List.of(), si.getCacheRegions());
+  }
+
+  @Test
+  void statistics_disabled_reports_no_regions() {
+    when(entityManagerFactoryProvider.getIfAvailable()).thenReturn(entityManagerFactory);
+    when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+    when(sessionFactory.getStatistics()).thenReturn(statistics);
+    when(statistics.isStatisticsEnabled()).thenReturn(false);
+
+    SystemInfo si = systemInfoService.getSystemInfo();
+
+    assertEquals(List.of(), si.getCacheRegions());
+  }
+
+  @Test
+  void reports_hit_miss_and_put_counts_per_region() {
+    when(entityManagerFactoryProvider.getIfAvailable()).thenReturn(entityManagerFactory);
+    when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+    when(sessionFactory.getStatistics()).thenReturn(statistics);
+    when(statistics.isStatisticsEnabled()).thenReturn(true);
+    when(statistics.getSecondLevelCacheRegionNames()).thenReturn(new String[] { "ucsbdates", "missing" });
+    when(statistics.getCacheRegionStatistics("ucsbdates")).thenReturn(regionStatistics);
+    when(statistics.getCacheRegionStatistics("missing")).thenReturn(null);
+    when(regionStatistics.getHitCount()).thenReturn(7L);
+    when(regionStatistics.getMissCount()).thenReturn(2L);
+    when(regionStatistics.getPutCount()).thenReturn(3L);
+
+    SystemInfo si = systemInfoService.getSystemInfo();
+
+    CacheRegionStats expected = CacheRegionStats.builder()
+        .region("ucsbdates")
+        .hitCount(7L)
+        .missCount(2L)
+        .putCount(3L)
+        .build();
+    assertEquals(List.of(expected), si.getCacheRegions());
+  }
+}
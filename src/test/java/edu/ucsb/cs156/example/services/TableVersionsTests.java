@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.Book;
+import edu.ucsb.cs156.example.entities.Park;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+
+class TableVersionsTests {
+
+  TableVersions tableVersions = new TableVersions();
+
+  @Test
+  void test_each_change_bumps_only_its_own_table() {
+    String parks = tableVersions.etag(Park.class);
+    String books = tableVersions.etag(Book.class);
+    assertEquals(0, tableVersions.version(Park.class));
+
+    tableVersions.onEntityChanged(new EntityChangedEvent(Park.builder().id(1L).build(), ChangeType.CREATED));
+    tableVersions.onEntityChanged(new EntityChangedEvent(Park.builder().id(1L).build(), ChangeType.DELETED));
+
+    assertEquals(2, tableVersions.version(Park.class));
+    assertNotEquals(parks, tableVersions.etag(Park.class));
+    assertEquals(books, tableVersions.etag(Book.class));
+  }
+
+  @Test
+  void test_etags_are_strong_and_name_the_table() {
+    String etag = tableVersions.etag(Park.class);
+    assertTrue(etag.startsWith("\"Park-"), etag);
+    assertTrue(etag.endsWith("-0\""), etag);
+  }
+}
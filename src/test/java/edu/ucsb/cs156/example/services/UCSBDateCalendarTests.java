@@ -0,0 +1,85 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.EntityChangedEvent.ChangeType;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+
+@ExtendWith(MockitoExtension.class)
+class UCSBDateCalendarTests {
+
+  @Mock
+  UCSBDateRepository ucsbDateRepository;
+
+  @InjectMocks
+  UCSBDateCalendar calendar;
+
+  UCSBDate firstDay = date(1L, "firstDayOfClasses", "2022-03-28T00:00:00");
+  UCSBDate midterm = date(2L, "midterm", "2022-04-25T09:00:00");
+  UCSBDate sameTime = date(3L, "section", "2022-04-25T09:00:00");
+  UCSBDate lastDay = date(4L, "lastDayOfClasses", "2022-06-03T00:00:00");
+  UCSBDate undated = UCSBDate.builder().id(5L).name("tbd").quarterYYYYQ("20222").build();
+
+  private static UCSBDate date(long id, String name, String when) {
+    return UCSBDate.builder().id(id).name(name).quarterYYYYQ("20222").localDateTime(LocalDateTime.parse(when)).build();
+  }
+
+  private static LocalDateTime at(String when) {
+    return LocalDateTime.parse(when);
+  }
+
+  @BeforeEach
+  void setup() {
+    when(ucsbDateRepository.findAll()).thenReturn(List.of(lastDay, sameTime, firstDay, undated, midterm));
+    calendar.load();
+  }
+
+  @Test
+  void test_between_is_ordered_and_half_open() {
+    assertEquals(List.of(firstDay, midterm, sameTime, lastDay),
+        calendar.between(at("2022-01-01T00:00:00"), at("2023-01-01T00:00:00"), 100));
+    assertEquals(List.of(midterm, sameTime),
+        calendar.between(at("2022-04-25T09:00:00"), at("2022-06-03T00:00:00"), 100));
+    assertEquals(List.of(firstDay, midterm),
+        calendar.between(at("2022-01-01T00:00:00"), at("2023-01-01T00:00:00"), 2));
+    assertEquals(List.of(), calendar.between(at("2023-01-01T00:00:00"), at("2022-01-01T00:00:00"), 100));
+  }
+
+  @Test
+  void test_upcoming_is_strictly_after() {
+    assertEquals(List.of(midterm, sameTime), calendar.upcoming(at("2022-03-28T00:00:00"), 2));
+    assertEquals(List.of(lastDay), calendar.upcoming(at("2022-04-25T09:00:00"), 5));
+    assertEquals(List.of(), calendar.upcoming(at("2022-06-03T00:00:00"), 5));
+  }
+
+  @Test
+  void test_changes_update_the_calendar() {
+    UCSBDate moved = date(2L, "midterm", "2022-05-02T09:00:00");
+    calendar.onEntityChanged(new EntityChangedEvent(moved, ChangeType.UPDATED));
+    assertEquals(List.of(sameTime, moved, lastDay), calendar.upcoming(at("2022-04-01T00:00:00"), 5));
+
+    calendar.onEntityChanged(new EntityChangedEvent(sameTime, ChangeType.DELETED));
+    assertEquals(List.of(moved, lastDay), calendar.upcoming(at("2022-04-01T00:00:00"), 5));
+
+    UCSBDate finals = date(6L, "finals", "2022-06-06T08:00:00");
+    calendar.onEntityChanged(new EntityChangedEvent(finals, ChangeType.CREATED));
+    assertEquals(List.of(lastDay, finals), calendar.upcoming(at("2022-06-01T00:00:00"), 5));
+
+    calendar.onEntityChanged(new EntityChangedEvent("not a date", ChangeType.CREATED));
+    calendar.remove(42L);
+    assertEquals(List.of(lastDay, finals), calendar.upcoming(at("2022-06-01T00:00:00"), 5));
+  }
+}
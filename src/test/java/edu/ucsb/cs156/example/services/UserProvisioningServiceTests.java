@@ -0,0 +1,166 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+@ExtendWith(MockitoExtension.class)
+class UserProvisioningServiceTests {
+
+  @Mock
+  UserRepository userRepository;
+
+  @InjectMocks
+  UserProvisioningService userProvisioningService;
+
+  List<Runnable> queued = new ArrayList<>();
+
+  Map<String, Object> attributes = Map.of(
+      "email", "cgaucho@ucsb.edu",
+      "sub", "12345",
+      "picture", "https://example.org/cgaucho.jpg",
+      "name", "Chris Gaucho",
+      "given_name", "Chris",
+      "family_name", "Gaucho",
+      "email_verified", true,
+      "locale", "en",
+      "hd", "ucsb.edu");
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(userProvisioningService, "adminEmails", List.of("phtcon@ucsb.edu"));
+    ReflectionTestUtils.setField(userProvisioningService, "executor", (Executor) queued::add);
+  }
+
+  private User storedUser(String profileHash) {
+    return User.builder()
+        .id(7L)
+        .email("cgaucho@ucsb.edu")
+        .googleSub("12345")
+        .pictureUrl("https://example.org/cgaucho.jpg")
+        .fullName("Chris Gaucho")
+        .givenName("Chris")
+        .familyName("Gaucho")
+        .emailVerified(true)
+        .locale("en")
+        .hostedDomain("ucsb.edu")
+        .profileHash(profileHash)
+        .build();
+  }
+
+  @Test
+  void first_login_inserts_a_new_user() {
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.empty());
+    when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    CompletableFuture<User> future = userProvisioningService.provision(attributes);
+    queued.forEach(Runnable::run);
+
+    User u = future.join();
+    assertEquals("Chris Gaucho", u.getFullName());
+    assertEquals(UserProvisioningService.profileHash(storedUser(null)), u.getProfileHash());
+    verify(userRepository, times(1)).save(u);
+  }
+
+  @Test
+  void unchanged_profile_is_not_written() {
+    User stored = storedUser(UserProvisioningService.profileHash(storedUser(null)));
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(stored));
+
+    CompletableFuture<User> future = userProvisioningService.provision(attributes);
+    queued.forEach(Runnable::run);
+
+    assertSame(stored, future.join());
+    verify(userRepository, never()).save(any());
+  }
+
+  @Test
+  void changed_profile_is_refreshed() {
+    User stored = storedUser("stale-hash");
+    stored.setPictureUrl("https://example.org/old.jpg");
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(stored));
+    when(userRepository.save(stored)).thenReturn(stored);
+
+    CompletableFuture<User> future = userProvisioningService.provision(attributes);
+    queued.forEach(Runnable::run);
+
+    assertEquals("https://example.org/cgaucho.jpg", future.join().getPictureUrl());
+    verify(userRepository, times(1)).save(stored);
+    assertEquals(0, userProvisioningService.getAdminGeneration());
+  }
+
+  @Test
+  void admin_email_promotes_existing_user() {
+    ReflectionTestUtils.setField(userProvisioningService, "adminEmails", List.of("cgaucho@ucsb.edu"));
+    User stored = storedUser(UserProvisioningService.profileHash(storedUser(null)));
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(stored));
+    when(userRepository.save(stored)).thenReturn(stored);
+
+    CompletableFuture<User> future = userProvisioningService.provision(attributes);
+    queued.forEach(Runnable::run);
+
+    assertTrue(future.join().getAdmin());
+    verify(userRepository, times(1)).save(stored);
+    assertEquals(1, userProvisioningService.getAdminGeneration());
+  }
+
+  @Test
+  void attributes_without_an_email_are_rejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> userProvisioningService.provision(Map.of("sub", "12345")));
+    assertTrue(queued.isEmpty());
+  }
+
+  @Test
+  void login_without_an_email_is_not_provisioned() {
+    OAuth2User principal = new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("ROLE_USER")),
+        Map.of("sub", "12345"), "sub");
+    userProvisioningService.onAuthenticationSuccess(new AuthenticationSuccessEvent(
+        new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google")));
+
+    assertTrue(queued.isEmpty());
+  }
+
+  @Test
+  void concurrent_logins_for_the_same_email_share_one_upsert() {
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.empty());
+    when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    CompletableFuture<User> first = userProvisioningService.provision(attributes);
+    CompletableFuture<User> second = userProvisioningService.provision(attributes);
+    queued.forEach(Runnable::run);
+
+    assertSame(first, second);
+    assertEquals(1, queued.size());
+    verify(userRepository, times(1)).save(any(User.class));
+  }
+}
@@ -5,6 +5,7 @@ import org.springframework.context.annotation.Bean;
 
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.UserProvisioningService;
 
 @TestConfiguration
 public class TestConfig {
@@ -18,4 +19,9 @@ public class TestConfig {
     public GrantedAuthoritiesService grantedAuthoritiesService() {
         return new GrantedAuthoritiesService();
     }
+
+    @Bean
+    public UserProvisioningService userProvisioningService() {
+        return new UserProvisioningService();
+    }
 }